@@ -0,0 +1,29 @@
+package com.document.document_service.benchmark;
+
+import java.util.List;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+
+/**
+ * Minio client whose listings return prepared items instead of calling a server, so the benchmarks measure only the
+ * work of the service on the listing.
+ */
+final class BenchmarkMinioClient extends MinioClient {
+  private final List<Result<Item>> items;
+
+  BenchmarkMinioClient(List<Result<Item>> items) {
+    super(MinioClient.builder()
+        .endpoint("http://localhost:9000")
+        .credentials("benchmark", "benchmark")
+        .build());
+    this.items = items;
+  }
+
+  @Override
+  public Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+    return items;
+  }
+}
@@ -0,0 +1,98 @@
+package com.document.document_service.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.mapper.CatalogMapper;
+import com.document.document_service.service.BucketStatisticsService;
+import com.document.document_service.service.CatalogService;
+import com.document.document_service.service.DocumentMetrics;
+import com.document.document_service.service.DocumentService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.Result;
+import io.minio.messages.Item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The listing pipelines of the service over a synthetic version listing:
+ * <ul>
+ *   <li>{@code documents}: items to documents, as getAllDocuments and the stream endpoint do while the catalog of the
+ *   bucket is not ready (mapping, grouping per object, per object sort and version numbering),</li>
+ *   <li>{@code bucketStatistics}: the bucket statistics reconcile behind the bucket details,</li>
+ *   <li>{@code catalogMapping}: the item to catalog row mapping alone, shared by the listing and the catalog
+ *   reconcile.</li>
+ * </ul>
+ * Throughput is per listing; run with {@code -prof gc} for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ListingBenchmark {
+  private static final String BUCKET_NAME = "benchmark";
+
+  // 10000000 needs a bigger heap: -jvmArgsAppend -Xmx16g
+  @Param({"1000", "100000", "1000000"})
+  private int versions;
+
+  @Param({"1", "10", "100"})
+  private int versionsPerObject;
+
+  private List<Result<Item>> items;
+  private DocumentService documentService;
+  private BucketStatisticsService bucketStatisticsService;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    items = SyntheticItems.versions(BUCKET_NAME, versions, versionsPerObject);
+    BenchmarkMinioClient minioClient = new BenchmarkMinioClient(items);
+
+    // a catalog that is never ready sends every read to the minio listing
+    CatalogService catalogService = new CatalogService(null, null, null) {
+      @Override
+      public boolean isReady(String bucketName) {
+        return false;
+      }
+    };
+    DocumentMetrics documentMetrics = new DocumentMetrics(new SimpleMeterRegistry());
+
+    documentService = new DocumentService(minioClient, catalogService, null, null, null, null, null, null,
+        null, null, documentMetrics);
+    bucketStatisticsService = new BucketStatisticsService(minioClient, catalogService, null);
+  }
+
+  @Benchmark
+  public void documents(Blackhole blackhole) {
+    documentService.streamDocuments(BUCKET_NAME, null, blackhole::consume);
+  }
+
+  @Benchmark
+  public BucketStatisticsService.Statistics bucketStatistics() {
+    return bucketStatisticsService.reconcile(BUCKET_NAME);
+  }
+
+  @Benchmark
+  public void catalogMapping(Blackhole blackhole) throws Exception {
+    for (Result<Item> itemResult : items) {
+      CatalogVersion version = CatalogMapper.toEntity(BUCKET_NAME, itemResult.get(), 0);
+      blackhole.consume(version);
+    }
+  }
+}
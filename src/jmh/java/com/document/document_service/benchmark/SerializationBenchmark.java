@@ -0,0 +1,95 @@
+package com.document.document_service.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.mapper.CatalogMapper;
+import com.document.document_service.mapper.DocumentMapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import io.minio.Result;
+import io.minio.messages.Item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Jackson serialization of document lists, as one json array (getAllDocuments) and as newline delimited json (the
+ * stream endpoint). The output is discarded, so only the serialization is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SerializationBenchmark {
+  private static final String BUCKET_NAME = "benchmark";
+
+  @Param({"1000", "100000"})
+  private int versions;
+
+  @Param({"1", "10"})
+  private int versionsPerObject;
+
+  private List<DocumentResponse> documents;
+  private ObjectMapper objectMapper;
+  private OutputStream discard;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    documents = new ArrayList<>();
+    List<CatalogVersion> objectVersions = new ArrayList<>();
+    for (Result<Item> itemResult : SyntheticItems.versions(BUCKET_NAME, versions, versionsPerObject)) {
+      CatalogVersion version = CatalogMapper.toEntity(BUCKET_NAME, itemResult.get(), 0);
+      if (!objectVersions.isEmpty() && !objectVersions.getLast().getObjectName().equals(version.getObjectName())) {
+        documents.add(DocumentMapper.toDto(BUCKET_NAME, objectVersions.reversed()));
+        objectVersions = new ArrayList<>();
+      }
+      objectVersions.add(version);
+    }
+    documents.add(DocumentMapper.toDto(BUCKET_NAME, objectVersions.reversed()));
+
+    // the same setup as the spring boot object mapper: java time module, dates as iso strings
+    objectMapper = JsonMapper.builder()
+        .findAndAddModules()
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+    discard = OutputStream.nullOutputStream();
+  }
+
+  @Benchmark
+  public void jsonArray() throws IOException {
+    objectMapper.writeValue(discard, documents);
+  }
+
+  @Benchmark
+  public void ndjson() throws IOException {
+    ObjectWriter writer = objectMapper.writer().withRootValueSeparator("\n");
+    try (SequenceWriter sequenceWriter = writer.writeValues(discard)) {
+      for (DocumentResponse document : documents) {
+        sequenceWriter.write(document);
+      }
+    }
+  }
+}
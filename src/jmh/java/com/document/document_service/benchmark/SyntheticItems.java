@@ -0,0 +1,81 @@
+package com.document.document_service.benchmark;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.minio.Result;
+import io.minio.Xml;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.Item;
+import io.minio.messages.ListVersionsResult;
+
+/**
+ * Synthetic version listings in the order minio returns them: objects by key, the versions of an object newest
+ * first. The items are unmarshalled from ListVersionsResult xml pages like real responses, so they are the same
+ * {@link Item} instances the service gets from the client.
+ */
+final class SyntheticItems {
+  private static final int PAGE_SIZE = 1000;
+  private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_INSTANT;
+
+  private SyntheticItems() {
+  }
+
+  /**
+   * {@code versionCount} versions spread over objects with {@code versionsPerObject} versions each.
+   */
+  static List<Result<Item>> versions(String bucketName, int versionCount, int versionsPerObject) {
+    List<Result<Item>> results = new ArrayList<>(versionCount);
+    StringBuilder page = new StringBuilder();
+    int pageCount = 0;
+
+    for (int i = 0; i < versionCount; i++) {
+      int objectIndex = i / versionsPerObject;
+      int versionIndex = i % versionsPerObject;
+      // newest first: the first version of each object is the latest one
+      int age = versionsPerObject - versionIndex;
+
+      page.append("<Version>")
+          .append("<Key>documents/").append(String.format("%09d", objectIndex)).append(".pdf</Key>")
+          .append("<VersionId>").append(String.format("%08x-%04x", objectIndex, versionIndex)).append("</VersionId>")
+          .append("<IsLatest>").append(versionIndex == 0).append("</IsLatest>")
+          .append("<LastModified>").append(DATE_FORMAT.format(START.plusSeconds(objectIndex * 10L + age)))
+          .append("</LastModified>")
+          .append("<ETag>\"").append(String.format("%032x", i)).append("\"</ETag>")
+          .append("<Size>").append(1024L * (1 + i % 4096)).append("</Size>")
+          .append("<StorageClass>STANDARD</StorageClass>")
+          .append("</Version>");
+
+      if (++pageCount == PAGE_SIZE || i == versionCount - 1) {
+        results.addAll(unmarshal(bucketName, page.toString()));
+        page.setLength(0);
+        pageCount = 0;
+      }
+    }
+    return results;
+  }
+
+  private static List<Result<Item>> unmarshal(String bucketName, String versions) {
+    String xml = "<ListVersionsResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+        + "<Name>" + bucketName + "</Name>"
+        + "<Prefix></Prefix>"
+        + "<KeyMarker></KeyMarker>"
+        + "<VersionIdMarker></VersionIdMarker>"
+        + "<MaxKeys>" + PAGE_SIZE + "</MaxKeys>"
+        + "<IsTruncated>false</IsTruncated>"
+        + versions
+        + "</ListVersionsResult>";
+
+    try {
+      ListVersionsResult result = Xml.unmarshal(ListVersionsResult.class, xml);
+      List<Result<Item>> items = new ArrayList<>(result.versions().size());
+      result.versions().forEach(version -> items.add(new Result<>(version)));
+      return items;
+    } catch (XmlParserException e) {
+      throw new IllegalStateException("Synthetic listing could not be parsed", e);
+    }
+  }
+}
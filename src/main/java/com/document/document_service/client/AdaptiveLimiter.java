@@ -0,0 +1,189 @@
+package com.document.document_service.client;
+
+import java.io.InterruptedIOException;
+import java.lang.ref.Cleaner;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.Builder;
+
+/**
+ * Concurrency limit that adapts to minio (AIMD): every call that completes while the pool is at least half used raises
+ * the limit by one, every call that times out, fails on the server or takes longer than {@code dropLatency} cuts it
+ * by {@code backoffRatio}. Calls over the limit wait up to {@code maxWait} in a queue of at most {@code maxQueue}, then
+ * they are rejected with {@link MinioOverloadedException}.
+ */
+public class AdaptiveLimiter {
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final String pool;
+  private final Options options;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final Counter rejected;
+  private final Counter dropped;
+  private double limit;
+  private int inFlight;
+  private int queued;
+
+  public AdaptiveLimiter(String pool, Options options, MeterRegistry meterRegistry) {
+    if (options.minLimit() < 1 || options.initialLimit() < options.minLimit()
+        || options.maxLimit() < options.initialLimit()) {
+      throw new IllegalStateException("minio.limiter." + pool + " limits must be 1 <= min <= initial <= max.");
+    }
+    if (!(options.backoffRatio() > 0 && options.backoffRatio() < 1)) {
+      throw new IllegalStateException("minio.limiter.backoff-ratio must be between 0 and 1.");
+    }
+    this.pool = pool;
+    this.options = options;
+    this.limit = options.initialLimit();
+
+    Gauge.builder("minio.limiter.limit", this, value -> value.limit)
+        .description("Current concurrency limit of the minio calls")
+        .tag("pool", pool)
+        .register(meterRegistry);
+    Gauge.builder("minio.limiter.in-flight", this, value -> value.inFlight)
+        .description("Minio calls holding a permit")
+        .tag("pool", pool)
+        .register(meterRegistry);
+    Gauge.builder("minio.limiter.queued", this, value -> value.queued)
+        .description("Minio calls waiting for a permit")
+        .tag("pool", pool)
+        .register(meterRegistry);
+    this.rejected = Counter.builder("minio.limiter.rejected")
+        .description("Minio calls rejected over the limit")
+        .tag("pool", pool)
+        .register(meterRegistry);
+    this.dropped = Counter.builder("minio.limiter.dropped")
+        .description("Minio calls that cut the limit")
+        .tag("pool", pool)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Waits for a permit; the permit must be closed when the call no longer uses minio.
+   */
+  public Permit acquire() throws InterruptedIOException {
+    lock.lock();
+    try {
+      if (inFlight >= (int) limit) {
+        if (queued >= options.maxQueue()) {
+          throw reject();
+        }
+        queued++;
+        try {
+          long remainingNanos = options.maxWait().toNanos();
+          while (inFlight >= (int) limit) {
+            if (remainingNanos <= 0) {
+              throw reject();
+            }
+            remainingNanos = available.awaitNanos(remainingNanos);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for a minio permit");
+        } finally {
+          queued--;
+        }
+      }
+      inFlight++;
+      return new Permit();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private MinioOverloadedException reject() {
+    rejected.increment();
+    return new MinioOverloadedException(pool, options.retryAfter());
+  }
+
+  private void sample(long elapsedNanos, boolean timed, boolean failed) {
+    lock.lock();
+    try {
+      if (failed || (timed && elapsedNanos > options.dropLatency().toNanos())) {
+        dropped.increment();
+        limit = Math.max(options.minLimit(), limit * options.backoffRatio());
+      } else if (inFlight * 2 >= limit) {
+        limit = Math.min(options.maxLimit(), limit + 1);
+        available.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * One call in flight. The limit learns from the first outcome reported; closing frees the permit.
+   */
+  public final class Permit implements AutoCloseable {
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean sampled = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit() {
+    }
+
+    /**
+     * The call was answered; with {@code timed} a slow answer counts as a drop.
+     */
+    public void succeeded(boolean timed) {
+      if (sampled.compareAndSet(false, true)) {
+        sample(System.nanoTime() - startNanos, timed, false);
+      }
+    }
+
+    /**
+     * The call timed out or minio could not serve it.
+     */
+    public void failed() {
+      if (sampled.compareAndSet(false, true)) {
+        sample(System.nanoTime() - startNanos, false, true);
+      }
+    }
+
+    /**
+     * Frees the permit when the owner is garbage collected without being closed, e.g. a listing that was not read to
+     * its end.
+     */
+    public void releaseWhenUnreachable(Object owner) {
+      CLEANER.register(owner, this::close);
+    }
+
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        release();
+      }
+    }
+  }
+
+  @Builder
+  public record Options(
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      double backoffRatio,
+      Duration dropLatency,
+      Duration maxWait,
+      int maxQueue,
+      Duration retryAfter
+  ) {
+  }
+}
@@ -0,0 +1,430 @@
+package com.document.document_service.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Multimap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.BucketExistsArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveBucketArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.SetBucketVersioningArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.InternalException;
+import io.minio.errors.InvalidResponseException;
+import io.minio.errors.ServerException;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.Bucket;
+import io.minio.messages.DeleteError;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Minio client that times every call by operation and bucket ({@code minio.client.requests}), counts the items of
+ * every listing scan ({@code minio.client.list.items}) and the bytes read and written ({@code minio.client.bytes}),
+ * and logs calls slower than the threshold. Listings and multi-object deletes are lazy, every page they fetch is timed
+ * as one call, and the items of a listing are counted when it is read to the end or dropped early.
+ */
+@Slf4j
+public class InstrumentedMinioClient extends MinioClient {
+  private static final String NO_BUCKET = "none";
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final MeterRegistry meterRegistry;
+  private final Duration slowCallThreshold;
+
+  public InstrumentedMinioClient(MinioClient client, MeterRegistry meterRegistry, Duration slowCallThreshold) {
+    super(client);
+    this.meterRegistry = meterRegistry;
+    this.slowCallThreshold = slowCallThreshold;
+  }
+
+  @Override
+  public boolean bucketExists(BucketExistsArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("bucketExists", args.bucket())) {
+      boolean exists = super.bucketExists(args);
+      call.succeeded();
+      return exists;
+    }
+  }
+
+  @Override
+  public void makeBucket(MakeBucketArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("makeBucket", args.bucket())) {
+      super.makeBucket(args);
+      call.succeeded();
+    }
+  }
+
+  @Override
+  public void setBucketVersioning(SetBucketVersioningArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("setBucketVersioning", args.bucket())) {
+      super.setBucketVersioning(args);
+      call.succeeded();
+    }
+  }
+
+  @Override
+  public void removeBucket(RemoveBucketArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("removeBucket", args.bucket())) {
+      super.removeBucket(args);
+      call.succeeded();
+    }
+  }
+
+  @Override
+  public List<Bucket> listBuckets()
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("listBuckets", NO_BUCKET)) {
+      List<Bucket> buckets = super.listBuckets();
+      call.succeeded();
+      return buckets;
+    }
+  }
+
+  @Override
+  public StatObjectResponse statObject(StatObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("statObject", args.bucket())) {
+      StatObjectResponse response = super.statObject(args);
+      call.succeeded();
+      return response;
+    }
+  }
+
+  /**
+   * Times the call up to the response headers; the bytes of the body are counted as they are read.
+   */
+  @Override
+  public GetObjectResponse getObject(GetObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    GetObjectResponse response;
+    try (CallTimer call = new CallTimer("getObject", args.bucket())) {
+      response = super.getObject(args);
+      call.succeeded();
+    }
+
+    Counter bytes = bytesCounter("getObject", args.bucket());
+    return new GetObjectResponse(response.headers(), response.bucket(), response.region(), response.object(),
+        new CountingInputStream(response, bytes));
+  }
+
+  @Override
+  public ObjectWriteResponse putObject(PutObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("putObject", args.bucket())) {
+      ObjectWriteResponse response = super.putObject(args);
+      call.succeeded();
+      if (args.objectSize() >= 0) {
+        bytesCounter("putObject", args.bucket()).increment(args.objectSize());
+      }
+      return response;
+    }
+  }
+
+  @Override
+  public ObjectWriteResponse copyObject(CopyObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (CallTimer call = new CallTimer("copyObject", args.bucket())) {
+      ObjectWriteResponse response = super.copyObject(args);
+      call.succeeded();
+      return response;
+    }
+  }
+
+  @Override
+  public Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+    Iterable<Result<Item>> results = super.listObjects(args);
+    DistributionSummary items = DistributionSummary.builder("minio.client.list.items")
+        .description("Items returned by one listing scan")
+        .tag("bucket", args.bucket())
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+
+    return () -> new TimedIterator<>("listObjects", args.bucket(), results.iterator(), args.maxKeys(), items);
+  }
+
+  @Override
+  public Iterable<Result<DeleteError>> removeObjects(RemoveObjectsArgs args) {
+    Iterable<Result<DeleteError>> results = super.removeObjects(args);
+    return () -> new TimedIterator<>("removeObjects", args.bucket(), results.iterator(), 0, null);
+  }
+
+  /**
+   * The multipart calls of the same endpoint, timed like the other calls; uploaded parts count their bytes.
+   */
+  public MinioMultipartClient instrument(MinioMultipartClient client) {
+    return new InstrumentedMultipartClient(client);
+  }
+
+  private Counter bytesCounter(String operation, String bucketName) {
+    return Counter.builder("minio.client.bytes")
+        .description("Bytes read from or written to minio")
+        .baseUnit("bytes")
+        .tag("operation", operation)
+        .tag("bucket", bucketName)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Times one call from creation to close; the outcome is an error unless {@link #succeeded()} was called.
+   */
+  private final class CallTimer implements AutoCloseable {
+    private final String operation;
+    private final String bucketName;
+    private final long startNanos = System.nanoTime();
+    private boolean success;
+    private boolean closed;
+
+    private CallTimer(String operation, String bucketName) {
+      this.operation = operation;
+      this.bucketName = bucketName == null ? NO_BUCKET : bucketName;
+    }
+
+    private void succeeded() {
+      success = true;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      long elapsedNanos = System.nanoTime() - startNanos;
+      Timer.builder("minio.client.requests")
+          .description("Minio client calls")
+          .tag("operation", operation)
+          .tag("bucket", bucketName)
+          .tag("outcome", success ? "success" : "error")
+          .publishPercentileHistogram()
+          .register(meterRegistry)
+          .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+      if (elapsedNanos > slowCallThreshold.toNanos()) {
+        log.warn("Slow minio call: {}, bucket: {}, outcome: {}, took: {} ms", operation, bucketName,
+            success ? "success" : "error", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+      }
+    }
+  }
+
+  private final class InstrumentedMultipartClient extends MinioMultipartClient {
+    private final MinioMultipartClient delegate;
+
+    private InstrumentedMultipartClient(MinioMultipartClient delegate) {
+      super(delegate);
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String createMultipartUpload(String bucketName, String objectName, Multimap<String, String> headers)
+        throws Exception {
+      return timed("createMultipartUpload", bucketName,
+          () -> delegate.createMultipartUpload(bucketName, objectName, headers));
+    }
+
+    @Override
+    public String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                                 String sourceBucket, String sourceObject, String sourceVersionId, long offset,
+                                 long length) throws Exception {
+      return timed("uploadPartCopy", bucketName, () -> delegate.uploadPartCopy(bucketName, objectName, uploadId,
+          partNumber, sourceBucket, sourceObject, sourceVersionId, offset, length));
+    }
+
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber,
+                             RandomAccessFile data, long length) throws Exception {
+      String etag = timed("uploadPart", bucketName,
+          () -> delegate.uploadPart(bucketName, objectName, uploadId, partNumber, data, length));
+      bytesCounter("uploadPart", bucketName).increment(length);
+      return etag;
+    }
+
+    @Override
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+      return timed("listParts", bucketName, () -> delegate.listParts(bucketName, objectName, uploadId));
+    }
+
+    @Override
+    public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId,
+                                                       Part[] parts) throws Exception {
+      return timed("completeMultipartUpload", bucketName,
+          () -> delegate.completeMultipartUpload(bucketName, objectName, uploadId, parts));
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+      timed("abortMultipartUpload", bucketName, () -> {
+        delegate.abortMultipartUpload(bucketName, objectName, uploadId);
+        return null;
+      });
+    }
+
+    private <T> T timed(String operation, String bucketName, Callable<T> call) throws Exception {
+      try (CallTimer timer = new CallTimer(operation, bucketName)) {
+        T result = call.call();
+        timer.succeeded();
+        return result;
+      }
+    }
+  }
+
+  /**
+   * Times every page fetch of a lazy listing as one call and counts its items.
+   */
+  private final class TimedIterator<T> implements Iterator<Result<T>> {
+    private final String operation;
+    private final String bucketName;
+    private final Iterator<Result<T>> delegate;
+    private final ListingPages pages;
+    private final ItemCount items;
+
+    private TimedIterator(String operation, String bucketName, Iterator<Result<T>> delegate, int pageSize,
+                          DistributionSummary summary) {
+      this.operation = operation;
+      this.bucketName = bucketName;
+      this.delegate = delegate;
+      this.pages = new ListingPages(pageSize);
+      this.items = summary == null ? null : new ItemCount(summary);
+      if (items != null) {
+        // listings stopped early (a page of results, a client gone) count what they read
+        CLEANER.register(this, items::record);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      boolean hasNext;
+      if (pages.fetchesPage()) {
+        try (CallTimer call = new CallTimer(operation, bucketName)) {
+          hasNext = delegate.hasNext();
+          call.succeeded();
+        }
+        pages.pageFetched();
+      } else {
+        hasNext = delegate.hasNext();
+      }
+      if (!hasNext && items != null) {
+        items.record();
+      }
+      return hasNext;
+    }
+
+    @Override
+    public Result<T> next() {
+      pages.itemRead();
+      if (items != null) {
+        items.count.incrementAndGet();
+      }
+      return delegate.next();
+    }
+  }
+
+  /**
+   * Items of one listing, recorded once; kept apart from the iterator so the cleaner can record it.
+   */
+  private static final class ItemCount {
+    private final DistributionSummary summary;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicBoolean recorded = new AtomicBoolean();
+
+    private ItemCount(DistributionSummary summary) {
+      this.summary = summary;
+    }
+
+    private void record() {
+      if (recorded.compareAndSet(false, true)) {
+        summary.record(count.get());
+      }
+    }
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    private final Counter bytes;
+    private long count;
+
+    private CountingInputStream(InputStream in, Counter bytes) {
+      super(in);
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read >= 0) {
+        count++;
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        bytes.increment(count);
+        count = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,324 @@
+package com.document.document_service.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.google.common.collect.Multimap;
+
+import io.minio.BucketExistsArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveBucketArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.SetBucketVersioningArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.InternalException;
+import io.minio.errors.InvalidResponseException;
+import io.minio.errors.ServerException;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.Bucket;
+import io.minio.messages.DeleteError;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+
+/**
+ * Minio client that runs every call under the {@link AdaptiveLimiter} of its kind: metadata calls (stat, bucket
+ * calls), data transfers (get, put, copy) and bulk calls (listings, multi-object deletes). A download holds its permit
+ * until its stream is closed, a listing or delete only while it fetches a page, so callers working through the results
+ * do not hold a permit; the limit learns from the time to the response headers and to each page. Puts and copies are
+ * only judged by their errors, their time grows with their size. The same limiters cover the multipart calls, see
+ * {@link #limit(MinioMultipartClient)}.
+ */
+public class LimitedMinioClient extends MinioClient {
+  private static final String SLOW_DOWN = "SlowDown";
+
+  private final MinioClient delegate;
+  private final AdaptiveLimiter metadata;
+  private final AdaptiveLimiter transfer;
+  private final AdaptiveLimiter bulk;
+
+  public LimitedMinioClient(MinioClient delegate, AdaptiveLimiter metadata, AdaptiveLimiter transfer,
+                            AdaptiveLimiter bulk) {
+    super(delegate);
+    this.delegate = delegate;
+    this.metadata = metadata;
+    this.transfer = transfer;
+    this.bulk = bulk;
+  }
+
+  @Override
+  public boolean bucketExists(BucketExistsArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(metadata, true, () -> delegate.bucketExists(args));
+  }
+
+  @Override
+  public void makeBucket(MakeBucketArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    call(metadata, true, () -> {
+      delegate.makeBucket(args);
+      return null;
+    });
+  }
+
+  @Override
+  public void setBucketVersioning(SetBucketVersioningArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    call(metadata, true, () -> {
+      delegate.setBucketVersioning(args);
+      return null;
+    });
+  }
+
+  @Override
+  public void removeBucket(RemoveBucketArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    call(metadata, true, () -> {
+      delegate.removeBucket(args);
+      return null;
+    });
+  }
+
+  @Override
+  public List<Bucket> listBuckets()
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(metadata, true, delegate::listBuckets);
+  }
+
+  @Override
+  public StatObjectResponse statObject(StatObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(metadata, true, () -> delegate.statObject(args));
+  }
+
+  @Override
+  public GetObjectResponse getObject(GetObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    AdaptiveLimiter.Permit permit = transfer.acquire();
+    GetObjectResponse response;
+    try {
+      response = delegate.getObject(args);
+      permit.succeeded(true);
+    } catch (Exception e) {
+      sample(permit, e, true);
+      permit.close();
+      throw e;
+    }
+
+    GetObjectResponse limited = new GetObjectResponse(response.headers(), response.bucket(), response.region(),
+        response.object(), new FilterInputStream(response) {
+          @Override
+          public void close() throws IOException {
+            try {
+              super.close();
+            } finally {
+              permit.close();
+            }
+          }
+        });
+    permit.releaseWhenUnreachable(limited);
+    return limited;
+  }
+
+  @Override
+  public ObjectWriteResponse putObject(PutObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(transfer, false, () -> delegate.putObject(args));
+  }
+
+  @Override
+  public ObjectWriteResponse copyObject(CopyObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(transfer, false, () -> delegate.copyObject(args));
+  }
+
+  @Override
+  public Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+    Iterable<Result<Item>> results = delegate.listObjects(args);
+    return () -> new LimitedIterator<>(results.iterator(), args.maxKeys());
+  }
+
+  @Override
+  public Iterable<Result<DeleteError>> removeObjects(RemoveObjectsArgs args) {
+    Iterable<Result<DeleteError>> results = delegate.removeObjects(args);
+    return () -> new LimitedIterator<>(results.iterator(), 0);
+  }
+
+  /**
+   * The multipart calls under the same limiters: starting, aborting and listing the parts of an upload are metadata
+   * calls, uploaded and copied parts and the completion, which assembles the parts, are transfers.
+   */
+  public MinioMultipartClient limit(MinioMultipartClient client) {
+    return new LimitedMultipartClient(client);
+  }
+
+  private static <T> T call(AdaptiveLimiter limiter, boolean timed, MinioCall<T> call)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try (AdaptiveLimiter.Permit permit = limiter.acquire()) {
+      try {
+        T result = call.call();
+        permit.succeeded(timed);
+        return result;
+      } catch (Exception e) {
+        sample(permit, e, timed);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Timeouts, server errors and minio asking to slow down cut the limit; any other error is an answer of minio.
+   */
+  private static void sample(AdaptiveLimiter.Permit permit, Throwable error, boolean timed) {
+    Throwable cause = error instanceof RuntimeException && error.getCause() != null ? error.getCause() : error;
+    if (cause instanceof MinioOverloadedException) {
+      return;
+    }
+    if (cause instanceof IOException || cause instanceof ServerException
+        || (cause instanceof ErrorResponseException e && SLOW_DOWN.equals(e.errorResponse().code()))) {
+      permit.failed();
+    } else {
+      permit.succeeded(timed);
+    }
+  }
+
+  @FunctionalInterface
+  private interface MinioCall<T> {
+    T call()
+        throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+        InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException;
+  }
+
+  private final class LimitedMultipartClient extends MinioMultipartClient {
+    private final MinioMultipartClient delegate;
+
+    private LimitedMultipartClient(MinioMultipartClient delegate) {
+      super(delegate);
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String createMultipartUpload(String bucketName, String objectName, Multimap<String, String> headers)
+        throws Exception {
+      return limited(metadata, true, () -> delegate.createMultipartUpload(bucketName, objectName, headers));
+    }
+
+    @Override
+    public String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                                 String sourceBucket, String sourceObject, String sourceVersionId, long offset,
+                                 long length) throws Exception {
+      return limited(transfer, false, () -> delegate.uploadPartCopy(bucketName, objectName, uploadId, partNumber,
+          sourceBucket, sourceObject, sourceVersionId, offset, length));
+    }
+
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber,
+                             RandomAccessFile data, long length) throws Exception {
+      return limited(transfer, false,
+          () -> delegate.uploadPart(bucketName, objectName, uploadId, partNumber, data, length));
+    }
+
+    @Override
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+      return limited(metadata, true, () -> delegate.listParts(bucketName, objectName, uploadId));
+    }
+
+    @Override
+    public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId,
+                                                       Part[] parts) throws Exception {
+      return limited(transfer, false,
+          () -> delegate.completeMultipartUpload(bucketName, objectName, uploadId, parts));
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+      limited(metadata, true, () -> {
+        delegate.abortMultipartUpload(bucketName, objectName, uploadId);
+        return null;
+      });
+    }
+
+    private <T> T limited(AdaptiveLimiter limiter, boolean timed, Callable<T> call) throws Exception {
+      try (AdaptiveLimiter.Permit permit = limiter.acquire()) {
+        try {
+          T result = call.call();
+          permit.succeeded(timed);
+          return result;
+        } catch (Exception e) {
+          sample(permit, e, timed);
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes a permit for every page fetch only, so a caller that opens further calls while it works through the results,
+   * or a slow client of a stream, does not hold a bulk permit in between.
+   */
+  private final class LimitedIterator<T> implements Iterator<Result<T>> {
+    private final Iterator<Result<T>> delegate;
+    private final ListingPages pages;
+
+    private LimitedIterator(Iterator<Result<T>> delegate, int pageSize) {
+      this.delegate = delegate;
+      this.pages = new ListingPages(pageSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!pages.fetchesPage()) {
+        return delegate.hasNext();
+      }
+
+      AdaptiveLimiter.Permit permit;
+      try {
+        permit = bulk.acquire();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      try (permit) {
+        boolean hasNext = delegate.hasNext();
+        permit.succeeded(true);
+        pages.pageFetched();
+        return hasNext;
+      } catch (RuntimeException e) {
+        sample(permit, e, true);
+        throw e;
+      }
+    }
+
+    @Override
+    public Result<T> next() {
+      pages.itemRead();
+      return delegate.next();
+    }
+  }
+}
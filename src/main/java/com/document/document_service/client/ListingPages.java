@@ -0,0 +1,29 @@
+package com.document.document_service.client;
+
+/**
+ * Tells which {@code hasNext()} calls of a lazy minio listing send a request. Listings read pages of at most
+ * {@code maxKeys} items: the first call fetches a page, and so does the first call after every {@code maxKeys} items.
+ * Multi-object deletes send their batches from any {@code hasNext()} call, they are created with a page size of 0.
+ */
+final class ListingPages {
+  private final int pageSize;
+  private boolean started;
+  private long itemsInPage;
+
+  ListingPages(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  boolean fetchesPage() {
+    return !started || itemsInPage >= pageSize;
+  }
+
+  void pageFetched() {
+    started = true;
+    itemsInPage = 0;
+  }
+
+  void itemRead() {
+    itemsInPage++;
+  }
+}
@@ -0,0 +1,110 @@
+package com.document.document_service.client;
+
+import java.io.RandomAccessFile;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+
+/**
+ * Exposes the low level multipart upload calls of {@link MinioAsyncClient}, which the high level API only uses
+ * internally. They are needed where a multipart upload has to be driven step by step, e.g. to copy parts in parallel
+ * and complete the upload later, or to take the parts of a resumable upload one request at a time.
+ */
+public class MinioMultipartClient extends MinioAsyncClient {
+  private static final int MAX_LISTED_PARTS = 1000;
+
+  public MinioMultipartClient(MinioAsyncClient client) {
+    super(client);
+  }
+
+  public String createMultipartUpload(String bucketName, String objectName, Multimap<String, String> headers)
+      throws Exception {
+    return await(createMultipartUploadAsync(bucketName, null, objectName, headers, null))
+        .result()
+        .uploadId();
+  }
+
+  /**
+   * Server-side copy of {@code length} bytes from {@code offset} of the source version into one part; returns the
+   * etag of the part.
+   */
+  public String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                               String sourceBucket, String sourceObject, String sourceVersionId, long offset,
+                               long length) throws Exception {
+    Multimap<String, String> headers = HashMultimap.create();
+    String copySource = "/" + sourceBucket + "/" + encodePath(sourceObject);
+    if (sourceVersionId != null && !sourceVersionId.equals("null")) {
+      copySource += "?versionId=" + URLEncoder.encode(sourceVersionId, StandardCharsets.UTF_8);
+    }
+    headers.put("x-amz-copy-source", copySource);
+    headers.put("x-amz-copy-source-range", "bytes=" + offset + "-" + (offset + length - 1));
+
+    return await(uploadPartCopyAsync(bucketName, null, objectName, uploadId, partNumber, headers, null))
+        .result()
+        .etag();
+  }
+
+  /**
+   * Uploads {@code length} bytes from the current position of the file as one part; returns the etag of the part.
+   */
+  public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber,
+                           RandomAccessFile data, long length) throws Exception {
+    return await(uploadPartAsync(bucketName, null, objectName, data, length, uploadId, partNumber, null, null))
+        .etag();
+  }
+
+  /**
+   * The parts uploaded so far in part number order, read page by page.
+   */
+  public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+    List<Part> parts = new ArrayList<>();
+    Integer partNumberMarker = null;
+    while (true) {
+      ListPartsResult result = await(listPartsAsync(bucketName, null, objectName, MAX_LISTED_PARTS,
+          partNumberMarker, uploadId, null, null))
+          .result();
+      parts.addAll(result.partList());
+      if (!result.isTruncated()) {
+        return parts;
+      }
+      partNumberMarker = result.nextPartNumberMarker();
+    }
+  }
+
+  public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId,
+                                                     Part[] parts) throws Exception {
+    return await(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null));
+  }
+
+  public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+    await(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+  }
+
+  private <T> T await(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private String encodePath(String objectName) {
+    return URLEncoder.encode(objectName, StandardCharsets.UTF_8)
+        .replace("+", "%20")
+        .replace("%2F", "/");
+  }
+}
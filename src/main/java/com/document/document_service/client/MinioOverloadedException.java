@@ -0,0 +1,27 @@
+package com.document.document_service.client;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A minio call was rejected by its {@link AdaptiveLimiter}. Answered with 503 and {@code Retry-After}, also when it
+ * is the cause of another exception.
+ */
+public class MinioOverloadedException extends ResponseStatusException {
+  private final Duration retryAfter;
+
+  public MinioOverloadedException(String pool, Duration retryAfter) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent minio " + pool + " calls, retry later.");
+    this.retryAfter = retryAfter;
+  }
+
+  @Override
+  public HttpHeaders getHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+    return headers;
+  }
+}
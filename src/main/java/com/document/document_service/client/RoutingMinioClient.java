@@ -0,0 +1,570 @@
+package com.document.document_service.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.common.collect.Multimap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.BucketExistsArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveBucketArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.SetBucketVersioningArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.InternalException;
+import io.minio.errors.InvalidResponseException;
+import io.minio.errors.ServerException;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.Bucket;
+import io.minio.messages.DeleteError;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+
+import lombok.extern.slf4j.Slf4j;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Minio client over several endpoints: the nodes of one cluster, which take reads and writes, and optionally read
+ * replicas such as a replicated site. Every call goes to the healthy node with the fewest calls in flight; the
+ * liveness endpoint of every endpoint is probed in the background and an endpoint is left out after
+ * {@code failureThreshold} failed probes in a row. Writes only go to healthy nodes (all nodes when none is healthy).
+ * <p>
+ * {@code getObject}, {@code statObject} and the first page of {@code listObjects} are hedged: when the call has not
+ * answered within the {@code hedgePercentile} latency of its operation, the same call is sent to another endpoint and
+ * the first successful answer wins. The slower call is abandoned and its response closed as soon as it arrives. A
+ * replica may lag behind the cluster, so a failed hedge only counts when the first call failed as well.
+ * <p>
+ * Calls that are not overridden here (presigning, lifecycle, notifications ..) go to the first node. The calls of
+ * {@link #multipartClient()} are writes: they go to healthy nodes and are not hedged.
+ */
+@Slf4j
+public class RoutingMinioClient extends MinioClient {
+  private static final int LATENCY_SAMPLES = 1024;
+  private static final int MIN_LATENCY_SAMPLES = 100;
+  private static final String LIVENESS_PATH = "/minio/health/live";
+
+  private final List<Endpoint> nodes;
+  private final List<Endpoint> replicas;
+  private final List<Endpoint> allEndpoints;
+  private final ExecutorService executor;
+  private final OkHttpClient probeClient;
+  private final ScheduledExecutorService prober;
+  private final Options options;
+  private final MeterRegistry meterRegistry;
+  private final LatencyWindow getLatency = new LatencyWindow();
+  private final LatencyWindow statLatency = new LatencyWindow();
+  private final LatencyWindow listLatency = new LatencyWindow();
+
+  public RoutingMinioClient(List<Endpoint> nodes, List<Endpoint> replicas, OkHttpClient httpClient,
+                            ExecutorService executor, MeterRegistry meterRegistry, Options options) {
+    super(nodes.getFirst().client);
+    this.nodes = List.copyOf(nodes);
+    this.replicas = List.copyOf(replicas);
+    this.allEndpoints = new ArrayList<>(nodes);
+    this.allEndpoints.addAll(replicas);
+    this.executor = executor;
+    this.meterRegistry = meterRegistry;
+    this.options = options;
+    this.probeClient = httpClient.newBuilder()
+        .callTimeout(options.probeTimeout())
+        .build();
+    this.prober = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+        .name("minio-probe")
+        .daemon(true)
+        .factory());
+
+    for (Endpoint endpoint : allEndpoints) {
+      Gauge.builder("minio.routing.outstanding", endpoint.outstanding, AtomicInteger::get)
+          .description("Calls in flight per minio endpoint")
+          .tag("endpoint", endpoint.url)
+          .register(meterRegistry);
+      Gauge.builder("minio.routing.healthy", endpoint, value -> value.healthy ? 1 : 0)
+          .description("Whether the minio endpoint passed its last health probes")
+          .tag("endpoint", endpoint.url)
+          .register(meterRegistry);
+    }
+    long interval = options.probeInterval().toMillis();
+    prober.scheduleWithFixedDelay(this::probeAll, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void shutdown() {
+    prober.shutdownNow();
+    executor.shutdown();
+  }
+
+  @Override
+  public boolean bucketExists(BucketExistsArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(readTarget(null), client -> client.bucketExists(args), null);
+  }
+
+  @Override
+  public void makeBucket(MakeBucketArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    call(writeTarget(), client -> {
+      client.makeBucket(args);
+      return null;
+    }, null);
+  }
+
+  @Override
+  public void setBucketVersioning(SetBucketVersioningArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    call(writeTarget(), client -> {
+      client.setBucketVersioning(args);
+      return null;
+    }, null);
+  }
+
+  @Override
+  public void removeBucket(RemoveBucketArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    call(writeTarget(), client -> {
+      client.removeBucket(args);
+      return null;
+    }, null);
+  }
+
+  @Override
+  public List<Bucket> listBuckets()
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(readTarget(null), MinioClient::listBuckets, null);
+  }
+
+  @Override
+  public StatObjectResponse statObject(StatObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return hedged(statLatency, client -> client.statObject(args), response -> {
+    });
+  }
+
+  @Override
+  public GetObjectResponse getObject(GetObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return hedged(getLatency, client -> client.getObject(args), RoutingMinioClient::closeQuietly);
+  }
+
+  @Override
+  public ObjectWriteResponse putObject(PutObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(writeTarget(), client -> client.putObject(args), null);
+  }
+
+  @Override
+  public ObjectWriteResponse copyObject(CopyObjectArgs args)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    return call(writeTarget(), client -> client.copyObject(args), null);
+  }
+
+  /**
+   * The first page is read when the listing is started, so it can be hedged; the further pages come from the same
+   * endpoint.
+   */
+  @Override
+  public Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+    return () -> {
+      try {
+        return hedged(listLatency, client -> {
+          Iterator<Result<Item>> results = client.listObjects(args).iterator();
+          results.hasNext();
+          return results;
+        }, results -> {
+        });
+      } catch (Exception e) {
+        throw new RuntimeException("Error listing objects", e);
+      }
+    };
+  }
+
+  /**
+   * The deletes are sent while the results are read, by the node picked when the call is made.
+   */
+  @Override
+  public Iterable<Result<DeleteError>> removeObjects(RemoveObjectsArgs args) {
+    return writeTarget().client.removeObjects(args);
+  }
+
+  /**
+   * The multipart calls routed over the nodes; an upload started on one node of the cluster is continued on any other.
+   */
+  public MinioMultipartClient multipartClient() {
+    return new RoutedMultipartClient();
+  }
+
+  private <T> T hedged(LatencyWindow latency, Call<T> call, Consumer<T> discard)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    Endpoint first = readTarget(null);
+    long hedgeDelayNanos = options.hedge() ? latency.hedgeDelayNanos() : -1;
+    if (hedgeDelayNanos < 0) {
+      return call(first, call, latency);
+    }
+
+    CompletableFuture<T> primary = submit(first, call, latency);
+    try {
+      return primary.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      // slower than usual, hedged below
+    } catch (ExecutionException e) {
+      throw propagate(e.getCause());
+    } catch (InterruptedException e) {
+      primary.thenAccept(discard);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for minio");
+    }
+
+    Endpoint second = readTarget(first);
+    if (second == null) {
+      return await(primary, discard);
+    }
+    hedgeCounter("sent").increment();
+    CompletableFuture<T> backup = submit(second, call, latency);
+    backup.thenRun(() -> {
+      if (!primary.isDone()) {
+        hedgeCounter("won").increment();
+      }
+    });
+    return await(firstSuccess(primary, backup, discard), discard);
+  }
+
+  /**
+   * Completes with the first successful result and discards the later one; fails with the error of the primary call
+   * when both fail.
+   */
+  private <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> primary, CompletableFuture<T> backup,
+                                                Consumer<T> discard) {
+    CompletableFuture<T> winner = new CompletableFuture<>();
+    AtomicInteger failures = new AtomicInteger();
+    for (CompletableFuture<T> future : List.of(primary, backup)) {
+      future.whenComplete((value, error) -> {
+        if (error == null) {
+          if (!winner.complete(value)) {
+            discard.accept(value);
+          }
+        } else if (failures.incrementAndGet() == 2) {
+          primary.whenComplete((primaryValue, primaryError) -> winner.completeExceptionally(primaryError));
+        }
+      });
+    }
+    return winner;
+  }
+
+  private <T> T await(CompletableFuture<T> future, Consumer<T> discard)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw propagate(e.getCause());
+    } catch (InterruptedException e) {
+      future.thenAccept(discard);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for minio");
+    }
+  }
+
+  private <T> CompletableFuture<T> submit(Endpoint endpoint, Call<T> call, LatencyWindow latency) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    executor.execute(() -> {
+      try {
+        future.complete(call(endpoint, call, latency));
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  private <T> T call(Endpoint endpoint, Call<T> call, LatencyWindow latency)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    long startNanos = System.nanoTime();
+    endpoint.outstanding.incrementAndGet();
+    try {
+      T result = call.call(endpoint.client);
+      if (latency != null) {
+        latency.record(System.nanoTime() - startNanos);
+      }
+      return result;
+    } catch (Exception e) {
+      throw propagate(e);
+    } finally {
+      endpoint.outstanding.decrementAndGet();
+    }
+  }
+
+  /**
+   * The healthy node with the fewest calls in flight, then the healthy replica, except {@code excluded}. Without any
+   * healthy endpoint the first call goes to any node and the hedge is skipped.
+   */
+  private Endpoint readTarget(Endpoint excluded) {
+    Endpoint target = leastOutstanding(nodes, excluded);
+    if (target == null) {
+      target = leastOutstanding(replicas, excluded);
+    }
+    if (target == null && excluded == null) {
+      target = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+    }
+    return target;
+  }
+
+  private Endpoint writeTarget() {
+    Endpoint target = leastOutstanding(nodes, null);
+    return target != null ? target : nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+  }
+
+  /**
+   * Starts at a random endpoint, so endpoints with the same count share the calls.
+   */
+  private static Endpoint leastOutstanding(List<Endpoint> endpoints, Endpoint excluded) {
+    Endpoint target = null;
+    int offset = ThreadLocalRandom.current().nextInt(Math.max(1, endpoints.size()));
+    for (int i = 0; i < endpoints.size(); i++) {
+      Endpoint endpoint = endpoints.get((offset + i) % endpoints.size());
+      if (endpoint != excluded && endpoint.healthy
+          && (target == null || endpoint.outstanding.get() < target.outstanding.get())) {
+        target = endpoint;
+      }
+    }
+    return target;
+  }
+
+  private void probeAll() {
+    for (Endpoint endpoint : allEndpoints) {
+      boolean live;
+      Request request = new Request.Builder()
+          .url(endpoint.url.replaceAll("/+$", "") + LIVENESS_PATH)
+          .get()
+          .build();
+      try (Response response = probeClient.newCall(request).execute()) {
+        live = response.isSuccessful();
+      } catch (IOException | RuntimeException e) {
+        live = false;
+      }
+
+      if (live) {
+        if (!endpoint.healthy) {
+          log.info("Minio endpoint is healthy again: {}", endpoint.url);
+        }
+        endpoint.failedProbes = 0;
+        endpoint.healthy = true;
+      } else if (++endpoint.failedProbes >= options.failureThreshold() && endpoint.healthy) {
+        log.warn("Minio endpoint failed {} health probes, routing around it: {}", endpoint.failedProbes,
+            endpoint.url);
+        endpoint.healthy = false;
+      }
+    }
+  }
+
+  private Counter hedgeCounter(String outcome) {
+    return Counter.builder("minio.routing.hedges")
+        .description("Hedged minio calls sent, and those answered first by the hedge")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  private static RuntimeException propagate(Throwable error)
+      throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+      InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+    if (error instanceof ErrorResponseException e) {
+      throw e;
+    } else if (error instanceof InsufficientDataException e) {
+      throw e;
+    } else if (error instanceof InternalException e) {
+      throw e;
+    } else if (error instanceof InvalidKeyException e) {
+      throw e;
+    } else if (error instanceof InvalidResponseException e) {
+      throw e;
+    } else if (error instanceof IOException e) {
+      throw e;
+    } else if (error instanceof NoSuchAlgorithmException e) {
+      throw e;
+    } else if (error instanceof ServerException e) {
+      throw e;
+    } else if (error instanceof XmlParserException e) {
+      throw e;
+    } else if (error instanceof RuntimeException e) {
+      return e;
+    } else if (error instanceof Error e) {
+      throw e;
+    }
+    return new RuntimeException("Minio call failed", error);
+  }
+
+  private static void closeQuietly(GetObjectResponse response) {
+    try {
+      response.close();
+    } catch (IOException e) {
+      log.debug("Discarded minio response could not be closed", e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Call<T> {
+    T call(MinioClient client) throws Exception;
+  }
+
+  @FunctionalInterface
+  private interface MultipartCall<T> {
+    T call(MinioMultipartClient client) throws Exception;
+  }
+
+  private final class RoutedMultipartClient extends MinioMultipartClient {
+    private RoutedMultipartClient() {
+      super(nodes.getFirst().multipartClient);
+    }
+
+    @Override
+    public String createMultipartUpload(String bucketName, String objectName, Multimap<String, String> headers)
+        throws Exception {
+      return route(client -> client.createMultipartUpload(bucketName, objectName, headers));
+    }
+
+    @Override
+    public String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                                 String sourceBucket, String sourceObject, String sourceVersionId, long offset,
+                                 long length) throws Exception {
+      return route(client -> client.uploadPartCopy(bucketName, objectName, uploadId, partNumber, sourceBucket,
+          sourceObject, sourceVersionId, offset, length));
+    }
+
+    @Override
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber,
+                             RandomAccessFile data, long length) throws Exception {
+      return route(client -> client.uploadPart(bucketName, objectName, uploadId, partNumber, data, length));
+    }
+
+    @Override
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+      return route(client -> client.listParts(bucketName, objectName, uploadId));
+    }
+
+    @Override
+    public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId,
+                                                       Part[] parts) throws Exception {
+      return route(client -> client.completeMultipartUpload(bucketName, objectName, uploadId, parts));
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+      route(client -> {
+        client.abortMultipartUpload(bucketName, objectName, uploadId);
+        return null;
+      });
+    }
+
+    private <T> T route(MultipartCall<T> call) throws Exception {
+      Endpoint endpoint = writeTarget();
+      endpoint.outstanding.incrementAndGet();
+      try {
+        return call.call(endpoint.multipartClient);
+      } finally {
+        endpoint.outstanding.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * One minio endpoint and the clients that call it.
+   */
+  public static final class Endpoint {
+    private final String url;
+    private final MinioClient client;
+    private final MinioMultipartClient multipartClient;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean healthy = true;
+    private int failedProbes;
+
+    public Endpoint(String url, MinioClient client, MinioMultipartClient multipartClient) {
+      this.url = url;
+      this.client = client;
+      this.multipartClient = multipartClient;
+    }
+  }
+
+  // qualified, the builder inherited from MinioClient shadows the import
+  @lombok.Builder
+  public record Options(
+      boolean hedge,
+      double hedgePercentile,
+      Duration hedgeMinDelay,
+      Duration probeInterval,
+      Duration probeTimeout,
+      int failureThreshold
+  ) {
+  }
+
+  /**
+   * The latest latencies of one operation. The hedge delay is their percentile, recomputed every
+   * {@code LATENCY_SAMPLES / 8} samples; there is no hedging until enough samples are known.
+   */
+  private final class LatencyWindow {
+    private final long[] samples = new long[LATENCY_SAMPLES];
+    private int count;
+    private long recorded;
+    private volatile long hedgeDelayNanos = -1;
+
+    private synchronized void record(long nanos) {
+      samples[count++ % LATENCY_SAMPLES] = nanos;
+      if (++recorded % (LATENCY_SAMPLES / 8) == 0 || recorded == MIN_LATENCY_SAMPLES) {
+        int size = Math.min(count, LATENCY_SAMPLES);
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        long percentile = sorted[(int) Math.min(size - 1, Math.ceil(options.hedgePercentile() * size) - 1)];
+        hedgeDelayNanos = Math.max(percentile, options.hedgeMinDelay().toNanos());
+      }
+      if (count == LATENCY_SAMPLES * 2) {
+        count = LATENCY_SAMPLES;
+      }
+    }
+
+    private long hedgeDelayNanos() {
+      return recorded < MIN_LATENCY_SAMPLES ? -1 : hedgeDelayNanos;
+    }
+  }
+}
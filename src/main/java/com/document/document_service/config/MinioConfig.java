@@ -2,29 +2,285 @@ package com.document.document_service.config;
 
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import com.document.document_service.client.AdaptiveLimiter;
+import com.document.document_service.client.InstrumentedMinioClient;
+import com.document.document_service.client.LimitedMinioClient;
+import com.document.document_service.client.MinioMultipartClient;
+import com.document.document_service.client.RoutingMinioClient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 
+import jakarta.annotation.PreDestroy;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
 public class MinioConfig {
   @Value("${minio.url}")
   private String minioUrl;
 
+  // further nodes of the same cluster, calls are spread over all healthy nodes
+  @Value("${minio.endpoints:}")
+  private Set<String> endpoints;
+
+  // read only endpoints, e.g. a replicated site, used for hedged reads and when no node is healthy
+  @Value("${minio.read-replicas:}")
+  private Set<String> readReplicas;
+
   @Value("${minio.access-key}")
   private String accessKey;
 
   @Value("${minio.secret-key}")
   private String secretKey;
 
+  @Value("${minio.http.max-requests:256}")
+  private int maxRequests;
+
+  // okhttp has no connection limit of its own; the dispatcher limit caps the connections per host
+  @Value("${minio.http.max-requests-per-host:64}")
+  private int maxRequestsPerHost;
+
+  @Value("${minio.http.max-idle-connections:64}")
+  private int maxIdleConnections;
+
+  @Value("${minio.http.keep-alive:PT5M}")
+  private Duration keepAlive;
+
+  @Value("${minio.http.connect-timeout:PT10S}")
+  private Duration connectTimeout;
+
+  @Value("${minio.http.read-timeout:PT5M}")
+  private Duration readTimeout;
+
+  @Value("${minio.http.write-timeout:PT5M}")
+  private Duration writeTimeout;
+
+  @Value("${minio.http.http2:false}")
+  private boolean http2;
+
+  @Value("${minio.routing.hedge.enabled:true}")
+  private boolean hedge;
+
+  @Value("${minio.routing.hedge.percentile:0.95}")
+  private double hedgePercentile;
+
+  @Value("${minio.routing.hedge.min-delay:PT0.02S}")
+  private Duration hedgeMinDelay;
+
+  @Value("${minio.routing.probe.interval:PT5S}")
+  private Duration probeInterval;
+
+  @Value("${minio.routing.probe.timeout:PT2S}")
+  private Duration probeTimeout;
+
+  @Value("${minio.routing.probe.failure-threshold:2}")
+  private int failureThreshold;
+
+  @Value("${minio.limiter.enabled:true}")
+  private boolean limiterEnabled;
+
+  @Value("${minio.limiter.backoff-ratio:0.9}")
+  private double limiterBackoffRatio;
+
+  @Value("${minio.limiter.max-wait:PT0.5S}")
+  private Duration limiterMaxWait;
+
+  @Value("${minio.limiter.retry-after:PT1S}")
+  private Duration limiterRetryAfter;
+
+  // metadata calls: stat and bucket calls
+  @Value("${minio.limiter.metadata.initial-limit:64}")
+  private int metadataInitialLimit;
+
+  @Value("${minio.limiter.metadata.max-limit:512}")
+  private int metadataMaxLimit;
+
+  @Value("${minio.limiter.metadata.drop-latency:PT1S}")
+  private Duration metadataDropLatency;
+
+  // data transfers: get, put and copy; only the time to the first byte of a get is judged
+  @Value("${minio.limiter.transfer.initial-limit:32}")
+  private int transferInitialLimit;
+
+  @Value("${minio.limiter.transfer.max-limit:256}")
+  private int transferMaxLimit;
+
+  @Value("${minio.limiter.transfer.drop-latency:PT2S}")
+  private Duration transferDropLatency;
+
+  // listings and multi-object deletes, judged by their first page
+  @Value("${minio.limiter.bulk.initial-limit:8}")
+  private int bulkInitialLimit;
+
+  @Value("${minio.limiter.bulk.max-limit:64}")
+  private int bulkMaxLimit;
+
+  @Value("${minio.limiter.bulk.drop-latency:PT5S}")
+  private Duration bulkDropLatency;
+
+  @Value("${metrics.slow-call-threshold:PT1S}")
+  private Duration slowCallThreshold;
+
+  private RoutingMinioClient routingClient;
+
+  // built with the minio client, on the same endpoints
+  private MinioMultipartClient multipartClient;
+
+  @PreDestroy
+  void shutdown() {
+    if (routingClient != null) {
+      routingClient.shutdown();
+    }
+  }
+
+  /**
+   * One transport shared by both minio clients, so they use the same connection pool and request limits. The minio
+   * clients are built on the async client, which queues every call on the dispatcher, so its per host limit (5 by
+   * default) is what bounds the concurrent calls to minio. The dispatcher keeps its own platform threads even with
+   * virtual threads: a listing iterator pins its virtual thread while it waits for a page, and with all carriers
+   * pinned a virtual dispatcher thread could never complete the pages they wait for.
+   */
+  @Bean
+  public OkHttpClient minioHttpClient() {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+    return new OkHttpClient.Builder()
+        .dispatcher(dispatcher)
+        .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+        .connectTimeout(connectTimeout)
+        .readTimeout(readTimeout)
+        .writeTimeout(writeTimeout)
+        // http/2 is only negotiated over https, a plain http endpoint stays on http/1.1
+        .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+        .build();
+  }
+
+  /**
+   * Calls run under the adaptive limits of {@code minio.limiter} unless they are disabled.
+   */
+  @Bean
+  public MinioClient minioClient(OkHttpClient minioHttpClient, MeterRegistry meterRegistry,
+                                 TaskExecutors taskExecutors) {
+    MinioClient client = routedClient(minioHttpClient, meterRegistry, taskExecutors);
+    if (!limiterEnabled) {
+      return client;
+    }
+
+    return new LimitedMinioClient(client,
+        newLimiter("metadata", metadataInitialLimit, metadataMaxLimit, metadataDropLatency, meterRegistry),
+        newLimiter("transfer", transferInitialLimit, transferMaxLimit, transferDropLatency, meterRegistry),
+        newLimiter("bulk", bulkInitialLimit, bulkMaxLimit, bulkDropLatency, meterRegistry));
+  }
+
+  /**
+   * A single endpoint gets a plain client; with {@code minio.endpoints} or {@code minio.read-replicas} the calls are
+   * routed over the endpoints, each with a client of its own.
+   */
+  private MinioClient routedClient(OkHttpClient minioHttpClient, MeterRegistry meterRegistry,
+                                   TaskExecutors taskExecutors) {
+    Set<String> nodeUrls = new LinkedHashSet<>();
+    nodeUrls.add(minioUrl);
+    nodeUrls.addAll(endpoints);
+    if (nodeUrls.size() == 1 && readReplicas.isEmpty()) {
+      InstrumentedMinioClient client = newClient(minioUrl, minioHttpClient, meterRegistry);
+      multipartClient = client.instrument(newMultipartClient(minioUrl, minioHttpClient));
+      return client;
+    }
+    if (!(hedgePercentile > 0 && hedgePercentile < 1)) {
+      throw new IllegalStateException("minio.routing.hedge.percentile must be between 0 and 1.");
+    }
+    if (failureThreshold < 1) {
+      throw new IllegalStateException("minio.routing.probe.failure-threshold must be at least 1.");
+    }
+
+    List<RoutingMinioClient.Endpoint> nodes = new ArrayList<>();
+    for (String url : nodeUrls) {
+      nodes.add(newEndpoint(url, minioHttpClient, meterRegistry));
+    }
+    List<RoutingMinioClient.Endpoint> replicas = new ArrayList<>();
+    for (String url : readReplicas) {
+      replicas.add(newEndpoint(url, minioHttpClient, meterRegistry));
+    }
+
+    RoutingMinioClient.Options options = RoutingMinioClient.Options.builder()
+        .hedge(hedge)
+        .hedgePercentile(hedgePercentile)
+        .hedgeMinDelay(hedgeMinDelay)
+        .probeInterval(probeInterval)
+        .probeTimeout(probeTimeout)
+        .failureThreshold(failureThreshold)
+        .build();
+    routingClient = new RoutingMinioClient(nodes, replicas, minioHttpClient,
+        taskExecutors.newUnboundedPool("minio-hedge"), meterRegistry, options);
+    multipartClient = routingClient.multipartClient();
+    return routingClient;
+  }
+
+  /**
+   * Scheduled tasks such as the catalog reconcile iterate minio listings, so they run on platform threads of a pool of
+   * {@code spring.task.scheduling.pool.size} instead of the virtual threads the scheduler would get otherwise.
+   */
   @Bean
-  public MinioClient minioClient() {
+  public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+    return builder.build();
+  }
+
+  /**
+   * Multipart uploads take the same way as the other calls: per endpoint instrumented clients, routed over the healthy
+   * nodes when there are several, under the limiters of the minio client. The minio client builds them, so it comes
+   * first.
+   */
+  @Bean
+  public MinioMultipartClient minioMultipartClient(MinioClient minioClient) {
+    return minioClient instanceof LimitedMinioClient limited ? limited.limit(multipartClient) : multipartClient;
+  }
+
+  private AdaptiveLimiter newLimiter(String pool, int initialLimit, int maxLimit, Duration dropLatency,
+                                     MeterRegistry meterRegistry) {
+    AdaptiveLimiter.Options options = AdaptiveLimiter.Options.builder()
+        .initialLimit(initialLimit)
+        .minLimit(Math.min(initialLimit, 2))
+        .maxLimit(maxLimit)
+        .backoffRatio(limiterBackoffRatio)
+        .dropLatency(dropLatency)
+        .maxWait(limiterMaxWait)
+        .maxQueue(maxLimit)
+        .retryAfter(limiterRetryAfter)
+        .build();
+    return new AdaptiveLimiter(pool, options, meterRegistry);
+  }
+
+  private RoutingMinioClient.Endpoint newEndpoint(String url, OkHttpClient minioHttpClient,
+                                                  MeterRegistry meterRegistry) {
+    InstrumentedMinioClient client = newClient(url, minioHttpClient, meterRegistry);
+    return new RoutingMinioClient.Endpoint(url, client, client.instrument(newMultipartClient(url, minioHttpClient)));
+  }
+
+  private InstrumentedMinioClient newClient(String url, OkHttpClient minioHttpClient, MeterRegistry meterRegistry) {
     MinioClient build = MinioClient.builder()
-        .endpoint(minioUrl)
+        .endpoint(url)
         .credentials(accessKey, secretKey)
+        .httpClient(minioHttpClient)
         .build();
 
     try {
@@ -33,6 +289,22 @@ public class MinioConfig {
       throw new RuntimeException("Error creating MinioClient", e);
     }
 
-    return build;
+    return new InstrumentedMinioClient(build, meterRegistry, slowCallThreshold);
+  }
+
+  private MinioMultipartClient newMultipartClient(String url, OkHttpClient minioHttpClient) {
+    MinioAsyncClient build = MinioAsyncClient.builder()
+        .endpoint(url)
+        .credentials(accessKey, secretKey)
+        .httpClient(minioHttpClient)
+        .build();
+
+    try {
+      build.ignoreCertCheck();
+    } catch (KeyManagementException | NoSuchAlgorithmException e) {
+      throw new RuntimeException("Error creating MinioMultipartClient", e);
+    }
+
+    return new MinioMultipartClient(build);
   }
 }
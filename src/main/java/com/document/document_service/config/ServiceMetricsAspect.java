@@ -0,0 +1,81 @@
+package com.document.document_service.config;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times the public methods of the document and bucket services ({@code document.service.calls}) by service,
+ * operation, bucket and outcome, and logs calls slower than the threshold.
+ */
+@Slf4j
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+  private static final Set<String> BUCKET_PARAMETERS = Set.of("bucketName", "fromBucket");
+  private static final String NO_BUCKET = "none";
+
+  private final MeterRegistry meterRegistry;
+
+  @Value("${metrics.slow-call-threshold:PT1S}")
+  private Duration slowCallThreshold;
+
+  @Around("execution(public * com.document.document_service.service.DocumentService.*(..))"
+      + " || execution(public * com.document.document_service.service.BucketService.*(..))")
+  public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+    MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+    String service = signature.getDeclaringType().getSimpleName();
+    String operation = signature.getName();
+    String bucketName = findBucketName(signature.getParameterNames(), joinPoint.getArgs());
+
+    long startNanos = System.nanoTime();
+    boolean success = false;
+    try {
+      Object result = joinPoint.proceed();
+      success = true;
+      return result;
+    } finally {
+      long elapsedNanos = System.nanoTime() - startNanos;
+      Timer.builder("document.service.calls")
+          .description("Document and bucket service calls")
+          .tag("service", service)
+          .tag("operation", operation)
+          .tag("bucket", bucketName)
+          .tag("outcome", success ? "success" : "error")
+          .publishPercentileHistogram()
+          .register(meterRegistry)
+          .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+      if (elapsedNanos > slowCallThreshold.toNanos()) {
+        log.warn("Slow service call: {}.{}, bucket: {}, outcome: {}, took: {} ms", service, operation, bucketName,
+            success ? "success" : "error", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+      }
+    }
+  }
+
+  private String findBucketName(String[] parameterNames, Object[] args) {
+    if (parameterNames == null) {
+      return NO_BUCKET;
+    }
+    for (int i = 0; i < parameterNames.length; i++) {
+      if (BUCKET_PARAMETERS.contains(parameterNames[i]) && args[i] instanceof String bucketName) {
+        return bucketName;
+      }
+    }
+    return NO_BUCKET;
+  }
+}
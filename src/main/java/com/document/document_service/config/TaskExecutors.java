@@ -0,0 +1,52 @@
+package com.document.document_service.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the executors of the internal MinIO fan-out. With {@code spring.threads.virtual.enabled} the tasks run on
+ * virtual threads, like the request handling, otherwise on named platform threads. Fixed pools keep their size either
+ * way, since the sizes are the configured limits of the work sent to MinIO, not a thread budget.
+ * <p>
+ * Tasks that iterate MinIO listings always run on platform threads: the listing iterator of the minio client waits for
+ * the next page inside a synchronized method, which pins a virtual thread to its carrier for the whole call.
+ */
+@Component
+public class TaskExecutors {
+  @Value("${spring.threads.virtual.enabled:false}")
+  private boolean virtualThreads;
+
+  public boolean isVirtual() {
+    return virtualThreads;
+  }
+
+  public ExecutorService newFixedPool(String name, int threads) {
+    return Executors.newFixedThreadPool(threads, threadFactory(name));
+  }
+
+  public ExecutorService newListingPool(String name, int threads) {
+    return Executors.newFixedThreadPool(threads, platformThreadFactory(name));
+  }
+
+  public ExecutorService newUnboundedPool(String name) {
+    if (virtualThreads) {
+      return Executors.newThreadPerTaskExecutor(threadFactory(name));
+    }
+    return Executors.newCachedThreadPool(threadFactory(name));
+  }
+
+  private ThreadFactory threadFactory(String name) {
+    if (virtualThreads) {
+      return Thread.ofVirtual().name(name + "-", 0).factory();
+    }
+    return platformThreadFactory(name);
+  }
+
+  private static ThreadFactory platformThreadFactory(String name) {
+    return Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+  }
+}
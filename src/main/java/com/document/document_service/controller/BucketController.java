@@ -3,8 +3,11 @@ package com.document.document_service.controller;
 import java.util.List;
 
 import com.document.document_service.dto.response.BucketResponse;
+import com.document.document_service.dto.response.DeleteResponse;
+import com.document.document_service.dto.response.RetentionReportResponse;
 import com.document.document_service.mapper.BucketMapper;
 import com.document.document_service.service.BucketService;
+import com.document.document_service.service.RetentionService;
 
 import io.minio.messages.Bucket;
 
@@ -22,6 +25,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("api/v1/bucket")
 public class BucketController {
   private final BucketService bucketService;
+  private final RetentionService retentionService;
 
   @GetMapping
   public List<BucketResponse> getAllBuckets() {
@@ -46,8 +50,24 @@ public class BucketController {
     return BucketMapper.toDto(bucket);
   }
 
+  /**
+   * Dry run of the retention rule of the bucket: the versions it would remove now.
+   */
+  @GetMapping("/{bucketName}/retention/report")
+  public RetentionReportResponse getRetentionReport(@PathVariable("bucketName") String bucketName) {
+    return retentionService.report(bucketName);
+  }
+
+  /**
+   * Removes the versions expired by the retention rule of the bucket now.
+   */
+  @PostMapping("/{bucketName}/retention/compact")
+  public RetentionReportResponse compactVersions(@PathVariable("bucketName") String bucketName) {
+    return retentionService.compact(bucketName);
+  }
+
   @DeleteMapping("/{bucketName}")
-  public void deleteBucket(@PathVariable("bucketName") String bucketName) throws Exception {
-    bucketService.deleteBucket(bucketName);
+  public DeleteResponse deleteBucket(@PathVariable("bucketName") String bucketName) throws Exception {
+    return bucketService.deleteBucket(bucketName);
   }
 }
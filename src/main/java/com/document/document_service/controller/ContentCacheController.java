@@ -0,0 +1,22 @@
+package com.document.document_service.controller;
+
+import com.document.document_service.dto.response.ContentCacheStatsResponse;
+import com.document.document_service.service.ContentCacheService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("api/v1/cache/content")
+public class ContentCacheController {
+  private final ContentCacheService contentCacheService;
+
+  @GetMapping("/stats")
+  public ContentCacheStatsResponse getStats() {
+    return contentCacheService.getStats();
+  }
+}
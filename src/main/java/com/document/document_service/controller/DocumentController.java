@@ -2,70 +2,364 @@ package com.document.document_service.controller;
 
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
-import java.util.Objects;
+import java.util.Optional;
 
+import com.document.document_service.dto.response.BatchUploadResponse;
+import com.document.document_service.dto.response.DeleteResponse;
+import com.document.document_service.dto.response.DocumentPageResponse;
 import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.DocumentVersionPageResponse;
+import com.document.document_service.dto.response.PresignedUrlResponse;
+import com.document.document_service.service.BatchUploadService;
+import com.document.document_service.service.Codec;
+import com.document.document_service.service.DirectTransferService;
 import com.document.document_service.service.DocumentService;
+import com.document.document_service.service.ExportService;
+import com.document.document_service.service.RenditionService;
+import com.document.document_service.service.RenditionService.Rendition;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import io.minio.StatObjectResponse;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import lombok.RequiredArgsConstructor;
 
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("api/v1/document")
 public class DocumentController {
   private final DocumentService documentService;
+  private final BatchUploadService batchUploadService;
+  private final ExportService exportService;
+  private final DirectTransferService directTransferService;
+  private final RenditionService renditionService;
+  private final ObjectMapper objectMapper;
 
   @PostMapping(value = "/{bucketName}/file", consumes = MULTIPART_FORM_DATA_VALUE)
-  public ResponseEntity<Resource> uploadFile(@PathVariable("bucketName") String bucketName,
-                                             @RequestPart("file") MultipartFile file) throws Exception {
-    MultipartFile uploadedFile = documentService.uploadFile(bucketName, file);
-    String encodedFileName = URLEncoder.encode(Objects.requireNonNull(uploadedFile.getOriginalFilename()),
-        StandardCharsets.UTF_8);
+  public DocumentResponse uploadFile(@PathVariable("bucketName") String bucketName,
+                                     @RequestPart("file") MultipartFile file) throws Exception {
+    return documentService.uploadFile(bucketName, file);
+  }
 
-    return ResponseEntity.ok()
-        .contentType(MediaType.valueOf(Objects.requireNonNull(uploadedFile.getContentType())))
-        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + encodedFileName + "\"")
-        .body(new ByteArrayResource(uploadedFile.getBytes()));
+  /**
+   * Uploads all {@code files} parts of the request concurrently; every file gets its own result.
+   */
+  @PostMapping(value = "/{bucketName}/files", consumes = MULTIPART_FORM_DATA_VALUE)
+  public BatchUploadResponse uploadFiles(@PathVariable("bucketName") String bucketName,
+                                         @RequestPart("files") List<MultipartFile> files) {
+    return batchUploadService.uploadFiles(bucketName, files);
+  }
+
+  /**
+   * Uploads the files of the ZIP or TAR archive in the request body, expanded while it streams in. The archive type is
+   * taken from the content type: application/zip, application/x-tar or application/gzip.
+   */
+  @PostMapping("/{bucketName}/files/archive")
+  public BatchUploadResponse uploadArchive(@PathVariable("bucketName") String bucketName,
+                                           HttpServletRequest request) throws Exception {
+    return batchUploadService.uploadArchive(bucketName, request.getContentType(), request.getInputStream());
   }
 
+  /**
+   * Streaming upload: the request body is the file content and is piped to minio without being buffered first.
+   */
+  @PutMapping("/{bucketName}/file/{fileName}")
+  public DocumentResponse uploadFileStream(@PathVariable("bucketName") String bucketName,
+                                           @PathVariable("fileName") String fileName,
+                                           HttpServletRequest request) throws Exception {
+    return documentService.uploadFile(bucketName, fileName, request.getContentType(), request.getInputStream(),
+        request.getContentLengthLong());
+  }
+
+  /**
+   * Downloads the file with conditional and range request support. The object is stat-ed first, so If-None-Match and
+   * If-Modified-Since are answered with 304 without reading it, and Range requests (also multi-range) read only the
+   * requested bytes of the same version. Compressed versions are sent as they are stored, with Content-Encoding, when
+   * the client accepts their codec and asks for the whole file; otherwise they are decompressed on the way. With
+   * {@code minio.direct-transfer.redirect-downloads} the client is redirected to a presigned URL instead.
+   */
   @GetMapping("/{bucketName}/file/{fileName}")
-  public ResponseEntity<Resource> downloadFile(@PathVariable("bucketName") String bucketName,
-                                               @PathVariable("fileName") String fileName,
-                                               @RequestParam(value = "versionId", required = false) String versionId)
-      throws Exception {
-    InputStream data = documentService.downloadFile(bucketName, fileName, versionId);
+  public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable("bucketName") String bucketName,
+                                                            @PathVariable("fileName") String fileName,
+                                                            @RequestParam(value = "versionId", required = false)
+                                                            String versionId,
+                                                            @RequestHeader(value = HttpHeaders.RANGE, required = false)
+                                                            String range,
+                                                            @RequestHeader(value = HttpHeaders.IF_RANGE,
+                                                                required = false) String ifRange,
+                                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING,
+                                                                required = false) String acceptEncoding,
+                                                            WebRequest webRequest) throws Exception {
+    if (directTransferService.isRedirectDownloads()) {
+      return redirect(directTransferService.presignDownload(bucketName, fileName, versionId));
+    }
+
+    StatObjectResponse stat = documentService.statFile(bucketName, fileName, versionId);
+    Codec codec = Codec.of(stat.userMetadata());
+    boolean passThrough = codec != null && range == null && acceptsEncoding(acceptEncoding, codec.encoding());
+    // the encoded bytes are a different representation, so they need their own validator
+    String etag = passThrough ? "\"" + stat.etag() + "-" + codec.encoding() + "\"" : "\"" + stat.etag() + "\"";
+    long lastModified = stat.lastModified().toInstant().toEpochMilli();
+    if (webRequest.checkNotModified(etag, lastModified)) {
+      return null;
+    }
+
+    // later reads are pinned to the stat-ed version, so all ranges come from the same content
+    String resolvedVersionId = stat.versionId() == null || stat.versionId().equals("null") ? null : stat.versionId();
+    long length = passThrough ? stat.size() : Codec.originalSize(stat);
+    MediaType contentType = stat.contentType() == null
+        ? MediaType.APPLICATION_OCTET_STREAM
+        : MediaType.parseMediaType(stat.contentType());
     String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8);
 
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(etag);
+    headers.setLastModified(lastModified);
+    headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+    headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + encodedFileName + "\"");
+    // a version id always points at the same bytes, so such responses never need to be revalidated
+    headers.setCacheControl(versionId != null && !versionId.isEmpty()
+        ? "private, max-age=31536000, immutable"
+        : "private, no-cache");
+    if (codec != null) {
+      headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+    }
+    if (passThrough) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, codec.encoding());
+    }
+    boolean decode = codec != null && !passThrough;
+
+    List<HttpRange> ranges = range != null && isIfRangeSatisfied(ifRange, etag, lastModified)
+        ? parseRanges(range)
+        : List.of();
+
+    if (ranges.isEmpty()) {
+      headers.setContentType(contentType);
+      headers.setContentLength(length);
+      return ResponseEntity.ok()
+          .headers(headers)
+          .body(outputStream -> copy(bucketName, fileName, resolvedVersionId, length, null, null, decode,
+              outputStream));
+    }
+
+    for (HttpRange httpRange : ranges) {
+      if (length == 0 || !isSatisfiable(httpRange, length)) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+            .build();
+      }
+    }
+
+    if (ranges.size() == 1) {
+      long start = ranges.getFirst().getRangeStart(length);
+      long end = ranges.getFirst().getRangeEnd(length);
+      headers.setContentType(contentType);
+      headers.setContentLength(end - start + 1);
+      headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+      return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+          .headers(headers)
+          .body(outputStream -> copy(bucketName, fileName, resolvedVersionId, length, start, end - start + 1,
+              decode, outputStream));
+    }
+
+    String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+    headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+    return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+        .headers(headers)
+        .body(outputStream -> {
+          for (HttpRange httpRange : ranges) {
+            long start = httpRange.getRangeStart(length);
+            long end = httpRange.getRangeEnd(length);
+            String partHeaders = "\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n";
+            outputStream.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+            copy(bucketName, fileName, resolvedVersionId, length, start, end - start + 1, decode, outputStream);
+          }
+          outputStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        });
+  }
+
+  /**
+   * Thumbnail or preview ({@code rendition.sizes}) of an image or the first page of a PDF as JPEG, rendered on first
+   * use. The renditions of a version never change, so with a {@code versionId} they may be cached for good.
+   */
+  @GetMapping("/{bucketName}/file/{fileName}/rendition/{rendition}")
+  public ResponseEntity<byte[]> getRendition(@PathVariable("bucketName") String bucketName,
+                                             @PathVariable("fileName") String fileName,
+                                             @PathVariable("rendition") String rendition,
+                                             @RequestParam(value = "versionId", required = false) String versionId,
+                                             WebRequest webRequest) throws Exception {
+    boolean versioned = versionId != null && !versionId.isEmpty();
+    // a cached rendition of a version is revalidated without any call to minio
+    if (versioned && webRequest.checkNotModified(renditionETag(versionId, rendition))) {
+      return null;
+    }
+
+    Optional<Rendition> found = renditionService.getRendition(bucketName, fileName, versionId, rendition);
+    if (found.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    String etag = renditionETag(found.get().versionId(), rendition);
+    if (!versioned && webRequest.checkNotModified(etag)) {
+      return null;
+    }
+
     return ResponseEntity.ok()
-        .contentType(MediaType.parseMediaType("application/octet-stream"))
-        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + encodedFileName + "\"")
-        .body(new InputStreamResource(data));
+        .contentType(MediaType.IMAGE_JPEG)
+        .eTag(etag)
+        .header(HttpHeaders.CACHE_CONTROL, versioned ? "private, max-age=31536000, immutable" : "private, no-cache")
+        .body(found.get().data());
   }
 
+  /**
+   * Presigned GET of the file (of the version when {@code versionId} is given) as JSON, or as a redirect with
+   * {@code redirect=true}; the bytes then flow between the client and minio directly.
+   */
+  @GetMapping("/{bucketName}/file/{fileName}/presigned")
+  public ResponseEntity<PresignedUrlResponse> presignDownload(@PathVariable("bucketName") String bucketName,
+                                                              @PathVariable("fileName") String fileName,
+                                                              @RequestParam(value = "versionId", required = false)
+                                                              String versionId,
+                                                              @RequestParam(value = "redirect", defaultValue = "false")
+                                                              boolean redirect) throws Exception {
+    PresignedUrlResponse presigned = directTransferService.presignDownload(bucketName, fileName, versionId);
+    return redirect ? redirect(presigned) : ResponseEntity.ok(presigned);
+  }
+
+  /**
+   * Presigned PUT for a new version, or with {@code form=true} the fields of a browser form upload (POST policy, size
+   * limited by {@code minio.direct-transfer.max-upload-size}). Call the completion endpoint after the upload.
+   */
+  @PostMapping("/{bucketName}/file/{fileName}/presigned")
+  public PresignedUrlResponse presignUpload(@PathVariable("bucketName") String bucketName,
+                                            @PathVariable("fileName") String fileName,
+                                            @RequestParam(value = "contentType", required = false) String contentType,
+                                            @RequestParam(value = "form", defaultValue = "false") boolean form)
+      throws Exception {
+    return form
+        ? directTransferService.presignPostPolicy(bucketName, fileName, contentType)
+        : directTransferService.presignUpload(bucketName, fileName);
+  }
+
+  /**
+   * Completion callback of a direct upload: records the uploaded version (the latest one without {@code versionId},
+   * the id is in the {@code x-amz-version-id} header of the minio response).
+   */
+  @PostMapping("/{bucketName}/file/{fileName}/presigned/complete")
+  public DocumentResponse completeDirectUpload(@PathVariable("bucketName") String bucketName,
+                                               @PathVariable("fileName") String fileName,
+                                               @RequestParam(value = "versionId", required = false)
+                                               String versionId) throws Exception {
+    return documentService.completeDirectUpload(bucketName, fileName, versionId);
+  }
+
+  /**
+   * Lists all documents with their version histories, or with {@code latestOnly} only their latest versions.
+   */
   @GetMapping("/{bucketName}/documents")
-  public List<DocumentResponse> getAllDocuments(@PathVariable("bucketName") String bucketName) throws Exception {
-    return documentService.getAllDocuments(bucketName);
+  public List<DocumentResponse> getAllDocuments(@PathVariable("bucketName") String bucketName,
+                                                @RequestParam(value = "latestOnly", defaultValue = "false")
+                                                boolean latestOnly) throws Exception {
+    return documentService.getAllDocuments(bucketName, latestOnly);
+  }
+
+  @GetMapping("/{bucketName}/documents/page")
+  public DocumentPageResponse getDocumentPage(@PathVariable("bucketName") String bucketName,
+                                              @RequestParam(value = "prefix", required = false) String prefix,
+                                              @RequestParam(value = "continuationToken", required = false)
+                                              String continuationToken,
+                                              @RequestParam(value = "pageSize", defaultValue = "100") int pageSize) {
+    return documentService.getDocumentPage(bucketName, prefix, continuationToken, pageSize);
+  }
+
+  /**
+   * Streams the documents as newline delimited json (default) or as one json array with {@code format=array}.
+   */
+  @GetMapping("/{bucketName}/documents/stream")
+  public ResponseEntity<StreamingResponseBody> streamDocuments(@PathVariable("bucketName") String bucketName,
+                                                               @RequestParam(value = "prefix", required = false)
+                                                               String prefix,
+                                                               @RequestParam(value = "format", defaultValue = "ndjson")
+                                                               String format) {
+    boolean jsonArray = "array".equalsIgnoreCase(format);
+    ObjectWriter writer = objectMapper.writer().withRootValueSeparator("\n");
+
+    StreamingResponseBody body = outputStream -> {
+      try (SequenceWriter sequenceWriter = jsonArray
+          ? writer.writeValuesAsArray(outputStream)
+          : writer.writeValues(outputStream)) {
+        documentService.streamDocuments(bucketName, prefix, document -> {
+          try {
+            sequenceWriter.write(document);
+            sequenceWriter.flush();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+    };
+
+    return ResponseEntity.ok()
+        .contentType(jsonArray ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_NDJSON)
+        .body(body);
+  }
+
+  /**
+   * Streams the documents under the prefix, or only the given file names, as one ZIP. With {@code allVersions} the
+   * older versions are included as well, named with their version label (report.v1.pdf).
+   */
+  @GetMapping("/{bucketName}/export")
+  public ResponseEntity<StreamingResponseBody> exportDocuments(@PathVariable("bucketName") String bucketName,
+                                                               @RequestParam(value = "prefix", required = false)
+                                                               String prefix,
+                                                               @RequestParam(value = "fileName", required = false)
+                                                               List<String> fileNames,
+                                                               @RequestParam(value = "allVersions",
+                                                                   defaultValue = "false") boolean allVersions,
+                                                               @RequestParam(value = "storeCompressed",
+                                                                   defaultValue = "true") boolean storeCompressed) {
+    String encodedFileName = URLEncoder.encode(bucketName, StandardCharsets.UTF_8) + ".zip";
+
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + encodedFileName + "\"")
+        .body(outputStream -> exportService.export(bucketName, prefix, fileNames, allVersions, storeCompressed,
+            outputStream));
   }
 
   @GetMapping("/{bucketName}/document/{fileName}/metadata")
@@ -74,6 +368,19 @@ public class DocumentController {
     return documentService.getDocument(bucketName, fileName);
   }
 
+  /**
+   * One page of the versions of a document, newest first, with the same v1..vN labels as the document metadata.
+   */
+  @GetMapping("/{bucketName}/document/{fileName}/versions")
+  public DocumentVersionPageResponse getVersionPage(@PathVariable("bucketName") String bucketName,
+                                                    @PathVariable("fileName") String fileName,
+                                                    @RequestParam(value = "continuationToken", required = false)
+                                                    String continuationToken,
+                                                    @RequestParam(value = "pageSize", defaultValue = "100")
+                                                    int pageSize) {
+    return documentService.getVersionPage(bucketName, fileName, continuationToken, pageSize);
+  }
+
   @PutMapping("/file/move/{fileName}/{fromBucket}/{toBucket}")
   public DocumentResponse moveFile(@PathVariable("fileName") String fileName,
                                    @PathVariable("fromBucket") String fromBucket,
@@ -88,14 +395,100 @@ public class DocumentController {
     return documentService.copyFile(fileName, fromBucket, toBucket);
   }
 
+  private void copy(String bucketName, String fileName, String versionId, long size, Long offset, Long length,
+                    boolean decode, OutputStream outputStream) throws IOException {
+    try {
+      documentService.transferFile(bucketName, fileName, versionId, size, offset, length, decode, outputStream);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Error during downloading file", e);
+    }
+  }
+
+  /**
+   * The presigned URL expires soon, so the redirect must not be cached.
+   */
+  private <T> ResponseEntity<T> redirect(PresignedUrlResponse presigned) {
+    return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+        .location(URI.create(presigned.url()))
+        .header(HttpHeaders.CACHE_CONTROL, "no-store")
+        .build();
+  }
+
+  private String renditionETag(String versionId, String rendition) {
+    return "\"" + versionId + "-" + rendition + "\"";
+  }
+
+  /**
+   * Whether the Accept-Encoding header lists the encoding (or {@code *}) without {@code q=0}.
+   */
+  private boolean acceptsEncoding(String acceptEncoding, String encoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String candidate : acceptEncoding.split(",")) {
+      String[] parts = candidate.split(";");
+      String name = parts[0].trim();
+      if (!name.equalsIgnoreCase(encoding) && !name.equals("*")) {
+        continue;
+      }
+      boolean rejected = false;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim().replace(" ", "");
+        if (parameter.matches("q=0(\\.0{0,3})?")) {
+          rejected = true;
+        }
+      }
+      return !rejected;
+    }
+    return false;
+  }
+
+  private List<HttpRange> parseRanges(String range) {
+    try {
+      return HttpRange.parseRanges(range);
+    } catch (IllegalArgumentException e) {
+      // a malformed or too large range header is ignored and the whole file is sent
+      return List.of();
+    }
+  }
+
+  private boolean isSatisfiable(HttpRange httpRange, long length) {
+    try {
+      return httpRange.getRangeStart(length) < length;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * If-Range holds either the etag or the last modified date the client has; the range applies only if it still
+   * matches, otherwise the whole file is sent.
+   */
+  private boolean isIfRangeSatisfied(String ifRange, String etag, long lastModified) {
+    if (ifRange == null || ifRange.isEmpty()) {
+      return true;
+    }
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+      return ifRange.equals(etag);
+    }
+    try {
+      long ifRangeDate = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+      return ifRangeDate == lastModified / 1000;
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
   @DeleteMapping("{bucketName}/file/{fileName}")
-  public void deleteFile(@PathVariable("bucketName") String bucketName,
-                         @PathVariable("fileName") String fileName) throws Exception {
-    documentService.deleteFile(bucketName, fileName);
+  public DeleteResponse deleteFile(@PathVariable("bucketName") String bucketName,
+                                   @PathVariable("fileName") String fileName) throws Exception {
+    return documentService.deleteFile(bucketName, fileName);
   }
 
   @DeleteMapping("{bucketName}")
-  public void deleteAllFiles(@PathVariable("bucketName") String bucketName) throws Exception {
-    documentService.deleteAllFiles(bucketName);
+  public DeleteResponse deleteAllFiles(@PathVariable("bucketName") String bucketName) throws Exception {
+    return documentService.deleteAllFiles(bucketName);
   }
 }
@@ -0,0 +1,43 @@
+package com.document.document_service.controller;
+
+import java.util.List;
+
+import com.document.document_service.dto.request.TransferJobRequest;
+import com.document.document_service.dto.response.TransferJobResponse;
+import com.document.document_service.service.TransferJobService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("api/v1/transfer")
+public class TransferJobController {
+  private final TransferJobService transferJobService;
+
+  @PostMapping("/job")
+  public TransferJobResponse createJob(@RequestBody TransferJobRequest request) {
+    return transferJobService.createJob(request);
+  }
+
+  @GetMapping("/job")
+  public List<TransferJobResponse> getAllJobs() {
+    return transferJobService.getAllJobs();
+  }
+
+  @GetMapping("/job/{jobId}")
+  public TransferJobResponse getJob(@PathVariable("jobId") String jobId) {
+    return transferJobService.getJob(jobId);
+  }
+
+  @PostMapping("/job/{jobId}/cancel")
+  public TransferJobResponse cancelJob(@PathVariable("jobId") String jobId) {
+    return transferJobService.cancelJob(jobId);
+  }
+}
@@ -0,0 +1,60 @@
+package com.document.document_service.controller;
+
+import com.document.document_service.dto.request.UploadSessionRequest;
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.UploadSessionResponse;
+import com.document.document_service.dto.response.UploadedPart;
+import com.document.document_service.service.UploadSessionService;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("api/v1/upload")
+public class UploadSessionController {
+  private final UploadSessionService uploadSessionService;
+
+  @PostMapping("/session")
+  public UploadSessionResponse createSession(@RequestBody UploadSessionRequest request) throws Exception {
+    return uploadSessionService.createSession(request);
+  }
+
+  /**
+   * The session with the parts received so far, so an interrupted client knows which parts to send again.
+   */
+  @GetMapping("/session/{sessionId}")
+  public UploadSessionResponse getSession(@PathVariable("sessionId") String sessionId) throws Exception {
+    return uploadSessionService.getSession(sessionId);
+  }
+
+  /**
+   * Uploads the raw request body as one part.
+   */
+  @PutMapping("/session/{sessionId}/part/{partNumber}")
+  public UploadedPart uploadPart(@PathVariable("sessionId") String sessionId,
+                                 @PathVariable("partNumber") int partNumber,
+                                 HttpServletRequest request) throws Exception {
+    return uploadSessionService.uploadPart(sessionId, partNumber, request.getInputStream());
+  }
+
+  @PostMapping("/session/{sessionId}/complete")
+  public DocumentResponse completeSession(@PathVariable("sessionId") String sessionId) throws Exception {
+    return uploadSessionService.completeSession(sessionId);
+  }
+
+  @DeleteMapping("/session/{sessionId}")
+  public void abortSession(@PathVariable("sessionId") String sessionId) {
+    uploadSessionService.abortSession(sessionId);
+  }
+}
@@ -0,0 +1,13 @@
+package com.document.document_service.dto.request;
+
+import com.document.document_service.entity.TransferMode;
+
+public record TransferJobRequest(
+    String sourceBucket,
+    String prefix,
+    String destinationBucket,
+    TransferMode mode,
+    Double maxObjectsPerSecond,
+    Long maxBytesPerSecond
+) {
+}
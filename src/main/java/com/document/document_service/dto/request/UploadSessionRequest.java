@@ -0,0 +1,9 @@
+package com.document.document_service.dto.request;
+
+public record UploadSessionRequest(
+    String bucketName,
+    String fileName,
+    String contentType,
+    Long size
+) {
+}
@@ -0,0 +1,13 @@
+package com.document.document_service.dto.response;
+
+import java.util.List;
+
+import lombok.Builder;
+
+@Builder
+public record BatchUploadResponse(
+    Long uploadedCount,
+    Long failedCount,
+    List<BatchUploadResult> files
+) {
+}
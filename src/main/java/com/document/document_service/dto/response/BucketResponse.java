@@ -12,6 +12,9 @@ public record BucketResponse(
     String name,
     LocalDateTime creationDate,
     Long fileCount,
-    Double totalSize
+    Double totalSize,
+    Long objectCount,
+    Double latestSize,
+    LocalDateTime lastReconciled
 ) {
 }
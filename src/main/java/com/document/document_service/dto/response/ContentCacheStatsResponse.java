@@ -0,0 +1,24 @@
+package com.document.document_service.dto.response;
+
+import lombok.Builder;
+
+@Builder
+public record ContentCacheStatsResponse(
+    boolean enabled,
+    int diskEntries,
+    long diskBytes,
+    long diskMaxBytes,
+    int memoryEntries,
+    long memoryBytes,
+    long memoryMaxBytes,
+    long memoryHits,
+    long diskHits,
+    long misses,
+    long bypasses,
+    long fills,
+    long fillFailures,
+    long diskEvictions,
+    long memoryEvictions,
+    double hitRatio
+) {
+}
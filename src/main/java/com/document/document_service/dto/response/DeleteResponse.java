@@ -0,0 +1,13 @@
+package com.document.document_service.dto.response;
+
+import java.util.List;
+
+import lombok.Builder;
+
+@Builder
+public record DeleteResponse(
+    Long deletedCount,
+    Long failedCount,
+    List<DeleteFailure> failures
+) {
+}
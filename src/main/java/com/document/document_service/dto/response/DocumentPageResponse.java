@@ -0,0 +1,15 @@
+package com.document.document_service.dto.response;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record DocumentPageResponse(
+    List<DocumentResponse> documents,
+    String nextContinuationToken
+) {
+}
@@ -3,9 +3,12 @@ package com.document.document_service.dto.response;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.Builder;
 
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record DocumentResponse(
     String bucketName,
     String fileName,
@@ -14,6 +17,7 @@ public record DocumentResponse(
     LocalDateTime createdDate,
     String versionId,
     String version,
+    String etag,
     List<OldDocumentVersion> oldDocumentVersions
 ) {
 }
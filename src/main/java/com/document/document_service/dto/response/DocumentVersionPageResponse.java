@@ -0,0 +1,18 @@
+package com.document.document_service.dto.response;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record DocumentVersionPageResponse(
+    String bucketName,
+    String fileName,
+    Long versionCount,
+    List<OldDocumentVersion> versions,
+    String nextContinuationToken
+) {
+}
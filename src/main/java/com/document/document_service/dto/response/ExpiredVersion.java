@@ -0,0 +1,15 @@
+package com.document.document_service.dto.response;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+
+@Builder
+public record ExpiredVersion(
+    String fileName,
+    String versionId,
+    String version,
+    Long size,
+    LocalDateTime createdDate
+) {
+}
@@ -0,0 +1,19 @@
+package com.document.document_service.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PresignedUrlResponse(
+    String method,
+    String url,
+    String versionId,
+    LocalDateTime expiresAt,
+    Map<String, String> formData
+) {
+}
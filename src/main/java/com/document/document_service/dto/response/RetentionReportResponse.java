@@ -0,0 +1,24 @@
+package com.document.document_service.dto.response;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RetentionReportResponse(
+    String bucketName,
+    Integer keepLast,
+    Integer keepDays,
+    Boolean lifecycle,
+    Boolean dryRun,
+    Long scannedObjectCount,
+    Long expiredVersionCount,
+    Long expiredSize,
+    Long deletedCount,
+    Long failedCount,
+    List<ExpiredVersion> expiredVersions
+) {
+}
@@ -0,0 +1,35 @@
+package com.document.document_service.dto.response;
+
+import java.time.LocalDateTime;
+
+import com.document.document_service.entity.TransferMode;
+import com.document.document_service.entity.TransferStatus;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TransferJobResponse(
+    String id,
+    String sourceBucket,
+    String prefix,
+    String destinationBucket,
+    TransferMode mode,
+    TransferStatus status,
+    Long totalObjects,
+    Long objectsDone,
+    Long objectsFailed,
+    Long bytesDone,
+    Double objectsPerSecond,
+    Double bytesPerSecond,
+    Long etaSeconds,
+    String checkpoint,
+    String lastError,
+    Boolean cancelRequested,
+    LocalDateTime createdDate,
+    LocalDateTime startedDate,
+    LocalDateTime finishedDate
+) {
+}
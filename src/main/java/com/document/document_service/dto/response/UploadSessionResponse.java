@@ -0,0 +1,29 @@
+package com.document.document_service.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.document.document_service.entity.UploadSessionStatus;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadSessionResponse(
+    String id,
+    String bucketName,
+    String fileName,
+    String contentType,
+    Long size,
+    Long partSize,
+    Long maxPartSize,
+    UploadSessionStatus status,
+    List<UploadedPart> parts,
+    Long receivedBytes,
+    String versionId,
+    LocalDateTime createdDate,
+    LocalDateTime expiresDate
+) {
+}
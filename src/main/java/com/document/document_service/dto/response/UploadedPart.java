@@ -0,0 +1,14 @@
+package com.document.document_service.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadedPart(
+    Integer partNumber,
+    String etag,
+    Long size
+) {
+}
@@ -0,0 +1,42 @@
+package com.document.document_service.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "catalog_bucket")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogBucket {
+  @Id
+  @Column(name = "name", length = 63)
+  private String name;
+
+  @Column(name = "creation_date")
+  private LocalDateTime creationDate;
+
+  // null until the bucket has been rebuilt from minio at least once; reads fall back to listing until then
+  @Column(name = "reconciled_at")
+  private LocalDateTime reconciledAt;
+
+  // epoch millis of the last change the catalog may have missed; only a rebuild started later makes the bucket ready
+  @Column(name = "stale_generation")
+  private Long staleGeneration;
+
+  // generation of the rebuild running, deletes leave tombstones meanwhile
+  @Column(name = "rebuild_generation")
+  private Long rebuildGeneration;
+}
@@ -0,0 +1,49 @@
+package com.document.document_service.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A delete made while the catalog of its bucket is rebuilt, so the rebuild does not put back versions it listed before
+ * they were deleted.
+ */
+@Entity
+@Table(name = "catalog_tombstone", indexes = {
+    @Index(name = "idx_catalog_tombstone_bucket", columnList = "bucket_name, generation")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogTombstone {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE)
+  private Long id;
+
+  @Column(name = "bucket_name", nullable = false, length = 63)
+  private String bucketName;
+
+  // null when the whole bucket was cleared
+  @Column(name = "object_name", length = 1024)
+  private String objectName;
+
+  // null when every version of the object was deleted
+  @Column(name = "version_id")
+  private String versionId;
+
+  // epoch millis of the delete
+  @Column(name = "generation", nullable = false)
+  private Long generation;
+}
@@ -0,0 +1,62 @@
+package com.document.document_service.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "catalog_version", indexes = {
+    @Index(name = "idx_catalog_version_object", columnList = "bucket_name, object_name, last_modified"),
+    @Index(name = "idx_catalog_version_id", columnList = "bucket_name, object_name, version_id")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogVersion {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE)
+  private Long id;
+
+  @Column(name = "bucket_name", nullable = false, length = 63)
+  private String bucketName;
+
+  @Column(name = "object_name", nullable = false, length = 1024)
+  private String objectName;
+
+  @Column(name = "version_id")
+  private String versionId;
+
+  @Column(name = "size")
+  private Long size;
+
+  @Column(name = "last_modified", nullable = false)
+  private LocalDateTime lastModified;
+
+  @Column(name = "content_type")
+  private String contentType;
+
+  @Column(name = "etag")
+  private String etag;
+
+  // codec of compressed versions, their size is the original size
+  @Column(name = "encoding")
+  private String encoding;
+
+  // epoch millis of the write or reconcile run that produced this row
+  @Column(name = "generation", nullable = false)
+  private Long generation;
+}
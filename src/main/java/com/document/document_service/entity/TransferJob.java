@@ -0,0 +1,91 @@
+package com.document.document_service.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "transfer_job")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferJob {
+  @Id
+  @Column(name = "id", length = 36)
+  private String id;
+
+  @Column(name = "source_bucket", nullable = false, length = 63)
+  private String sourceBucket;
+
+  @Column(name = "prefix", length = 1024)
+  private String prefix;
+
+  @Column(name = "destination_bucket", nullable = false, length = 63)
+  private String destinationBucket;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "mode", nullable = false)
+  private TransferMode mode;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "status", nullable = false)
+  private TransferStatus status;
+
+  @Column(name = "max_objects_per_second")
+  private Double maxObjectsPerSecond;
+
+  @Column(name = "max_bytes_per_second")
+  private Long maxBytesPerSecond;
+
+  @Column(name = "total_objects")
+  private Long totalObjects;
+
+  @Column(name = "objects_done")
+  private long objectsDone;
+
+  @Column(name = "objects_failed")
+  private long objectsFailed;
+
+  @Column(name = "bytes_done")
+  private long bytesDone;
+
+  // every object up to and including this name is done; a resumed job lists the source after it
+  @Column(name = "checkpoint", length = 1024)
+  private String checkpoint;
+
+  // the instance running the job; another instance takes the job over once the lease has expired
+  @Column(name = "owner", length = 64)
+  private String owner;
+
+  @Column(name = "lease_expires_at")
+  private LocalDateTime leaseExpiresAt;
+
+  // set by whichever instance gets the cancel, never by saving the entity; the owner reads it and writes the status
+  @Column(name = "cancel_requested", updatable = false)
+  private Boolean cancelRequested;
+
+  @Column(name = "last_error", length = 2048)
+  private String lastError;
+
+  @Column(name = "created_at")
+  private LocalDateTime createdAt;
+
+  @Column(name = "started_at")
+  private LocalDateTime startedAt;
+
+  @Column(name = "finished_at")
+  private LocalDateTime finishedAt;
+}
@@ -0,0 +1,6 @@
+package com.document.document_service.entity;
+
+public enum TransferMode {
+  COPY,
+  MOVE
+}
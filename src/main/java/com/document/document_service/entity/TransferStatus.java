@@ -0,0 +1,9 @@
+package com.document.document_service.entity;
+
+public enum TransferStatus {
+  PENDING,
+  RUNNING,
+  COMPLETED,
+  FAILED,
+  CANCELLED
+}
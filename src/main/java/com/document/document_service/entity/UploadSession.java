@@ -0,0 +1,67 @@
+package com.document.document_service.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A resumable upload and the minio multipart upload behind it. The parts themselves are only known to minio.
+ */
+@Entity
+@Table(name = "upload_session", indexes = {
+    @Index(name = "idx_upload_session_last_activity", columnList = "last_activity_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+  @Id
+  @Column(name = "id", length = 36)
+  private String id;
+
+  @Column(name = "bucket_name", nullable = false, length = 63)
+  private String bucketName;
+
+  @Column(name = "object_name", nullable = false, length = 1024)
+  private String objectName;
+
+  @Column(name = "upload_id", nullable = false, length = 1024)
+  private String uploadId;
+
+  @Column(name = "content_type")
+  private String contentType;
+
+  // the announced size of the whole file, checked on completion when known
+  @Column(name = "total_size")
+  private Long totalSize;
+
+  @Column(name = "part_size", nullable = false)
+  private long partSize;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "status", nullable = false)
+  private UploadSessionStatus status;
+
+  @Column(name = "version_id")
+  private String versionId;
+
+  @Column(name = "created_at")
+  private LocalDateTime createdAt;
+
+  @Column(name = "last_activity_at")
+  private LocalDateTime lastActivityAt;
+}
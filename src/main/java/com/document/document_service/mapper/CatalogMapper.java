@@ -0,0 +1,74 @@
+package com.document.document_service.mapper;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Objects;
+
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.service.Codec;
+
+import io.minio.StatObjectResponse;
+import io.minio.messages.Item;
+
+public final class CatalogMapper {
+  private CatalogMapper() {
+  }
+
+  public static CatalogVersion toEntity(String bucketName, Item item, long generation) {
+    if (Objects.isNull(item)) {
+      return null;
+    }
+
+    return CatalogVersion.builder()
+        .bucketName(bucketName)
+        .objectName(item.objectName())
+        .versionId(item.versionId())
+        .size(item.size())
+        .lastModified(toUtc(item.lastModified()))
+        .contentType(getContentType(item.userMetadata()))
+        .etag(item.etag())
+        .generation(generation)
+        .build();
+  }
+
+  public static CatalogVersion toEntity(StatObjectResponse stat, long generation) {
+    if (Objects.isNull(stat)) {
+      return null;
+    }
+
+    return CatalogVersion.builder()
+        .bucketName(stat.bucket())
+        .objectName(stat.object())
+        .versionId(stat.versionId())
+        .size(Codec.originalSize(stat))
+        .lastModified(toUtc(stat.lastModified()))
+        .contentType(stat.contentType())
+        .etag(stat.etag())
+        .encoding(encoding(stat))
+        .generation(generation)
+        .build();
+  }
+
+  public static LocalDateTime toUtc(ZonedDateTime dateTime) {
+    return LocalDateTime.ofInstant(dateTime.toInstant(), ZoneOffset.UTC);
+  }
+
+  private static String encoding(StatObjectResponse stat) {
+    Codec codec = Codec.of(stat.userMetadata());
+    return codec == null ? null : codec.encoding();
+  }
+
+  private static String getContentType(Map<String, String> userMetadata) {
+    if (Objects.isNull(userMetadata)) {
+      return null;
+    }
+
+    return userMetadata.entrySet().stream()
+        .filter(entry -> entry.getKey().equalsIgnoreCase("content-type"))
+        .map(Map.Entry::getValue)
+        .findFirst()
+        .orElse(null);
+  }
+}
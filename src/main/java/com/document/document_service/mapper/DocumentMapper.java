@@ -0,0 +1,100 @@
+package com.document.document_service.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.OldDocumentVersion;
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.service.Codec;
+
+import io.minio.StatObjectResponse;
+
+public final class DocumentMapper {
+  private DocumentMapper() {
+  }
+
+  /**
+   * Builds the response of one document from its versions sorted by last modified date (v1, v2, v3 ..).
+   */
+  public static DocumentResponse toDto(String bucketName, List<CatalogVersion> versions) {
+    if (Objects.isNull(versions) || versions.isEmpty()) {
+      return null;
+    }
+
+    CatalogVersion lastVersion = versions.getLast(); // vN
+
+    List<OldDocumentVersion> oldDocumentVersions = new ArrayList<>(versions.size() - 1);
+    for (int i = versions.size() - 1; i > 0; i--) {
+      oldDocumentVersions.add(toOldVersion(versions.get(i - 1), i));
+    }
+
+    return DocumentResponse.builder()
+        .bucketName(bucketName)
+        .fileName(lastVersion.getObjectName())
+        .size(lastVersion.getSize())
+        .extension(getFileExtension(lastVersion.getObjectName()))
+        .createdDate(lastVersion.getLastModified())
+        .versionId(lastVersion.getVersionId())
+        .version("v" + versions.size())
+        .oldDocumentVersions(oldDocumentVersions)
+        .build();
+  }
+
+  /**
+   * Compact response of a freshly written version, without the version history.
+   */
+  public static DocumentResponse toDto(StatObjectResponse stat) {
+    if (Objects.isNull(stat)) {
+      return null;
+    }
+
+    return DocumentResponse.builder()
+        .bucketName(stat.bucket())
+        .fileName(stat.object())
+        .size(Codec.originalSize(stat))
+        .extension(getFileExtension(stat.object()))
+        .createdDate(CatalogMapper.toUtc(stat.lastModified()))
+        .versionId(stat.versionId())
+        .etag(stat.etag())
+        .build();
+  }
+
+  /**
+   * Response of the latest version of a document without its version history; the version label is left out when the
+   * version count is not known.
+   */
+  public static DocumentResponse toLatestDto(String bucketName, CatalogVersion version, Long versionCount) {
+    if (Objects.isNull(version)) {
+      return null;
+    }
+
+    return DocumentResponse.builder()
+        .bucketName(bucketName)
+        .fileName(version.getObjectName())
+        .size(version.getSize())
+        .extension(getFileExtension(version.getObjectName()))
+        .createdDate(version.getLastModified())
+        .versionId(version.getVersionId())
+        .version(versionCount == null ? null : "v" + versionCount)
+        .build();
+  }
+
+  public static OldDocumentVersion toOldVersion(CatalogVersion version, int number) {
+    return OldDocumentVersion.builder()
+        .size(version.getSize())
+        .createdDate(version.getLastModified())
+        .versionId(version.getVersionId())
+        .version("v" + number)
+        .build();
+  }
+
+  public static String getFileExtension(String fileName) {
+    int lastIndexOfDot = fileName.lastIndexOf(".");
+    if (lastIndexOfDot == -1) {
+      return "";
+    }
+    return fileName.substring(lastIndexOfDot + 1);
+  }
+}
@@ -0,0 +1,37 @@
+package com.document.document_service.repository;
+
+import java.time.LocalDateTime;
+
+import com.document.document_service.entity.CatalogBucket;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CatalogBucketRepository extends JpaRepository<CatalogBucket, String> {
+  @Modifying
+  @Query("update CatalogBucket b set b.reconciledAt = null, b.staleGeneration = :generation where b.name = :name")
+  int markStale(@Param("name") String name, @Param("generation") Long generation);
+
+  @Modifying
+  @Query("update CatalogBucket b set b.creationDate = :creationDate, b.rebuildGeneration = :generation "
+      + "where b.name = :name")
+  int startRebuild(@Param("name") String name,
+                   @Param("creationDate") LocalDateTime creationDate,
+                   @Param("generation") Long generation);
+
+  // a bucket marked stale after the listing started stays stale, the listing may have missed the change
+  @Modifying
+  @Query("update CatalogBucket b set b.reconciledAt = :reconciledAt where b.name = :name "
+      + "and (b.staleGeneration is null or b.staleGeneration < :generation)")
+  int markReconciled(@Param("name") String name,
+                     @Param("reconciledAt") LocalDateTime reconciledAt,
+                     @Param("generation") Long generation);
+
+  // a later rebuild of the same bucket keeps its own mark
+  @Modifying
+  @Query("update CatalogBucket b set b.rebuildGeneration = null where b.name = :name "
+      + "and b.rebuildGeneration = :generation")
+  int endRebuild(@Param("name") String name, @Param("generation") Long generation);
+}
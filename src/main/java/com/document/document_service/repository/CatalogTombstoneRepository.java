@@ -0,0 +1,18 @@
+package com.document.document_service.repository;
+
+import java.util.List;
+
+import com.document.document_service.entity.CatalogTombstone;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CatalogTombstoneRepository extends JpaRepository<CatalogTombstone, Long> {
+  List<CatalogTombstone> findByBucketNameAndGenerationGreaterThanEqual(String bucketName, Long generation);
+
+  @Modifying
+  @Query("delete from CatalogTombstone t where t.bucketName = :bucketName")
+  int deleteBucket(@Param("bucketName") String bucketName);
+}
@@ -0,0 +1,61 @@
+package com.document.document_service.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.document.document_service.entity.CatalogVersion;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CatalogVersionRepository extends JpaRepository<CatalogVersion, Long> {
+  List<CatalogVersion> findByBucketNameAndObjectNameOrderByLastModifiedAsc(String bucketName, String objectName);
+
+  List<CatalogVersion> findByBucketNameAndObjectNameInOrderByObjectNameAscLastModifiedAsc(
+      String bucketName, Collection<String> objectNames);
+
+  List<CatalogVersion> findByBucketNameAndObjectNameIn(String bucketName, Collection<String> objectNames);
+
+  long countByBucketNameAndObjectName(String bucketName, String objectName);
+
+  // the version count rides along, so latest-only listings keep the vN label of the full listing
+  @Query("select v, (select count(c.id) from CatalogVersion c where c.bucketName = v.bucketName "
+      + "and c.objectName = v.objectName) from CatalogVersion v where v.bucketName = :bucketName "
+      + "and v.objectName like :prefix escape '\\' and v.objectName > :afterObjectName "
+      + "and v.lastModified = (select max(o.lastModified) from CatalogVersion o where o.bucketName = v.bucketName "
+      + "and o.objectName = v.objectName) order by v.objectName, v.id")
+  List<Object[]> findLatestVersions(@Param("bucketName") String bucketName,
+                                    @Param("prefix") String prefix,
+                                    @Param("afterObjectName") String afterObjectName,
+                                    Pageable pageable);
+
+  @Query("select distinct v.objectName from CatalogVersion v where v.bucketName = :bucketName "
+      + "and v.objectName like :prefix escape '\\' and v.objectName > :afterObjectName order by v.objectName")
+  List<String> findObjectNames(@Param("bucketName") String bucketName,
+                               @Param("prefix") String prefix,
+                               @Param("afterObjectName") String afterObjectName,
+                               Pageable pageable);
+
+  @Modifying
+  @Query("delete from CatalogVersion v where v.bucketName = :bucketName and v.objectName = :objectName "
+      + "and v.versionId = :versionId")
+  int deleteVersion(@Param("bucketName") String bucketName,
+                    @Param("objectName") String objectName,
+                    @Param("versionId") String versionId);
+
+  @Modifying
+  @Query("delete from CatalogVersion v where v.bucketName = :bucketName and v.objectName = :objectName")
+  int deleteObject(@Param("bucketName") String bucketName, @Param("objectName") String objectName);
+
+  @Modifying
+  @Query("delete from CatalogVersion v where v.bucketName = :bucketName")
+  int deleteBucket(@Param("bucketName") String bucketName);
+
+  // versions the rebuild of this generation did not list any more
+  @Modifying
+  @Query("delete from CatalogVersion v where v.bucketName = :bucketName and v.generation < :generation")
+  int deleteOlderThan(@Param("bucketName") String bucketName, @Param("generation") Long generation);
+}
@@ -0,0 +1,49 @@
+package com.document.document_service.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import com.document.document_service.entity.TransferJob;
+import com.document.document_service.entity.TransferStatus;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface TransferJobRepository extends JpaRepository<TransferJob, String> {
+  List<TransferJob> findByStatusIn(Collection<TransferStatus> statuses);
+
+  List<TransferJob> findAllByOrderByCreatedAtDesc();
+
+  // one update statement, so of several instances claiming the same job only one gets the row
+  @Modifying
+  @Transactional
+  @Query("update TransferJob j set j.owner = :owner, j.leaseExpiresAt = :leaseExpiresAt where j.id = :id "
+      + "and j.status in :statuses and (j.owner is null or j.leaseExpiresAt is null or j.leaseExpiresAt < :now)")
+  int claim(@Param("id") String id,
+            @Param("owner") String owner,
+            @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+            @Param("now") LocalDateTime now,
+            @Param("statuses") Collection<TransferStatus> statuses);
+
+  @Modifying
+  @Transactional
+  @Query("update TransferJob j set j.leaseExpiresAt = :leaseExpiresAt where j.id = :id and j.owner = :owner "
+      + "and j.status in :statuses")
+  int renewLease(@Param("id") String id,
+                 @Param("owner") String owner,
+                 @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+                 @Param("statuses") Collection<TransferStatus> statuses);
+
+  @Modifying
+  @Transactional
+  @Query("update TransferJob j set j.cancelRequested = true where j.id = :id and j.status in :statuses")
+  int requestCancel(@Param("id") String id,
+                    @Param("statuses") Collection<TransferStatus> statuses);
+
+  @Query("select j.cancelRequested from TransferJob j where j.id = :id")
+  Boolean findCancelRequested(@Param("id") String id);
+}
@@ -0,0 +1,22 @@
+package com.document.document_service.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.document.document_service.entity.UploadSession;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+  List<UploadSession> findByLastActivityAtBefore(LocalDateTime lastActivityAt);
+
+  // parts arrive in parallel and next to the completion, so only the activity column is written
+  @Modifying
+  @Transactional
+  @Query("update UploadSession s set s.lastActivityAt = :lastActivityAt where s.id = :id")
+  int touch(@Param("id") String id, @Param("lastActivityAt") LocalDateTime lastActivityAt);
+}
@@ -0,0 +1,257 @@
+package com.document.document_service.service;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the files of a ZIP or (optionally gzipped) TAR archive one by one while the archive streams in; nothing but the
+ * current header is buffered. The content of an entry is only readable until the next call of {@link #next()}, and
+ * closing it does not close the archive. Directories, links and other special entries are skipped.
+ */
+abstract class ArchiveReader implements AutoCloseable {
+  protected final InputStream archive;
+
+  private ArchiveReader(InputStream archive) {
+    this.archive = archive;
+  }
+
+  /**
+   * Picks the reader by the content type of the request: {@code application/zip}, {@code application/x-tar} or
+   * {@code application/gzip} for a gzipped TAR.
+   */
+  static ArchiveReader forContentType(String contentType, InputStream archive) throws IOException {
+    String type = contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase();
+    return switch (type) {
+      case "application/zip", "application/x-zip-compressed" -> new Zip(archive);
+      case "application/x-tar" -> new Tar(archive);
+      case "application/gzip", "application/x-gzip", "application/x-gtar" -> new Tar(new GZIPInputStream(archive));
+      default -> throw new IllegalArgumentException("Unsupported archive type: " + contentType
+          + ", expected application/zip, application/x-tar or application/gzip.");
+    };
+  }
+
+  /**
+   * The next file of the archive, or null at its end.
+   */
+  abstract Entry next() throws IOException;
+
+  @Override
+  public void close() throws IOException {
+    archive.close();
+  }
+
+  /**
+   * One file of the archive; the size is negative when the archive does not tell it up front.
+   */
+  record Entry(
+      String name,
+      long size,
+      InputStream content
+  ) {
+  }
+
+  private static String objectName(String entryName) {
+    String name = entryName.replace('\\', '/');
+    while (name.startsWith("/")) {
+      name = name.substring(1);
+    }
+    return name;
+  }
+
+  private static final class Zip extends ArchiveReader {
+    private final ZipInputStream zip;
+
+    private Zip(InputStream archive) {
+      this(new ZipInputStream(archive, StandardCharsets.UTF_8));
+    }
+
+    private Zip(ZipInputStream zip) {
+      super(zip);
+      this.zip = zip;
+    }
+
+    @Override
+    Entry next() throws IOException {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        String name = objectName(entry.getName());
+        if (!entry.isDirectory() && !name.isEmpty()) {
+          return new Entry(name, entry.getSize(), new NonClosingInputStream(zip));
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Ustar reader with the GNU long name and the pax path extensions.
+   */
+  private static final class Tar extends ArchiveReader {
+    private static final int BLOCK_SIZE = 512;
+
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining;
+    private long padding;
+
+    private Tar(InputStream archive) {
+      super(archive);
+    }
+
+    @Override
+    Entry next() throws IOException {
+      String longName = null;
+      while (true) {
+        skipFully(remaining + padding);
+        remaining = 0;
+        padding = 0;
+
+        if (!readHeader()) {
+          return null;
+        }
+        long size = parseOctal(header, 124, 12);
+        char type = (char) header[156];
+        String name = longName != null ? longName : headerName();
+        longName = null;
+
+        if (type == 'L' || type == 'x') {
+          String value = new String(readData(size), StandardCharsets.UTF_8);
+          longName = type == 'L' ? value.replace("\0", "") : paxPath(value);
+          continue;
+        }
+
+        remaining = size;
+        padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+        String objectName = objectName(name);
+        if ((type == '0' || type == '\0' || type == '7') && !objectName.isEmpty() && !objectName.endsWith("/")) {
+          return new Entry(objectName, size, new EntryInputStream());
+        }
+      }
+    }
+
+    private boolean readHeader() throws IOException {
+      int read = archive.readNBytes(header, 0, BLOCK_SIZE);
+      if (read == 0) {
+        return false;
+      }
+      if (read < BLOCK_SIZE) {
+        throw new EOFException("Truncated tar header");
+      }
+      // the archive ends with zero blocks
+      for (byte b : header) {
+        if (b != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private String headerName() {
+      String name = string(header, 0, 100);
+      String prefix = string(header, 345, 155);
+      return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private byte[] readData(long size) throws IOException {
+      if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+        throw new IOException("Tar extension header too large: " + size);
+      }
+      byte[] data = archive.readNBytes((int) size);
+      if (data.length < size) {
+        throw new EOFException("Truncated tar extension header");
+      }
+      skipFully((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+      return data;
+    }
+
+    /**
+     * Pax records look like {@code "<length> <key>=<value>\n"}; only the path is of interest.
+     */
+    private String paxPath(String records) {
+      for (String record : records.split("\n")) {
+        int space = record.indexOf(' ');
+        if (space > 0 && record.startsWith("path=", space + 1)) {
+          return record.substring(space + 1 + "path=".length());
+        }
+      }
+      return null;
+    }
+
+    private void skipFully(long bytes) throws IOException {
+      archive.skipNBytes(bytes);
+    }
+
+    private static String string(byte[] buffer, int offset, int length) {
+      int end = offset;
+      while (end < offset + length && buffer[end] != 0) {
+        end++;
+      }
+      return new String(buffer, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] buffer, int offset, int length) throws IOException {
+      // gnu base-256 encoding of sizes over 8 GiB
+      if ((buffer[offset] & 0x80) != 0) {
+        long value = buffer[offset] & 0x7f;
+        for (int i = 1; i < length; i++) {
+          value = (value << 8) | (buffer[offset + i] & 0xff);
+        }
+        return value;
+      }
+
+      String octal = string(buffer, offset, length).trim();
+      try {
+        return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid tar header number: " + octal, e);
+      }
+    }
+
+    /**
+     * The content of the current entry, ending at its size.
+     */
+    private final class EntryInputStream extends InputStream {
+      @Override
+      public int read() throws IOException {
+        if (remaining <= 0) {
+          return -1;
+        }
+        int read = archive.read();
+        if (read < 0) {
+          throw new EOFException("Truncated tar entry");
+        }
+        remaining--;
+        return read;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+          return -1;
+        }
+        int read = archive.read(b, off, (int) Math.min(len, remaining));
+        if (read < 0) {
+          throw new EOFException("Truncated tar entry");
+        }
+        remaining -= read;
+        return read;
+      }
+    }
+  }
+
+  private static final class NonClosingInputStream extends FilterInputStream {
+    private NonClosingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {
+      // the archive stays open for the next entry
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package com.document.document_service.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.dto.response.BatchUploadResponse;
+import com.document.document_service.dto.response.BatchUploadResult;
+import com.document.document_service.dto.response.DocumentResponse;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Uploads many files in one request: the parts of a multipart request or the entries of a ZIP/TAR archive that is read
+ * while it streams in. Up to {@code parallelism} files are uploaded to minio at the same time, and the bytes held for
+ * the uploads in flight are bounded by {@code max-in-flight} across all requests, so a batch is never held in memory
+ * as a whole. Archive entries up to {@code max-buffered-entry} are buffered and uploaded concurrently, bigger ones are
+ * streamed to minio straight from the archive. A failing file does not stop the others, every file gets its own result.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchUploadService {
+  private static final long PERMIT_SIZE = DataSize.ofKilobytes(1).toBytes();
+  private static final long MAX_BUFFERED_ENTRY = DataSize.ofGigabytes(1).toBytes();
+
+  private final DocumentService documentService;
+  private final TaskExecutors taskExecutors;
+
+  @Value("${minio.batch-upload.parallelism:8}")
+  private int parallelism;
+
+  @Value("${minio.batch-upload.max-in-flight:256MB}")
+  private DataSize maxInFlight;
+
+  @Value("${minio.batch-upload.max-buffered-entry:16MB}")
+  private DataSize maxBufferedEntry;
+
+  private ExecutorService executor;
+  // in kib, shared by all batches
+  private Semaphore budget;
+
+  @PostConstruct
+  void init() {
+    if (maxBufferedEntry.toBytes() > MAX_BUFFERED_ENTRY) {
+      throw new IllegalStateException("minio.batch-upload.max-buffered-entry must not be greater than 1GB.");
+    }
+    if (maxBufferedEntry.toBytes() > maxInFlight.toBytes()) {
+      throw new IllegalStateException(
+          "minio.batch-upload.max-buffered-entry must not be greater than minio.batch-upload.max-in-flight.");
+    }
+    if (maxInFlight.toBytes() / PERMIT_SIZE > Integer.MAX_VALUE) {
+      throw new IllegalStateException("minio.batch-upload.max-in-flight is too large.");
+    }
+    executor = taskExecutors.newFixedPool("batch-upload", parallelism);
+    budget = new Semaphore(permits(maxInFlight.toBytes()));
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Uploads the files of a multipart request. The servlet container has spooled them to disk, so every upload streams
+   * its file from there and holds at most one part of it in memory.
+   */
+  public BatchUploadResponse uploadFiles(String bucketName, List<MultipartFile> files) {
+    List<CompletableFuture<BatchUploadResult>> results = new ArrayList<>(files.size());
+    for (MultipartFile file : files) {
+      String fileName = file.getOriginalFilename();
+      if (fileName == null || fileName.isBlank()) {
+        results.add(CompletableFuture.completedFuture(failure(fileName, "File name is missing")));
+        continue;
+      }
+
+      int permits = acquire(Math.min(file.getSize(), maxBufferedEntry.toBytes()));
+      results.add(submit(fileName, permits, () -> documentService.uploadFile(bucketName, file)));
+    }
+    return collect(results);
+  }
+
+  /**
+   * Uploads the files of a ZIP or TAR archive with their path in the archive as file name. A broken archive ends the
+   * batch with a failure, the files read before it are still uploaded.
+   */
+  public BatchUploadResponse uploadArchive(String bucketName, String contentType, InputStream stream)
+      throws IOException {
+    List<CompletableFuture<BatchUploadResult>> results = new ArrayList<>();
+    try (ArchiveReader archive = ArchiveReader.forContentType(contentType, stream)) {
+      String fileName = null;
+      try {
+        ArchiveReader.Entry entry;
+        while ((entry = archive.next()) != null) {
+          fileName = entry.name();
+          results.add(uploadEntry(bucketName, entry));
+        }
+      } catch (IOException e) {
+        log.warn("Error during reading archive for bucket: {}, after file: {}", bucketName, fileName, e);
+        results.add(CompletableFuture.completedFuture(failure(fileName, "Archive could not be read: "
+            + e.getMessage())));
+      }
+    }
+    return collect(results);
+  }
+
+  private CompletableFuture<BatchUploadResult> uploadEntry(String bucketName, ArchiveReader.Entry entry)
+      throws IOException {
+    String fileName = entry.name();
+    String contentType = MediaTypeFactory.getMediaType(fileName).map(MediaType::toString).orElse(null);
+    long limit = maxBufferedEntry.toBytes();
+
+    // unknown sizes (zip entries with a data descriptor) reserve the limit until the entry is read
+    int permits = acquire(entry.size() < 0 ? limit : Math.min(entry.size(), limit));
+    if (entry.size() > limit) {
+      return CompletableFuture.completedFuture(uploadInline(fileName, permits, () -> documentService.uploadFile(
+          bucketName, fileName, contentType, entry.content(), entry.size())));
+    }
+
+    byte[] buffer;
+    try {
+      buffer = entry.content().readNBytes((int) (entry.size() < 0 ? limit + 1 : entry.size()));
+    } catch (IOException e) {
+      budget.release(permits);
+      throw e;
+    }
+
+    if (buffer.length > limit) {
+      InputStream content = new SequenceInputStream(new ByteArrayInputStream(buffer), entry.content());
+      return CompletableFuture.completedFuture(uploadInline(fileName, permits, () -> documentService.uploadFile(
+          bucketName, fileName, contentType, content, -1)));
+    }
+
+    int bufferPermits = permits(buffer.length);
+    budget.release(permits - bufferPermits);
+    return submit(fileName, bufferPermits, () -> documentService.uploadFile(bucketName, fileName, contentType,
+        new ByteArrayInputStream(buffer), buffer.length));
+  }
+
+  private CompletableFuture<BatchUploadResult> submit(String fileName, int permits, Callable<DocumentResponse> upload) {
+    return CompletableFuture.supplyAsync(() -> uploadInline(fileName, permits, upload), executor);
+  }
+
+  /**
+   * Uploads on the calling thread and gives the reserved budget back afterwards.
+   */
+  private BatchUploadResult uploadInline(String fileName, int permits, Callable<DocumentResponse> upload) {
+    try {
+      DocumentResponse document = upload.call();
+      return BatchUploadResult.builder()
+          .fileName(fileName)
+          .versionId(document.versionId())
+          .size(document.size())
+          .build();
+    } catch (Exception e) {
+      log.warn("Error during batch upload of file: {}", fileName, e);
+      return failure(fileName, e.getMessage());
+    } finally {
+      budget.release(permits);
+    }
+  }
+
+  private BatchUploadResponse collect(List<CompletableFuture<BatchUploadResult>> results) {
+    List<BatchUploadResult> files = results.stream()
+        .map(CompletableFuture::join)
+        .toList();
+    long failedCount = files.stream()
+        .filter(file -> file.error() != null)
+        .count();
+
+    return BatchUploadResponse.builder()
+        .uploadedCount(files.size() - failedCount)
+        .failedCount(failedCount)
+        .files(files)
+        .build();
+  }
+
+  private int acquire(long bytes) {
+    int permits = permits(bytes);
+    budget.acquireUninterruptibly(permits);
+    return permits;
+  }
+
+  /**
+   * Every file takes at least one permit, so empty files are bounded as well.
+   */
+  private static int permits(long bytes) {
+    return (int) Math.max(1, (bytes + PERMIT_SIZE - 1) / PERMIT_SIZE);
+  }
+
+  private static BatchUploadResult failure(String fileName, String error) {
+    return BatchUploadResult.builder()
+        .fileName(fileName)
+        .error(error)
+        .build();
+  }
+}
@@ -0,0 +1,158 @@
+package com.document.document_service.service;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.entity.CatalogVersion;
+
+import io.minio.CloseableIterator;
+import io.minio.ListenBucketNotificationArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Bucket;
+import io.minio.messages.Event;
+import io.minio.messages.NotificationRecords;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps one minio bucket notification stream open per bucket and feeds its events into the bucket statistics. Versions
+ * removed by other clients or expired by the bucket lifecycle also leave the catalog, the document cache and the
+ * renditions.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BucketNotificationListener {
+  private static final String[] EVENTS = {"s3:ObjectCreated:*", "s3:ObjectRemoved:*"};
+  private static final long RETRY_DELAY_MILLIS = 5_000;
+
+  private final MinioClient minioClient;
+  private final BucketStatisticsService bucketStatisticsService;
+  private final CatalogService catalogService;
+  private final DocumentCacheService documentCacheService;
+  private final RenditionService renditionService;
+  private final TaskExecutors taskExecutors;
+
+  private final Map<String, Future<?>> listeners = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+
+  @Value("${bucket-statistics.notifications.enabled:true}")
+  private boolean enabled;
+
+  @PostConstruct
+  void init() {
+    executor = taskExecutors.newUnboundedPool("bucket-notification");
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+
+    try {
+      minioClient.listBuckets().stream()
+          .map(Bucket::name)
+          .forEach(this::listen);
+    } catch (Exception e) {
+      log.warn("Bucket notifications could not be started, minio client error", e);
+    }
+  }
+
+  public void listen(String bucketName) {
+    if (!enabled) {
+      return;
+    }
+    listeners.computeIfAbsent(bucketName, name -> executor.submit(() -> run(name)));
+  }
+
+  public void stop(String bucketName) {
+    Future<?> listener = listeners.remove(bucketName);
+    if (listener != null) {
+      listener.cancel(true);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void run(String bucketName) {
+    ListenBucketNotificationArgs args = ListenBucketNotificationArgs.builder()
+        .bucket(bucketName)
+        .prefix("")
+        .suffix("")
+        .events(EVENTS)
+        .build();
+
+    while (!Thread.currentThread().isInterrupted() && listeners.containsKey(bucketName)) {
+      try (CloseableIterator<Result<NotificationRecords>> records = minioClient.listenBucketNotification(args)) {
+        while (records.hasNext() && listeners.containsKey(bucketName)) {
+          for (Event event : records.next().get().events()) {
+            handle(event);
+          }
+        }
+      } catch (Exception e) {
+        if (Thread.currentThread().isInterrupted() || !listeners.containsKey(bucketName)) {
+          return;
+        }
+        log.warn("Bucket notification stream failed, retrying: {}", bucketName, e);
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private void handle(Event event) {
+    // object keys in notification records are url encoded
+    String objectName = URLDecoder.decode(event.objectName(), StandardCharsets.UTF_8);
+    String eventType = event.eventType().name();
+
+    if (eventType.startsWith("OBJECT_CREATED")) {
+      bucketStatisticsService.onVersionCreated(event.bucketName(), objectName, event.objectVersionId(),
+          event.objectSize());
+    } else if (eventType.equals("OBJECT_REMOVED_DELETE")
+        && bucketStatisticsService.onVersionRemoved(event.bucketName(), objectName, event.objectVersionId())) {
+      removeVersion(event.bucketName(), objectName, event.objectVersionId());
+    }
+  }
+
+  private void removeVersion(String bucketName, String objectName, String versionId) {
+    if (versionId == null || renditionService.isRenditionBucket(bucketName)) {
+      return;
+    }
+
+    List<CatalogVersion> removed = catalogService.getVersions(bucketName, objectName).stream()
+        .filter(version -> versionId.equals(version.getVersionId()))
+        .toList();
+    try {
+      catalogService.deleteVersion(bucketName, objectName, versionId);
+    } catch (RuntimeException e) {
+      log.warn("Catalog update failed, marking bucket stale: {}", bucketName, e);
+      catalogService.markStale(bucketName);
+    }
+    documentCacheService.invalidateObject(bucketName, objectName);
+    renditionService.deleteRenditions(bucketName, removed);
+  }
+}
@@ -1,20 +1,16 @@
 package com.document.document_service.service;
 
 import java.util.List;
-import java.util.stream.StreamSupport;
 
 import com.document.document_service.dto.response.BucketResponse;
+import com.document.document_service.dto.response.DeleteResponse;
 
 import io.minio.BucketExistsArgs;
-import io.minio.ListObjectsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.RemoveBucketArgs;
-import io.minio.RemoveObjectArgs;
-import io.minio.Result;
 import io.minio.SetBucketVersioningArgs;
 import io.minio.messages.Bucket;
-import io.minio.messages.Item;
 import io.minio.messages.VersioningConfiguration;
 
 import lombok.RequiredArgsConstructor;
@@ -25,39 +21,35 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class BucketService {
   private final MinioClient minioClient;
-
+  private final CatalogService catalogService;
+  private final BulkDeleteService bulkDeleteService;
+  private final BucketStatisticsService bucketStatisticsService;
+  private final BucketNotificationListener bucketNotificationListener;
+  private final DocumentCacheService documentCacheService;
+  private final RenditionService renditionService;
 
   private BucketResponse getBucketResponse(Bucket bucketByName) {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-        .bucket(bucketByName.name())
-        .includeVersions(true)
-        .build());
-    List<Item> itemList = StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .toList();
-
-    long totalSize = itemList.stream()
-        .map(Item::size)
-        .reduce(0L, Long::sum);
-    double totalSizeInKib = totalSize / 1024.0; // byte to kib
-
-    return BucketResponse.builder()
+    BucketResponse.BucketResponseBuilder builder = BucketResponse.builder()
         .name(bucketByName.name())
-        .creationDate(bucketByName.creationDate().toLocalDateTime())
-        .fileCount((long) itemList.size())
-        .totalSize(totalSizeInKib)
-        .build();
+        .creationDate(bucketByName.creationDate().toLocalDateTime());
+
+    // counters are left out until the first reconcile of the bucket has finished
+    bucketStatisticsService.getStatistics(bucketByName.name())
+        .ifPresent(statistics -> builder
+            .fileCount(statistics.versionCount())
+            .totalSize(statistics.totalBytes() / 1024.0) // byte to kib
+            .objectCount(statistics.objectCount())
+            .latestSize(statistics.latestBytes() / 1024.0)
+            .lastReconciled(statistics.lastReconciled()));
+
+    return builder.build();
   }
 
   public List<Bucket> getAllBuckets() {
     try {
-      return minioClient.listBuckets();
+      return minioClient.listBuckets().stream()
+          .filter(bucket -> !renditionService.isRenditionBucket(bucket.name()))
+          .toList();
     } catch (Exception e) {
       throw new IllegalStateException("Minio client error!");
     }
@@ -67,6 +59,7 @@ public class BucketService {
     List<Bucket> buckets = minioClient.listBuckets();
 
     return buckets.stream()
+        .filter(bucket -> !renditionService.isRenditionBucket(bucket.name()))
         .map(this::getBucketResponse)
         .toList();
   }
@@ -108,46 +101,40 @@ public class BucketService {
         .build();
     minioClient.setBucketVersioning(versioningArgs);
 
-    return minioClient.listBuckets().stream()
+    Bucket savedBucket = minioClient.listBuckets().stream()
         .filter(bucket -> bucket.name().equals(bucketName))
         .findFirst()
         .orElse(null);
-  }
-
-  public void deleteBucket(String bucketName) throws Exception {
-    // Fetch all file objects from minio (to handle 'objectName' and 'versionId' to delete)
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-        .bucket(bucketName)
-        .includeVersions(true)
-        .build());
+    if (savedBucket != null) {
+      catalogService.saveBucket(bucketName, savedBucket.creationDate().toLocalDateTime());
+      bucketStatisticsService.recordBucketCreated(bucketName);
+      bucketNotificationListener.listen(bucketName);
+    }
 
-    // convert into Item object of files in related bucket
-    List<Item> list = StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .toList();
+    return savedBucket;
+  }
 
-    // remove all files by using 'objectName' and 'versionId'
-    list.forEach(item -> {
-      try {
-        minioClient.removeObject(RemoveObjectArgs.builder()
-            .bucket(bucketName)
-            .object(item.objectName())
-            .versionId(item.versionId())
-            .build());
-      } catch (Exception e) {
-        throw new RuntimeException("Error processing item", e);
-      }
-    });
+  public DeleteResponse deleteBucket(String bucketName) throws Exception {
+    // remove all versions and delete markers with batched multi-object deletes while the listing streams in
+    DeleteResponse response = bulkDeleteService.deleteAll(bucketName);
+    if (response.failedCount() > 0) {
+      // the bucket is not empty, so it is kept and the failures are reported to the caller
+      catalogService.markStale(bucketName);
+      documentCacheService.invalidateBucket(bucketName);
+      renditionService.deleteAllRenditions(bucketName);
+      return response;
+    }
+    bucketNotificationListener.stop(bucketName);
 
     // remove bucket
     minioClient.removeBucket(RemoveBucketArgs.builder()
         .bucket(bucketName)
         .build());
+    catalogService.deleteBucket(bucketName);
+    documentCacheService.invalidateBucket(bucketName);
+    renditionService.deleteAllRenditions(bucketName);
+    bucketStatisticsService.recordBucketDeleted(bucketName);
+
+    return response;
   }
 }
@@ -0,0 +1,269 @@
+package com.document.document_service.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.entity.CatalogVersion;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Bucket;
+import io.minio.messages.Item;
+
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory per-bucket counters behind /bucket/detail. The write paths of this service apply exact deltas, bucket
+ * notifications apply what the event carries (other writers of the same minio), and a periodic parallel reconcile
+ * recounts every bucket to correct drift.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BucketStatisticsService {
+  private static final int MAX_APPLIED_EVENTS = 10_000;
+
+  private final MinioClient minioClient;
+  private final CatalogService catalogService;
+  private final TaskExecutors taskExecutors;
+
+  private final Map<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+  // versions changed by this service, so the notification echoing the same change is not counted twice
+  private final Set<String> appliedEvents = boundedKeySet();
+
+  // versions created by other clients, or by this service with the notification ahead of the write path
+  private final Set<String> countedEvents = boundedKeySet();
+
+  @Value("${bucket-statistics.reconcile.parallelism:4}")
+  private int parallelism;
+
+  public Optional<Statistics> getStatistics(String bucketName) {
+    return Optional.ofNullable(statistics.get(bucketName));
+  }
+
+  public void recordBucketCreated(String bucketName) {
+    statistics.put(bucketName, Statistics.builder()
+        .lastReconciled(LocalDateTime.now(ZoneOffset.UTC))
+        .build());
+  }
+
+  public void recordBucketDeleted(String bucketName) {
+    statistics.remove(bucketName);
+  }
+
+  public void recordBucketCleared(String bucketName) {
+    statistics.computeIfPresent(bucketName, (name, current) -> current.plus(-current.objectCount(),
+        -current.versionCount(), -current.totalBytes(), -current.latestBytes()));
+  }
+
+  /**
+   * A new latest version of the object; {@code previousLatestSize} is null when the object did not exist before. The
+   * version id of a put is only known once it returned, so its notification may be counted already; then only the
+   * object count and the latest size are added.
+   */
+  public void recordVersionAdded(String bucketName, String objectName, String versionId, long size,
+                                 Long previousLatestSize) {
+    String key = eventKey(bucketName, objectName, versionId, true);
+    boolean counted;
+    synchronized (countedEvents) {
+      counted = countedEvents.remove(key);
+      if (!counted) {
+        appliedEvents.add(key);
+      }
+    }
+    statistics.computeIfPresent(bucketName, (name, current) -> current.plus(
+        previousLatestSize == null ? 1 : 0,
+        counted ? 0 : 1,
+        counted ? 0 : size,
+        size - (previousLatestSize == null ? 0 : previousLatestSize)));
+  }
+
+  /**
+   * Called before the versions are deleted, so their notifications are not counted even when they arrive ahead of
+   * {@link #recordObjectRemoved} or {@link #recordVersionsRemoved}.
+   */
+  public void expectVersionsRemoved(String bucketName, List<CatalogVersion> versions) {
+    versions.forEach(version -> appliedEvents.add(eventKey(bucketName, version.getObjectName(),
+        version.getVersionId(), false)));
+  }
+
+  /**
+   * The delete failed; versions it removed anyway are left to their notifications and the reconcile.
+   */
+  public void cancelVersionsRemoved(String bucketName, List<CatalogVersion> versions) {
+    versions.forEach(version -> appliedEvents.remove(eventKey(bucketName, version.getObjectName(),
+        version.getVersionId(), false)));
+  }
+
+  /**
+   * All versions of the object were removed, sorted by last modified date so the last one is the latest.
+   */
+  public void recordObjectRemoved(String bucketName, String objectName, List<CatalogVersion> versions) {
+    if (versions.isEmpty()) {
+      return;
+    }
+
+    long totalBytes = versions.stream().mapToLong(CatalogVersion::getSize).sum();
+    statistics.computeIfPresent(bucketName, (name, current) -> current.plus(-1, -versions.size(), -totalBytes,
+        -versions.getLast().getSize()));
+  }
+
+  /**
+   * Older versions of the object were removed while its latest version stays.
+   */
+  public void recordVersionsRemoved(String bucketName, String objectName, List<CatalogVersion> versions) {
+    if (versions.isEmpty()) {
+      return;
+    }
+
+    long totalBytes = versions.stream().mapToLong(CatalogVersion::getSize).sum();
+    statistics.computeIfPresent(bucketName, (name, current) -> current.plus(0, -versions.size(), -totalBytes, 0));
+  }
+
+  /**
+   * A version written by another client. The event has no information about the previous latest version, so only the
+   * version count and the total size are changed here; the object count and the latest size wait for the reconcile.
+   */
+  public void onVersionCreated(String bucketName, String objectName, String versionId, long size) {
+    String key = eventKey(bucketName, objectName, versionId, true);
+    synchronized (countedEvents) {
+      if (appliedEvents.remove(key)) {
+        return;
+      }
+      countedEvents.add(key);
+    }
+    statistics.computeIfPresent(bucketName, (name, current) -> current.plus(0, 1, size, 0));
+  }
+
+  /**
+   * A version removed by another client or expired by the bucket lifecycle; false for the echo of a delete of this
+   * service. Delete events carry no size, it is taken from the catalog when known.
+   */
+  public boolean onVersionRemoved(String bucketName, String objectName, String versionId) {
+    if (appliedEvents.remove(eventKey(bucketName, objectName, versionId, false))) {
+      return false;
+    }
+    long size = catalogService.getVersions(bucketName, objectName).stream()
+        .filter(version -> versionId != null && versionId.equals(version.getVersionId()))
+        .mapToLong(CatalogVersion::getSize)
+        .findFirst()
+        .orElse(0);
+    statistics.computeIfPresent(bucketName, (name, current) -> current.plus(0, -1, -size, 0));
+    return true;
+  }
+
+  @Scheduled(initialDelayString = "${bucket-statistics.reconcile.initial-delay:PT5S}",
+      fixedDelayString = "${bucket-statistics.reconcile.interval:PT15M}")
+  public void reconcileAll() {
+    List<Bucket> buckets;
+    try {
+      buckets = minioClient.listBuckets();
+    } catch (Exception e) {
+      log.warn("Bucket statistics reconcile skipped, minio client error", e);
+      return;
+    }
+
+    Set<String> bucketNames = buckets.stream().map(Bucket::name).collect(Collectors.toSet());
+    statistics.keySet().retainAll(bucketNames);
+
+    try (ExecutorService executor = taskExecutors.newListingPool("bucket-statistics", parallelism)) {
+      bucketNames.forEach(bucketName -> executor.execute(() -> {
+        try {
+          reconcile(bucketName);
+        } catch (RuntimeException e) {
+          log.warn("Bucket statistics reconcile failed for bucket: {}", bucketName, e);
+        }
+      }));
+    }
+  }
+
+  public Statistics reconcile(String bucketName) {
+    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+        .bucket(bucketName)
+        .includeVersions(true)
+        .recursive(true)
+        .build());
+
+    long objectCount = 0;
+    long versionCount = 0;
+    long totalBytes = 0;
+    long latestBytes = 0;
+    for (Result<Item> itemResult : results) {
+      Item item;
+      try {
+        item = itemResult.get();
+      } catch (Exception e) {
+        throw new RuntimeException("Error processing item", e);
+      }
+      if (item.isDeleteMarker()) {
+        continue;
+      }
+
+      versionCount++;
+      totalBytes += item.size();
+      if (item.isLatest()) {
+        objectCount++;
+        latestBytes += item.size();
+      }
+    }
+
+    Statistics reconciled = Statistics.builder()
+        .objectCount(objectCount)
+        .versionCount(versionCount)
+        .totalBytes(totalBytes)
+        .latestBytes(latestBytes)
+        .lastReconciled(LocalDateTime.now(ZoneOffset.UTC))
+        .build();
+    statistics.put(bucketName, reconciled);
+    return reconciled;
+  }
+
+  private static Set<String> boundedKeySet() {
+    return Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > MAX_APPLIED_EVENTS;
+      }
+    }));
+  }
+
+  private String eventKey(String bucketName, String objectName, String versionId, boolean created) {
+    return (created ? "+" : "-") + bucketName + "/" + objectName + "?" + versionId;
+  }
+
+  @Builder(toBuilder = true)
+  public record Statistics(
+      long objectCount,
+      long versionCount,
+      long totalBytes,
+      long latestBytes,
+      LocalDateTime lastReconciled
+  ) {
+    Statistics plus(long objectDelta, long versionDelta, long totalBytesDelta, long latestBytesDelta) {
+      return toBuilder()
+          .objectCount(objectCount + objectDelta)
+          .versionCount(versionCount + versionDelta)
+          .totalBytes(totalBytes + totalBytesDelta)
+          .latestBytes(latestBytes + latestBytesDelta)
+          .build();
+    }
+  }
+}
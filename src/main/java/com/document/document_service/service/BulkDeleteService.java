@@ -0,0 +1,175 @@
+package com.document.document_service.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.dto.response.DeleteFailure;
+import com.document.document_service.dto.response.DeleteResponse;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Deletes object versions with multi-object delete requests. The listing is consumed lazily and packed into batches,
+ * at most {@code max-in-flight} batches are sent at the same time, and failures are reported per object instead of
+ * stopping at the first one.
+ */
+@Service
+@RequiredArgsConstructor
+public class BulkDeleteService {
+  private static final int MAX_REPORTED_FAILURES = 1000;
+
+  private final MinioClient minioClient;
+  private final TaskExecutors taskExecutors;
+
+  @Value("${minio.bulk-delete.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${minio.bulk-delete.max-in-flight:4}")
+  private int maxInFlight;
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  void init() {
+    if (batchSize < 1 || batchSize > 1000) {
+      throw new IllegalStateException("minio.bulk-delete.batch-size must be between 1 and 1000.");
+    }
+    executor = taskExecutors.newFixedPool("bulk-delete", maxInFlight);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Deletes every version and delete marker of every object in the bucket.
+   */
+  public DeleteResponse deleteAll(String bucketName) {
+    return deleteAll(bucketName, "");
+  }
+
+  /**
+   * Deletes every version and delete marker of the objects in the bucket whose names start with the prefix.
+   */
+  public DeleteResponse deleteAll(String bucketName, String prefix) {
+    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+        .bucket(bucketName)
+        .prefix(prefix)
+        .includeVersions(true)
+        .recursive(true)
+        .build());
+
+    Iterator<ObjectVersion> objects = StreamSupport.stream(results.spliterator(), false)
+        .map(itemResult -> {
+          try {
+            return itemResult.get();
+          } catch (Exception e) {
+            throw new RuntimeException("Error processing item", e);
+          }
+        })
+        .map(item -> new ObjectVersion(item.objectName(), item.versionId()))
+        .iterator();
+
+    return delete(bucketName, objects);
+  }
+
+  public DeleteResponse delete(String bucketName, Iterator<ObjectVersion> objects) {
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    AtomicLong deletedCount = new AtomicLong();
+    AtomicLong failedCount = new AtomicLong();
+    List<DeleteFailure> failures = new ArrayList<>();
+
+    try {
+      while (objects.hasNext()) {
+        List<ObjectVersion> batch = new ArrayList<>(batchSize);
+        while (objects.hasNext() && batch.size() < batchSize) {
+          batch.add(objects.next());
+        }
+
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+          try {
+            deleteBatch(bucketName, batch, deletedCount, failedCount, failures);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+    } finally {
+      // wait for the batches in flight, also when the listing failed
+      inFlight.acquireUninterruptibly(maxInFlight);
+    }
+
+    return DeleteResponse.builder()
+        .deletedCount(deletedCount.get())
+        .failedCount(failedCount.get())
+        .failures(failures)
+        .build();
+  }
+
+  private void deleteBatch(String bucketName, List<ObjectVersion> batch, AtomicLong deletedCount,
+                           AtomicLong failedCount, List<DeleteFailure> failures) {
+    List<DeleteFailure> batchFailures = new ArrayList<>();
+    long batchFailedCount = 0;
+    try {
+      // removeObjects is lazy, the request is only sent while the results are iterated
+      Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+          .bucket(bucketName)
+          .objects(batch.stream()
+              .map(object -> new DeleteObject(object.objectName(), object.versionId()))
+              .toList())
+          .build());
+      for (Result<DeleteError> result : results) {
+        DeleteError error = result.get();
+        batchFailedCount++;
+        batchFailures.add(DeleteFailure.builder()
+            .objectName(error.objectName())
+            .message(error.code() + ": " + error.message())
+            .build());
+      }
+    } catch (Exception e) {
+      batchFailedCount = batch.size();
+      batchFailures.clear();
+      batch.forEach(object -> batchFailures.add(DeleteFailure.builder()
+          .objectName(object.objectName())
+          .versionId(object.versionId())
+          .message(e.getMessage())
+          .build()));
+    }
+
+    deletedCount.addAndGet(batch.size() - batchFailedCount);
+    failedCount.addAndGet(batchFailedCount);
+    synchronized (failures) {
+      batchFailures.stream()
+          .limit(MAX_REPORTED_FAILURES - failures.size())
+          .forEach(failures::add);
+    }
+  }
+
+  public record ObjectVersion(
+      String objectName,
+      String versionId
+  ) {
+  }
+}
@@ -0,0 +1,99 @@
+package com.document.document_service.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.mapper.CatalogMapper;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Bucket;
+import io.minio.messages.Item;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogReconciler {
+  private static final int BATCH_SIZE = 500;
+
+  private final MinioClient minioClient;
+  private final CatalogService catalogService;
+  private final DocumentCacheService documentCacheService;
+
+  @Scheduled(initialDelayString = "${catalog.reconcile.initial-delay:PT30S}",
+      fixedDelayString = "${catalog.reconcile.interval:PT6H}")
+  public void reconcileAll() {
+    List<Bucket> buckets;
+    try {
+      buckets = minioClient.listBuckets();
+    } catch (Exception e) {
+      log.warn("Catalog reconcile skipped, minio client error", e);
+      return;
+    }
+
+    catalogService.retainBuckets(buckets.stream().map(Bucket::name).toList());
+    for (Bucket bucket : buckets) {
+      try {
+        reconcile(bucket);
+      } catch (RuntimeException e) {
+        log.warn("Catalog reconcile failed for bucket: {}", bucket.name(), e);
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the catalog of one bucket from its listing, committing a batch at a time so no transaction stays open
+   * while minio is listed. Deletes and stale marks made during the listing are kept, see {@link CatalogService}.
+   */
+  public long reconcile(Bucket bucket) {
+    long generation = System.currentTimeMillis();
+    catalogService.startRebuild(bucket.name(), bucket.creationDate().toLocalDateTime(), generation);
+
+    long count = 0;
+    try {
+      Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+          .bucket(bucket.name())
+          .includeVersions(true)
+          .recursive(true)
+          .build());
+
+      List<CatalogVersion> batch = new ArrayList<>(BATCH_SIZE);
+      for (Result<Item> itemResult : results) {
+        Item item;
+        try {
+          item = itemResult.get();
+        } catch (Exception e) {
+          throw new RuntimeException("Error processing item", e);
+        }
+        if (item.isDir() || item.isDeleteMarker()) {
+          continue;
+        }
+        batch.add(CatalogMapper.toEntity(bucket.name(), item, generation));
+        if (batch.size() == BATCH_SIZE) {
+          count += catalogService.saveListedVersions(bucket.name(), generation, batch);
+          batch = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+      if (!batch.isEmpty()) {
+        count += catalogService.saveListedVersions(bucket.name(), generation, batch);
+      }
+      catalogService.finishRebuild(bucket.name(), generation);
+    } catch (RuntimeException e) {
+      catalogService.cancelRebuild(bucket.name(), generation);
+      throw e;
+    }
+
+    // the rebuilt catalog also holds changes made outside the service, which cached documents do not know about
+    documentCacheService.invalidateBucket(bucket.name());
+    log.info("Catalog reconciled bucket: {}, versions: {}", bucket.name(), count);
+    return count;
+  }
+}
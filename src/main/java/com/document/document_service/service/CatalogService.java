@@ -0,0 +1,313 @@
+package com.document.document_service.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.document.document_service.entity.CatalogBucket;
+import com.document.document_service.entity.CatalogTombstone;
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.mapper.CatalogMapper;
+import com.document.document_service.repository.CatalogBucketRepository;
+import com.document.document_service.repository.CatalogTombstoneRepository;
+import com.document.document_service.repository.CatalogVersionRepository;
+
+import io.minio.StatObjectResponse;
+
+import jakarta.persistence.EntityManager;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Postgres copy of the bucket/object/version metadata kept in minio. Minio stays the source of truth; the catalog is
+ * written after every successful mutation and rebuilt by {@link CatalogReconciler}. A rebuild updates the rows in
+ * batches of short transactions while it lists the bucket; deletes made meanwhile leave tombstones, so the rebuild
+ * does not put back what it listed before the delete.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogService {
+  private final CatalogBucketRepository catalogBucketRepository;
+  private final CatalogVersionRepository catalogVersionRepository;
+  private final CatalogTombstoneRepository catalogTombstoneRepository;
+  private final EntityManager entityManager;
+
+  @Transactional(readOnly = true)
+  public boolean isReady(String bucketName) {
+    return catalogBucketRepository.findById(bucketName)
+        .map(bucket -> bucket.getReconciledAt() != null)
+        .orElse(false);
+  }
+
+  @Transactional(readOnly = true)
+  public List<CatalogVersion> getVersions(String bucketName, String objectName) {
+    return catalogVersionRepository.findByBucketNameAndObjectNameOrderByLastModifiedAsc(bucketName, objectName);
+  }
+
+  /**
+   * Versions of the next {@code limit} objects after {@code afterObjectName}, ordered by object name and then by last
+   * modified date.
+   */
+  @Transactional(readOnly = true)
+  public List<CatalogVersion> getVersionPage(String bucketName, String prefix, String afterObjectName, int limit) {
+    List<String> objectNames = catalogVersionRepository.findObjectNames(bucketName, toLikePattern(prefix),
+        afterObjectName == null ? "" : afterObjectName, PageRequest.of(0, limit));
+    if (objectNames.isEmpty()) {
+      return List.of();
+    }
+
+    return catalogVersionRepository.findByBucketNameAndObjectNameInOrderByObjectNameAscLastModifiedAsc(bucketName,
+        objectNames);
+  }
+
+  /**
+   * The latest version of the next {@code limit} objects after {@code afterObjectName} in object name order, each with
+   * the number of versions of its object.
+   */
+  @Transactional(readOnly = true)
+  public List<LatestVersion> getLatestVersionPage(String bucketName, String prefix, String afterObjectName,
+                                                  int limit) {
+    List<Object[]> rows = catalogVersionRepository.findLatestVersions(bucketName, toLikePattern(prefix),
+        afterObjectName == null ? "" : afterObjectName, PageRequest.of(0, limit));
+
+    List<LatestVersion> versions = new ArrayList<>(rows.size());
+    for (Object[] row : rows) {
+      CatalogVersion version = (CatalogVersion) row[0];
+      // versions with the same last modified date are both the latest, the first one is taken
+      if (versions.isEmpty() || !versions.getLast().version().getObjectName().equals(version.getObjectName())) {
+        versions.add(new LatestVersion(version, (Long) row[1]));
+      }
+    }
+    return versions;
+  }
+
+  @Transactional(readOnly = true)
+  public long countVersions(String bucketName, String objectName) {
+    return catalogVersionRepository.countByBucketNameAndObjectName(bucketName, objectName);
+  }
+
+  /**
+   * {@code limit} versions of the object from the {@code offset}-th on, in the order of {@link #getVersions}.
+   */
+  @Transactional(readOnly = true)
+  public List<CatalogVersion> getVersionRange(String bucketName, String objectName, int offset, int limit) {
+    return entityManager.createQuery("select v from CatalogVersion v where v.bucketName = :bucketName "
+            + "and v.objectName = :objectName order by v.lastModified, v.id", CatalogVersion.class)
+        .setParameter("bucketName", bucketName)
+        .setParameter("objectName", objectName)
+        .setFirstResult(offset)
+        .setMaxResults(limit)
+        .getResultList();
+  }
+
+  @Transactional
+  public void saveVersion(StatObjectResponse stat) {
+    catalogVersionRepository.deleteVersion(stat.bucket(), stat.object(), stat.versionId());
+    catalogVersionRepository.save(CatalogMapper.toEntity(stat, System.currentTimeMillis()));
+  }
+
+  @Transactional
+  public void deleteVersion(String bucketName, String objectName, String versionId) {
+    catalogVersionRepository.deleteVersion(bucketName, objectName, versionId);
+    if (isRebuilding(bucketName)) {
+      saveTombstone(bucketName, objectName, versionId);
+    }
+  }
+
+  @Transactional
+  public void deleteVersions(String bucketName, Collection<CatalogVersion> versions) {
+    boolean rebuilding = isRebuilding(bucketName);
+    versions.forEach(version -> {
+      catalogVersionRepository.deleteVersion(bucketName, version.getObjectName(), version.getVersionId());
+      if (rebuilding) {
+        saveTombstone(bucketName, version.getObjectName(), version.getVersionId());
+      }
+    });
+  }
+
+  @Transactional
+  public void deleteObject(String bucketName, String objectName) {
+    catalogVersionRepository.deleteObject(bucketName, objectName);
+    if (isRebuilding(bucketName)) {
+      saveTombstone(bucketName, objectName, null);
+    }
+  }
+
+  @Transactional
+  public void clearBucket(String bucketName) {
+    catalogVersionRepository.deleteBucket(bucketName);
+    if (isRebuilding(bucketName)) {
+      saveTombstone(bucketName, null, null);
+    }
+  }
+
+  @Transactional
+  public void saveBucket(String bucketName, LocalDateTime creationDate) {
+    // a newly created bucket is empty, so the catalog is already in sync with it
+    catalogBucketRepository.save(CatalogBucket.builder()
+        .name(bucketName)
+        .creationDate(creationDate)
+        .reconciledAt(now())
+        .build());
+  }
+
+  /**
+   * A rebuild still running for the bucket finds no bucket row at its end and leaves the catalog as it is; the batches
+   * it writes until then are removed by the next reconcile, which no longer lists the bucket.
+   */
+  @Transactional
+  public void deleteBucket(String bucketName) {
+    catalogVersionRepository.deleteBucket(bucketName);
+    catalogTombstoneRepository.deleteBucket(bucketName);
+    catalogBucketRepository.deleteById(bucketName);
+  }
+
+  @Transactional
+  public void retainBuckets(Collection<String> bucketNames) {
+    catalogBucketRepository.findAll().stream()
+        .map(CatalogBucket::getName)
+        .filter(name -> !bucketNames.contains(name))
+        .forEach(this::deleteBucket);
+  }
+
+  @Transactional
+  public void markStale(String bucketName) {
+    catalogBucketRepository.markStale(bucketName, System.currentTimeMillis());
+  }
+
+  /**
+   * Marks the start of a rebuild, before its listing starts; from now on deletes in the bucket leave tombstones. A
+   * bucket new to the catalog is not ready until the rebuild has finished.
+   */
+  @Transactional
+  public void startRebuild(String bucketName, LocalDateTime creationDate, long generation) {
+    if (catalogBucketRepository.startRebuild(bucketName, creationDate, generation) == 0) {
+      catalogBucketRepository.save(CatalogBucket.builder()
+          .name(bucketName)
+          .creationDate(creationDate)
+          .rebuildGeneration(generation)
+          .build());
+    }
+  }
+
+  /**
+   * Writes one batch of listed versions in its own transaction. A listed version updates its row in place, so readers
+   * never see it twice; rows written by the service since the listing started are newer and stay, and versions with a
+   * tombstone since then are not put back. Returns the number of listed versions kept.
+   */
+  @Transactional
+  public int saveListedVersions(String bucketName, long generation, List<CatalogVersion> versions) {
+    Set<String> objectNames = versions.stream().map(CatalogVersion::getObjectName).collect(Collectors.toSet());
+    Map<String, CatalogVersion> rows = new HashMap<>();
+    catalogVersionRepository.findByBucketNameAndObjectNameIn(bucketName, objectNames)
+        .forEach(row -> rows.putIfAbsent(versionKey(row), row));
+    List<CatalogTombstone> tombstones = catalogTombstoneRepository.findByBucketNameAndGenerationGreaterThanEqual(
+        bucketName, generation);
+
+    int kept = 0;
+    for (CatalogVersion version : versions) {
+      CatalogVersion row = rows.get(versionKey(version));
+      if (row == null) {
+        if (isTombstoned(version, tombstones)) {
+          continue;
+        }
+        entityManager.persist(version);
+      } else if (row.getGeneration() < generation) {
+        // the listing has neither the content type nor the codec, compressed versions keep their original size
+        if (row.getEncoding() == null) {
+          row.setSize(version.getSize());
+        }
+        if (version.getContentType() != null) {
+          row.setContentType(version.getContentType());
+        }
+        row.setLastModified(version.getLastModified());
+        row.setEtag(version.getEtag());
+        row.setGeneration(generation);
+      }
+      kept++;
+    }
+    return kept;
+  }
+
+  /**
+   * Removes the versions the listing did not return and makes the bucket ready, unless it was deleted or marked stale
+   * since the listing started.
+   */
+  @Transactional
+  public void finishRebuild(String bucketName, long generation) {
+    if (!catalogBucketRepository.existsById(bucketName)) {
+      return;
+    }
+    catalogVersionRepository.deleteOlderThan(bucketName, generation);
+    catalogBucketRepository.markReconciled(bucketName, now(), generation);
+    endRebuild(bucketName, generation);
+  }
+
+  /**
+   * Ends a failed rebuild; the batches written so far are correct rows, the versions it did not reach stay as they
+   * were.
+   */
+  @Transactional
+  public void cancelRebuild(String bucketName, long generation) {
+    endRebuild(bucketName, generation);
+  }
+
+  private void endRebuild(String bucketName, long generation) {
+    if (catalogBucketRepository.endRebuild(bucketName, generation) == 1) {
+      catalogTombstoneRepository.deleteBucket(bucketName);
+    }
+  }
+
+  private boolean isRebuilding(String bucketName) {
+    return catalogBucketRepository.findById(bucketName)
+        .map(bucket -> bucket.getRebuildGeneration() != null)
+        .orElse(false);
+  }
+
+  private void saveTombstone(String bucketName, String objectName, String versionId) {
+    catalogTombstoneRepository.save(CatalogTombstone.builder()
+        .bucketName(bucketName)
+        .objectName(objectName)
+        .versionId(versionId)
+        .generation(System.currentTimeMillis())
+        .build());
+  }
+
+  private static boolean isTombstoned(CatalogVersion version, List<CatalogTombstone> tombstones) {
+    return tombstones.stream().anyMatch(tombstone -> tombstone.getObjectName() == null
+        || (tombstone.getObjectName().equals(version.getObjectName())
+        && (tombstone.getVersionId() == null || tombstone.getVersionId().equals(version.getVersionId()))));
+  }
+
+  private static String versionKey(CatalogVersion version) {
+    return version.getObjectName() + "\0" + Objects.toString(version.getVersionId());
+  }
+
+  private String toLikePattern(String prefix) {
+    if (prefix == null) {
+      return "%";
+    }
+    return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.now(ZoneOffset.UTC);
+  }
+
+  public record LatestVersion(
+      CatalogVersion version,
+      long versionCount
+  ) {
+  }
+}
@@ -0,0 +1,103 @@
+package com.document.document_service.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import io.minio.StatObjectResponse;
+
+/**
+ * Compression codecs of the compression tier. A compressed version keeps its codec and its original size as user
+ * metadata; the name of the codec is also its HTTP content coding.
+ */
+public enum Codec {
+  GZIP("gzip") {
+    @Override
+    public OutputStream compress(OutputStream outputStream) throws IOException {
+      return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+    }
+
+    @Override
+    public InputStream decompress(InputStream inputStream) throws IOException {
+      return new GZIPInputStream(inputStream, BUFFER_SIZE);
+    }
+  },
+  ZSTD("zstd") {
+    @Override
+    public OutputStream compress(OutputStream outputStream) throws IOException {
+      return new ZstdOutputStream(outputStream, ZSTD_LEVEL);
+    }
+
+    @Override
+    public InputStream decompress(InputStream inputStream) throws IOException {
+      return new ZstdInputStream(inputStream);
+    }
+  };
+
+  public static final String CODEC_METADATA = "codec";
+  public static final String ORIGINAL_SIZE_METADATA = "original-size";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int ZSTD_LEVEL = 3;
+
+  private final String encoding;
+
+  Codec(String encoding) {
+    this.encoding = encoding;
+  }
+
+  public String encoding() {
+    return encoding;
+  }
+
+  public abstract OutputStream compress(OutputStream outputStream) throws IOException;
+
+  public abstract InputStream decompress(InputStream inputStream) throws IOException;
+
+  /**
+   * The codec by its name, null for none.
+   */
+  public static Codec of(String encoding) {
+    if (encoding == null || encoding.isEmpty()) {
+      return null;
+    }
+    for (Codec codec : values()) {
+      if (codec.encoding.equalsIgnoreCase(encoding)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unknown codec: " + encoding);
+  }
+
+  /**
+   * The codec of a version by its user metadata, null if it is stored uncompressed.
+   */
+  public static Codec of(Map<String, String> userMetadata) {
+    return of(metadata(userMetadata, CODEC_METADATA));
+  }
+
+  /**
+   * The size of the content as it was uploaded, the stored size for uncompressed versions.
+   */
+  public static long originalSize(StatObjectResponse stat) {
+    String originalSize = metadata(stat.userMetadata(), ORIGINAL_SIZE_METADATA);
+    return originalSize == null ? stat.size() : Long.parseLong(originalSize);
+  }
+
+  private static String metadata(Map<String, String> userMetadata, String name) {
+    if (userMetadata == null) {
+      return null;
+    }
+    return userMetadata.entrySet().stream()
+        .filter(entry -> entry.getKey().equalsIgnoreCase(name))
+        .map(Map.Entry::getValue)
+        .findFirst()
+        .orElse(null);
+  }
+}
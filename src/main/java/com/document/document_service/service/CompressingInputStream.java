@@ -0,0 +1,78 @@
+package com.document.document_service.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses the source while it is read: source chunks are pushed through the compressor on demand, so only one chunk
+ * and its compressed output are held at a time.
+ */
+final class CompressingInputStream extends InputStream {
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final InputStream source;
+  private final Buffer buffer = new Buffer();
+  private final OutputStream compressor;
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+  private int position;
+  private boolean finished;
+
+  CompressingInputStream(InputStream source, Codec codec) throws IOException {
+    this.source = source;
+    this.compressor = codec.compress(buffer);
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (position == buffer.size()) {
+      if (finished) {
+        return -1;
+      }
+      buffer.reset();
+      position = 0;
+      fill();
+    }
+
+    int read = Math.min(len, buffer.size() - position);
+    System.arraycopy(buffer.bytes(), position, b, off, read);
+    position += read;
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+
+  private void fill() throws IOException {
+    int read = source.read(chunk);
+    if (read < 0) {
+      // writes the trailer of the compressed stream
+      compressor.close();
+      finished = true;
+    } else {
+      compressor.write(chunk, 0, read);
+    }
+  }
+
+  private static final class Buffer extends ByteArrayOutputStream {
+    private Buffer() {
+      super(CHUNK_SIZE);
+    }
+
+    private byte[] bytes() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.document.document_service.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Compression tier: uploads into the buckets of {@code compression.buckets} ({@code bucket=codec}, {@code *} for all
+ * buckets) are compressed on the fly when their content type is compressible and the entropy of their first bytes is
+ * low enough, so content that is compressed already is left alone. The codec and the original size are kept as user
+ * metadata; readers decompress through {@link Codec}.
+ */
+@Service
+public class CompressionService {
+  private static final int SAMPLE_SIZE = 4096;
+  private static final String ALL_BUCKETS = "*";
+
+  @Value("${compression.buckets:}")
+  private Set<String> bucketCodecs;
+
+  @Value("${compression.content-types:text/*,application/json,application/x-ndjson,application/xml,"
+      + "application/javascript,application/x-yaml,application/csv,image/svg+xml}")
+  private List<MediaType> contentTypes;
+
+  @Value("${compression.min-size:1KB}")
+  private DataSize minSize;
+
+  // bits per byte, random or compressed data is close to 8
+  @Value("${compression.max-entropy:7.0}")
+  private double maxEntropy;
+
+  private final Map<String, Codec> codecs = new HashMap<>();
+
+  @PostConstruct
+  void init() {
+    for (String bucketCodec : bucketCodecs) {
+      String[] parts = bucketCodec.split("=");
+      if (parts.length != 2) {
+        throw new IllegalStateException("compression.buckets entries must look like bucket=codec: " + bucketCodec);
+      }
+      codecs.put(parts[0].trim(), Codec.of(parts[1].trim()));
+    }
+  }
+
+  public boolean isEnabled(String bucketName) {
+    return codecs.containsKey(bucketName) || codecs.containsKey(ALL_BUCKETS);
+  }
+
+  /**
+   * Compresses the upload if the policy of the bucket says so. Only uploads of known size are compressed, since the
+   * original size has to be in the metadata before the first byte is written.
+   */
+  public EncodedUpload encode(String bucketName, String contentType, InputStream stream, long size)
+      throws IOException {
+    Codec codec = codecs.getOrDefault(bucketName, codecs.get(ALL_BUCKETS));
+    if (codec == null || size < minSize.toBytes() || !isCompressible(contentType)) {
+      return new EncodedUpload(stream, size, Map.of());
+    }
+
+    BufferedInputStream buffered = new BufferedInputStream(stream, SAMPLE_SIZE);
+    buffered.mark(SAMPLE_SIZE);
+    byte[] sample = buffered.readNBytes(SAMPLE_SIZE);
+    buffered.reset();
+    if (entropy(sample) > maxEntropy) {
+      return new EncodedUpload(buffered, size, Map.of());
+    }
+
+    return new EncodedUpload(new CompressingInputStream(buffered, codec), -1, Map.of(
+        Codec.CODEC_METADATA, codec.encoding(),
+        Codec.ORIGINAL_SIZE_METADATA, String.valueOf(size)));
+  }
+
+  private boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    try {
+      MediaType mediaType = MediaType.parseMediaType(contentType);
+      return contentTypes.stream().anyMatch(type -> type.includes(mediaType));
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Shannon entropy of the sample in bits per byte.
+   */
+  private static double entropy(byte[] sample) {
+    if (sample.length == 0) {
+      return 0;
+    }
+    int[] counts = new int[256];
+    for (byte b : sample) {
+      counts[b & 0xff]++;
+    }
+
+    double entropy = 0;
+    for (int count : counts) {
+      if (count > 0) {
+        double probability = (double) count / sample.length;
+        entropy -= probability * Math.log(probability) / Math.log(2);
+      }
+    }
+    return entropy;
+  }
+
+  /**
+   * The stream to store, its size (negative when unknown) and the user metadata that describes its encoding.
+   */
+  public record EncodedUpload(
+      InputStream stream,
+      long size,
+      Map<String, String> userMetadata
+  ) {
+  }
+}
@@ -0,0 +1,356 @@
+package com.document.document_service.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.document.document_service.dto.response.ContentCacheStatsResponse;
+
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Read-through cache of object content, keyed by bucket, object and version id. A version never changes, so entries
+ * need no invalidation: a deleted version fails the stat before the cache is asked and its entry ages out.
+ * <ul>
+ *   <li>the disk tier keeps whole objects up to {@code max-object-size} in files, served with
+ *   {@link FileChannel#transferTo},</li>
+ *   <li>the optional memory tier keeps small objects of the disk tier in direct buffers as well.</li>
+ * </ul>
+ * Both tiers are bounded by total bytes and evict the least recently used entries. Concurrent misses of the same key
+ * wait for one fill. The index is kept in memory only, so files left over from an earlier run are removed on start.
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentCacheService {
+  private static final String FILL_PREFIX = "fill-";
+  private static final String FILL_SUFFIX = ".tmp";
+  private static final String ENTRY_FILE_PATTERN = "[0-9a-f]{64}";
+
+  private final MinioClient minioClient;
+
+  private final Map<String, CompletableFuture<DiskEntry>> fills = new ConcurrentHashMap<>();
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong bypasses = new AtomicLong();
+  private final AtomicLong fillCount = new AtomicLong();
+  private final AtomicLong fillFailures = new AtomicLong();
+  private final AtomicLong diskEvictions = new AtomicLong();
+  private final AtomicLong memoryEvictions = new AtomicLong();
+
+  @Value("${content-cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${content-cache.directory:${java.io.tmpdir}/document-service-content-cache}")
+  private Path directory;
+
+  @Value("${content-cache.max-size:1GB}")
+  private DataSize maxSize;
+
+  @Value("${content-cache.max-object-size:64MB}")
+  private DataSize maxObjectSize;
+
+  @Value("${content-cache.memory.enabled:false}")
+  private boolean memoryEnabled;
+
+  @Value("${content-cache.memory.max-size:64MB}")
+  private DataSize memoryMaxSize;
+
+  @Value("${content-cache.memory.max-object-size:1MB}")
+  private DataSize memoryMaxObjectSize;
+
+  private LruIndex<DiskEntry> disk;
+  private LruIndex<ByteBuffer> memory;
+
+  @PostConstruct
+  void init() throws IOException {
+    if (memoryMaxObjectSize.toBytes() > Integer.MAX_VALUE) {
+      throw new IllegalStateException("content-cache.memory.max-object-size must be less than 2GB.");
+    }
+    if (maxObjectSize.toBytes() > maxSize.toBytes()) {
+      throw new IllegalStateException(
+          "content-cache.max-object-size must not be greater than content-cache.max-size.");
+    }
+    disk = new LruIndex<>(maxSize.toBytes());
+    memory = new LruIndex<>(memoryMaxSize.toBytes());
+    if (!enabled) {
+      return;
+    }
+
+    Files.createDirectories(directory);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        // only files written by the cache, the directory may be shared
+        if (name.matches(ENTRY_FILE_PATTERN) || (name.startsWith(FILL_PREFIX) && name.endsWith(FILL_SUFFIX))) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes {@code length} bytes from {@code offset} (the whole object when no offset is given) of the version from
+   * the cache, filling it first on a miss. Returns false without writing anything when the version is not cacheable,
+   * the caller then reads it from minio directly.
+   */
+  public boolean transfer(String bucketName, String objectName, String versionId, long size, Long offset,
+                          Long length, OutputStream outputStream) throws Exception {
+    if (!enabled || versionId == null || versionId.isEmpty() || size > maxObjectSize.toBytes()) {
+      bypasses.incrementAndGet();
+      return false;
+    }
+
+    long position = offset == null ? 0 : offset;
+    long count = offset == null ? size : length;
+    String key = bucketName + "/" + objectName + "?versionId=" + versionId;
+
+    if (memoryEnabled) {
+      ByteBuffer buffer = memory.get(key);
+      if (buffer != null) {
+        memoryHits.incrementAndGet();
+        write(buffer.slice((int) position, (int) count), outputStream);
+        return true;
+      }
+    }
+
+    DiskEntry entry = disk.get(key);
+    if (entry != null) {
+      diskHits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+      entry = fill(key, bucketName, objectName, versionId);
+    }
+
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(entry.path(), StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      // evicted between the lookup and the open
+      bypasses.incrementAndGet();
+      return false;
+    }
+
+    // an open file stays readable when it is evicted meanwhile
+    try (channel) {
+      WritableByteChannel target = Channels.newChannel(outputStream);
+      long transferred = 0;
+      while (transferred < count) {
+        long written = channel.transferTo(position + transferred, count - transferred, target);
+        if (written <= 0) {
+          throw new EOFException("Cached content is shorter than expected: " + key);
+        }
+        transferred += written;
+      }
+    }
+    return true;
+  }
+
+  public ContentCacheStatsResponse getStats() {
+    long hits = memoryHits.get() + diskHits.get();
+    long lookups = hits + misses.get();
+
+    return ContentCacheStatsResponse.builder()
+        .enabled(enabled)
+        .diskEntries(disk.entryCount())
+        .diskBytes(disk.totalBytes())
+        .diskMaxBytes(maxSize.toBytes())
+        .memoryEntries(memory.entryCount())
+        .memoryBytes(memory.totalBytes())
+        .memoryMaxBytes(memoryEnabled ? memoryMaxSize.toBytes() : 0)
+        .memoryHits(memoryHits.get())
+        .diskHits(diskHits.get())
+        .misses(misses.get())
+        .bypasses(bypasses.get())
+        .fills(fillCount.get())
+        .fillFailures(fillFailures.get())
+        .diskEvictions(diskEvictions.get())
+        .memoryEvictions(memoryEvictions.get())
+        .hitRatio(lookups == 0 ? 0 : (double) hits / lookups)
+        .build();
+  }
+
+  private DiskEntry fill(String key, String bucketName, String objectName, String versionId) throws Exception {
+    CompletableFuture<DiskEntry> fill = new CompletableFuture<>();
+    CompletableFuture<DiskEntry> running = fills.putIfAbsent(key, fill);
+    if (running != null) {
+      return await(running);
+    }
+
+    try {
+      // another fill may have finished between the lookup and the registration
+      DiskEntry entry = disk.get(key);
+      if (entry == null) {
+        entry = download(key, bucketName, objectName, versionId);
+        store(key, entry);
+      }
+      fill.complete(entry);
+      return entry;
+    } catch (Exception e) {
+      fillFailures.incrementAndGet();
+      fill.completeExceptionally(e);
+      throw e;
+    } finally {
+      fills.remove(key, fill);
+    }
+  }
+
+  private DiskEntry download(String key, String bucketName, String objectName, String versionId) throws Exception {
+    Path fillFile = Files.createTempFile(directory, FILL_PREFIX, FILL_SUFFIX);
+    try {
+      try (InputStream data = minioClient.getObject(GetObjectArgs.builder()
+          .bucket(bucketName)
+          .object(objectName)
+          .versionId(versionId)
+          .build())) {
+        Files.copy(data, fillFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      Path entryFile = directory.resolve(hash(key));
+      Files.move(fillFile, entryFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      fillCount.incrementAndGet();
+      return new DiskEntry(entryFile, Files.size(entryFile));
+    } finally {
+      Files.deleteIfExists(fillFile);
+    }
+  }
+
+  private void store(String key, DiskEntry entry) throws IOException {
+    for (DiskEntry evicted : disk.put(key, entry, entry.size())) {
+      diskEvictions.incrementAndGet();
+      Files.deleteIfExists(evicted.path());
+    }
+
+    if (memoryEnabled && entry.size() <= memoryMaxObjectSize.toBytes()) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect((int) entry.size());
+      try (FileChannel channel = FileChannel.open(entry.path(), StandardOpenOption.READ)) {
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            throw new EOFException("Cached content is shorter than expected: " + key);
+          }
+        }
+      }
+      buffer.flip();
+      memoryEvictions.addAndGet(memory.put(key, buffer.asReadOnlyBuffer(), entry.size()).size());
+    }
+  }
+
+  private void write(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+    WritableByteChannel target = Channels.newChannel(outputStream);
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+  }
+
+  private DiskEntry await(CompletableFuture<DiskEntry> fill) throws Exception {
+    try {
+      return fill.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private String hash(String key) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private record DiskEntry(
+      Path path,
+      long size
+  ) {
+  }
+
+  /**
+   * Least recently used index bounded by the total size of its entries.
+   */
+  private static final class LruIndex<V> {
+    private final long maxBytes;
+    private final LinkedHashMap<String, Sized<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private LruIndex(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    private synchronized V get(String key) {
+      Sized<V> entry = entries.get(key);
+      return entry == null ? null : entry.value();
+    }
+
+    /**
+     * Adds the entry and returns the entries evicted to make room for it.
+     */
+    private synchronized List<V> put(String key, V value, long size) {
+      Sized<V> previous = entries.put(key, new Sized<>(value, size));
+      if (previous != null) {
+        totalBytes -= previous.size();
+      }
+      totalBytes += size;
+
+      List<V> evicted = new ArrayList<>();
+      Iterator<Map.Entry<String, Sized<V>>> eldest = entries.entrySet().iterator();
+      while (totalBytes > maxBytes && eldest.hasNext()) {
+        Map.Entry<String, Sized<V>> entry = eldest.next();
+        eldest.remove();
+        totalBytes -= entry.getValue().size();
+        evicted.add(entry.getValue().value());
+      }
+      return evicted;
+    }
+
+    private synchronized int entryCount() {
+      return entries.size();
+    }
+
+    private synchronized long totalBytes() {
+      return totalBytes;
+    }
+
+    private record Sized<V>(
+        V value,
+        long size
+    ) {
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.document.document_service.service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import com.document.document_service.client.MinioMultipartClient;
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.mapper.CatalogMapper;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
+import io.minio.Directive;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.messages.Part;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Server-side copy of all versions of an object. Every version bigger than {@code part-size} is copied into the parts
+ * of its own multipart upload (uploadPartCopy, one part per {@code part-size}), so the data of up to
+ * {@code parallelism} versions moves in parallel. The uploads are completed one by one in the given (last modified)
+ * order, which creates the versions, so the destination keeps the same version order. Completing an upload is a short
+ * metadata call. Versions up to {@code part-size} are committed with one copyObject call in their turn instead, which
+ * keeps their etag and saves the calls of an upload. Unfinished uploads are aborted on failure. Every
+ * copy carries the etag and last modified date of its source as user metadata, so a copy interrupted by a restart can
+ * be resumed without copying a version twice, see {@link #findUncopied}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CopyService {
+  private static final long MAX_PART_SIZE = DataSize.ofGigabytes(5).toBytes();
+  private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+  private static final int MAX_PARTS = 10_000;
+  private static final String SOURCE_ETAG_METADATA = "source-etag";
+  private static final String SOURCE_LAST_MODIFIED_METADATA = "source-last-modified";
+
+  private final MinioClient minioClient;
+  private final MinioMultipartClient minioMultipartClient;
+  private final TaskExecutors taskExecutors;
+
+  @Value("${minio.copy.parallelism:8}")
+  private int parallelism;
+
+  @Value("${minio.copy.part-size:512MB}")
+  private DataSize partSize;
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  void init() {
+    if (partSize.toBytes() < MIN_PART_SIZE || partSize.toBytes() > MAX_PART_SIZE) {
+      throw new IllegalStateException("minio.copy.part-size must be between 5MB and 5GB.");
+    }
+    executor = taskExecutors.newFixedPool("copy", parallelism);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Copies the versions, sorted by last modified date, as new versions of the same object in the destination bucket.
+   * The callback is invoked right after each version is committed, in order.
+   */
+  public void copyVersions(String fromBucket, String toBucket, String objectName, List<CatalogVersion> versions,
+                           CommitCallback callback) throws Exception {
+    Set<String> openUploads = ConcurrentHashMap.newKeySet();
+    Deque<CompletableFuture<PreparedCopy>> window = new ArrayDeque<>();
+    Iterator<CatalogVersion> pending = versions.iterator();
+
+    try {
+      while (window.size() < parallelism && pending.hasNext()) {
+        window.add(prepare(fromBucket, toBucket, objectName, pending.next(), openUploads));
+      }
+
+      while (!window.isEmpty()) {
+        PreparedCopy prepared = await(window.poll());
+        if (pending.hasNext()) {
+          window.add(prepare(fromBucket, toBucket, objectName, pending.next(), openUploads));
+        }
+
+        ObjectWriteResponse response = commit(fromBucket, toBucket, objectName, prepared);
+        if (prepared.uploadId() != null) {
+          openUploads.remove(prepared.uploadId());
+        }
+        callback.committed(prepared.source(), response);
+      }
+    } finally {
+      // let the copies in flight settle before their uploads are aborted
+      window.forEach(future -> future.handle((prepared, e) -> null).join());
+      openUploads.forEach(uploadId -> abort(toBucket, objectName, uploadId));
+    }
+  }
+
+  /**
+   * The versions, in their order, of which the destination versions hold no copy yet.
+   */
+  public List<CatalogVersion> findUncopied(String toBucket, String objectName, List<CatalogVersion> versions,
+                                           List<CatalogVersion> destinationVersions) throws Exception {
+    Set<String> copied = new HashSet<>();
+    for (CatalogVersion destination : destinationVersions) {
+      // the catalog does not keep user metadata
+      Map<String, String> userMetadata = stat(toBucket, objectName, destination.getVersionId()).userMetadata();
+      String etag = metadata(userMetadata, SOURCE_ETAG_METADATA);
+      String lastModified = metadata(userMetadata, SOURCE_LAST_MODIFIED_METADATA);
+      if (etag != null && lastModified != null) {
+        copied.add(etag + "@" + lastModified);
+      }
+    }
+
+    return versions.stream()
+        .filter(version -> !copied.contains(sourceEtag(version.getEtag()) + "@"
+            + sourceLastModified(version.getLastModified())))
+        .toList();
+  }
+
+  private CompletableFuture<PreparedCopy> prepare(String fromBucket, String toBucket, String objectName,
+                                                  CatalogVersion version, Set<String> openUploads) {
+    return CompletableFuture
+        .supplyAsync(() -> {
+          try {
+            // a multipart upload does not take over the metadata of the source like copyObject does, and the size of
+            // the stored bytes differs from the catalog size for compressed versions
+            return stat(fromBucket, objectName, version.getVersionId());
+          } catch (Exception e) {
+            throw new CompletionException("Error during reading the source of copy", e);
+          }
+        }, executor)
+        .thenCompose(stat -> {
+          if (stat.size() <= partSize.toBytes()) {
+            return CompletableFuture.completedFuture(new PreparedCopy(version, stat, null, null));
+          }
+
+          String uploadId = createMultipartUpload(toBucket, objectName, stat);
+          openUploads.add(uploadId);
+          long size = stat.size();
+          // parts up to 5 GiB, big enough to stay within the 10000 parts limit
+          long effectivePartSize = Math.max(partSize.toBytes(), (size + MAX_PARTS - 1) / MAX_PARTS);
+          List<CompletableFuture<Part>> parts = new ArrayList<>();
+          int partNumber = 1;
+          for (long offset = 0; offset < size; offset += effectivePartSize, partNumber++) {
+            long offsetOfPart = offset;
+            int numberOfPart = partNumber;
+            long lengthOfPart = Math.min(effectivePartSize, size - offset);
+            parts.add(CompletableFuture.supplyAsync(() -> new Part(numberOfPart, uploadPartCopy(fromBucket, toBucket,
+                objectName, version.getVersionId(), uploadId, numberOfPart, offsetOfPart, lengthOfPart)), executor));
+          }
+
+          return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+              .thenApply(ignored -> new PreparedCopy(version, stat, uploadId,
+                  parts.stream().map(CompletableFuture::join).toArray(Part[]::new)));
+        });
+  }
+
+  private ObjectWriteResponse commit(String fromBucket, String toBucket, String objectName, PreparedCopy prepared)
+      throws Exception {
+    if (prepared.uploadId() != null) {
+      return minioMultipartClient.completeMultipartUpload(toBucket, objectName, prepared.uploadId(),
+          prepared.parts());
+    }
+
+    return minioClient.copyObject(
+        CopyObjectArgs.builder()
+            .source(CopySource.builder()
+                .bucket(fromBucket)
+                .object(objectName)
+                .versionId(prepared.source().getVersionId())
+                .build())
+            .bucket(toBucket)
+            .object(objectName)
+            .metadataDirective(Directive.REPLACE)
+            .userMetadata(userMetadata(prepared.stat()))
+            .headers(prepared.stat().contentType() == null
+                ? Map.of()
+                : Map.of("Content-Type", prepared.stat().contentType()))
+            .build());
+  }
+
+  private String createMultipartUpload(String toBucket, String objectName, StatObjectResponse stat) {
+    try {
+      Multimap<String, String> headers = HashMultimap.create();
+      if (stat.contentType() != null) {
+        headers.put("Content-Type", stat.contentType());
+      }
+      userMetadata(stat).forEach((key, value) -> headers.put("x-amz-meta-" + key, value));
+
+      return minioMultipartClient.createMultipartUpload(toBucket, objectName, headers);
+    } catch (Exception e) {
+      throw new CompletionException("Error during creating multipart copy", e);
+    }
+  }
+
+  /**
+   * The user metadata of the source with the source stamp of this copy instead of the one of an earlier copy.
+   */
+  private Map<String, String> userMetadata(StatObjectResponse stat) {
+    Map<String, String> userMetadata = new HashMap<>(stat.userMetadata());
+    userMetadata.keySet().removeIf(key -> key.equalsIgnoreCase(SOURCE_ETAG_METADATA)
+        || key.equalsIgnoreCase(SOURCE_LAST_MODIFIED_METADATA));
+    userMetadata.put(SOURCE_ETAG_METADATA, sourceEtag(stat.etag()));
+    userMetadata.put(SOURCE_LAST_MODIFIED_METADATA, sourceLastModified(CatalogMapper.toUtc(stat.lastModified())));
+    return userMetadata;
+  }
+
+  private StatObjectResponse stat(String bucketName, String objectName, String versionId) throws Exception {
+    return minioClient.statObject(StatObjectArgs.builder()
+        .bucket(bucketName)
+        .object(objectName)
+        .versionId(versionId)
+        .build());
+  }
+
+  private static String metadata(Map<String, String> userMetadata, String name) {
+    return userMetadata.entrySet().stream()
+        .filter(entry -> entry.getKey().equalsIgnoreCase(name))
+        .map(Map.Entry::getValue)
+        .findFirst()
+        .orElse(null);
+  }
+
+  private static String sourceEtag(String etag) {
+    return etag == null ? "" : etag.replace("\"", "");
+  }
+
+  // the stat has seconds, the listing milliseconds
+  private static String sourceLastModified(LocalDateTime lastModified) {
+    return lastModified == null ? "" : lastModified.truncatedTo(ChronoUnit.SECONDS).toString();
+  }
+
+  private String uploadPartCopy(String fromBucket, String toBucket, String objectName, String versionId,
+                                String uploadId, int partNumber, long offset, long length) {
+    try {
+      return minioMultipartClient.uploadPartCopy(toBucket, objectName, uploadId, partNumber, fromBucket, objectName,
+          versionId, offset, length);
+    } catch (Exception e) {
+      throw new CompletionException("Error during copying part " + partNumber, e);
+    }
+  }
+
+  private void abort(String bucketName, String objectName, String uploadId) {
+    try {
+      minioMultipartClient.abortMultipartUpload(bucketName, objectName, uploadId);
+    } catch (Exception e) {
+      log.warn("Multipart copy could not be aborted: {}/{} {}", bucketName, objectName, uploadId, e);
+    }
+  }
+
+  private PreparedCopy await(CompletableFuture<PreparedCopy> future) throws Exception {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof Exception exception) {
+        throw exception;
+      }
+      throw e;
+    }
+  }
+
+  @FunctionalInterface
+  public interface CommitCallback {
+    void committed(CatalogVersion source, ObjectWriteResponse response) throws Exception;
+  }
+
+  private record PreparedCopy(
+      CatalogVersion source,
+      StatObjectResponse stat,
+      String uploadId,
+      Part[] parts
+  ) {
+  }
+}
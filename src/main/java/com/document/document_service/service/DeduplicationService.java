@@ -0,0 +1,80 @@
+package com.document.document_service.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Content hash deduplication of the uploads into the buckets of {@code upload.dedup.buckets} ({@code *} for all). An
+ * upload is spooled to a temp file while its SHA-256 is computed, so it is never held in memory, and versions written
+ * this way keep the hash as user metadata. An upload with the same hash as the latest version is not written again.
+ */
+@Service
+public class DeduplicationService {
+  public static final String HASH_METADATA = "sha256";
+
+  @Value("${upload.dedup.buckets:}")
+  private Set<String> buckets;
+
+  @Value("${upload.dedup.spool-directory:${java.io.tmpdir}/document-service-upload-spool}")
+  private Path spoolDirectory;
+
+  @PostConstruct
+  void init() throws IOException {
+    if (!buckets.isEmpty()) {
+      Files.createDirectories(spoolDirectory);
+    }
+  }
+
+  public boolean isEnabled(String bucketName) {
+    return buckets.contains("*") || buckets.contains(bucketName);
+  }
+
+  /**
+   * Copies the stream to a temp file and hashes it on the way; closing the result deletes the file.
+   */
+  public SpooledUpload spool(InputStream stream) throws IOException {
+    Path file = Files.createTempFile(spoolDirectory, "upload-", ".spool");
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      long size;
+      try (OutputStream outputStream = new DigestOutputStream(Files.newOutputStream(file), digest)) {
+        size = stream.transferTo(outputStream);
+      }
+      return new SpooledUpload(file, size, HexFormat.of().formatHex(digest.digest()));
+    } catch (NoSuchAlgorithmException e) {
+      Files.deleteIfExists(file);
+      throw new IllegalStateException("SHA-256 is not available", e);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+  }
+
+  public record SpooledUpload(
+      Path file,
+      long size,
+      String sha256
+  ) implements AutoCloseable {
+    public InputStream open() throws IOException {
+      return Files.newInputStream(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package com.document.document_service.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.document.document_service.dto.response.PresignedUrlResponse;
+
+import io.minio.BucketExistsArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.PostPolicy;
+import io.minio.StatObjectResponse;
+import io.minio.http.Method;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Direct transfer mode: instead of proxying the bytes, the service checks the request and hands out a short-lived
+ * presigned URL, and the client moves the data to or from minio itself. Uploads are recorded by a completion call
+ * afterwards, see {@link DocumentService#completeDirectUpload}. The URLs are signed locally for
+ * {@code minio.direct-transfer.public-url}, the address of minio as the clients see it.
+ */
+@Service
+@RequiredArgsConstructor
+public class DirectTransferService {
+  private static final Duration MAX_EXPIRY = Duration.ofDays(7);
+
+  private final MinioClient minioClient;
+  private final DocumentService documentService;
+  private final DeduplicationService deduplicationService;
+  private final CompressionService compressionService;
+
+  @Value("${minio.direct-transfer.enabled:false}")
+  private boolean enabled;
+
+  @Value("${minio.direct-transfer.redirect-downloads:false}")
+  private boolean redirectDownloads;
+
+  @Value("${minio.direct-transfer.public-url:${minio.url}}")
+  private String publicUrl;
+
+  // with a fixed region the urls are signed without asking minio for the bucket region
+  @Value("${minio.direct-transfer.region:us-east-1}")
+  private String region;
+
+  @Value("${minio.access-key}")
+  private String accessKey;
+
+  @Value("${minio.secret-key}")
+  private String secretKey;
+
+  @Value("${minio.direct-transfer.expiry:PT5M}")
+  private Duration expiry;
+
+  @Value("${minio.direct-transfer.max-upload-size:5GB}")
+  private DataSize maxUploadSize;
+
+  private MinioClient signingClient;
+
+  @PostConstruct
+  void init() {
+    if (expiry.toSeconds() < 1 || expiry.compareTo(MAX_EXPIRY) > 0) {
+      throw new IllegalStateException("minio.direct-transfer.expiry must be between 1 second and 7 days.");
+    }
+    if (redirectDownloads && !enabled) {
+      throw new IllegalStateException(
+          "minio.direct-transfer.redirect-downloads requires minio.direct-transfer.enabled.");
+    }
+    signingClient = MinioClient.builder()
+        .endpoint(publicUrl)
+        .region(region)
+        .credentials(accessKey, secretKey)
+        .build();
+  }
+
+  public boolean isRedirectDownloads() {
+    return redirectDownloads;
+  }
+
+  /**
+   * Presigned GET of the version, or of the latest version; the URL is pinned to the stat-ed version id. Compressed
+   * versions are served with their codec as Content-Encoding, so clients decompress them transparently.
+   */
+  public PresignedUrlResponse presignDownload(String bucketName, String fileName, String versionId) throws Exception {
+    checkEnabled();
+    StatObjectResponse stat = documentService.statFile(bucketName, fileName, versionId);
+    String resolvedVersionId = stat.versionId() == null || stat.versionId().equals("null") ? null : stat.versionId();
+
+    Map<String, String> queryParams = new HashMap<>();
+    Codec codec = Codec.of(stat.userMetadata());
+    if (codec != null) {
+      queryParams.put("response-content-encoding", codec.encoding());
+    }
+
+    String url = signingClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+        .method(Method.GET)
+        .bucket(bucketName)
+        .object(fileName)
+        .versionId(resolvedVersionId)
+        .extraQueryParams(queryParams)
+        .expiry((int) expiry.toSeconds())
+        .build());
+
+    return PresignedUrlResponse.builder()
+        .method(Method.GET.name())
+        .url(url)
+        .versionId(resolvedVersionId)
+        .expiresAt(expiresAt())
+        .build();
+  }
+
+  /**
+   * Presigned PUT of a new version. A PUT URL cannot limit the size of the upload; use
+   * {@link #presignPostPolicy} where {@code max-upload-size} has to be enforced.
+   */
+  public PresignedUrlResponse presignUpload(String bucketName, String fileName) throws Exception {
+    checkUploadable(bucketName);
+    String url = signingClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+        .method(Method.PUT)
+        .bucket(bucketName)
+        .object(fileName)
+        .expiry((int) expiry.toSeconds())
+        .build());
+
+    return PresignedUrlResponse.builder()
+        .method(Method.PUT.name())
+        .url(url)
+        .expiresAt(expiresAt())
+        .build();
+  }
+
+  /**
+   * Browser form upload: the form fields to post together with the file to the bucket URL. The policy pins the file
+   * name and the content type and limits the size to {@code max-upload-size}.
+   */
+  public PresignedUrlResponse presignPostPolicy(String bucketName, String fileName, String contentType)
+      throws Exception {
+    checkUploadable(bucketName);
+    PostPolicy policy = new PostPolicy(bucketName, ZonedDateTime.now(ZoneOffset.UTC).plus(expiry));
+    policy.addEqualsCondition("key", fileName);
+    if (contentType != null && !contentType.isEmpty()) {
+      policy.addEqualsCondition("Content-Type", contentType);
+    }
+    policy.addContentLengthRangeCondition(0, maxUploadSize.toBytes());
+
+    Map<String, String> formData = new HashMap<>(signingClient.getPresignedPostFormData(policy));
+    formData.put("key", fileName);
+    if (contentType != null && !contentType.isEmpty()) {
+      formData.put("Content-Type", contentType);
+    }
+
+    return PresignedUrlResponse.builder()
+        .method(Method.POST.name())
+        .url(publicUrl.replaceAll("/+$", "") + "/" + bucketName)
+        .expiresAt(expiresAt())
+        .formData(formData)
+        .build();
+  }
+
+  /**
+   * Direct uploads bypass the service, so they are refused for buckets whose uploads the service has to transform.
+   */
+  private void checkUploadable(String bucketName) throws Exception {
+    checkEnabled();
+    if (deduplicationService.isEnabled(bucketName) || compressionService.isEnabled(bucketName)) {
+      throw new IllegalStateException("Direct uploads are not allowed into buckets with deduplication or "
+          + "compression: " + bucketName);
+    }
+    if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+      throw new IllegalStateException("Bucket not found by name: " + bucketName);
+    }
+  }
+
+  private void checkEnabled() {
+    if (!enabled) {
+      throw new IllegalStateException("Direct transfer is not enabled.");
+    }
+  }
+
+  private LocalDateTime expiresAt() {
+    return LocalDateTime.now(ZoneOffset.UTC).plus(expiry);
+  }
+}
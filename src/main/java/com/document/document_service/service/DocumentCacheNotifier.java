@@ -0,0 +1,162 @@
+package com.document.document_service.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+
+import com.document.document_service.config.TaskExecutors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shares document cache invalidations between the instances of the service through a postgres LISTEN/NOTIFY channel.
+ * Each instance listens on its own connection outside the pool and skips its own notifications. Notifications sent
+ * while the connection was down are lost, so the whole cache is dropped every time the listener (re)connects.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentCacheNotifier {
+  private static final String CHANNEL_PATTERN = "[a-z_][a-z0-9_]*";
+  private static final int POLL_TIMEOUT_MILLIS = 10_000;
+  private static final long RETRY_DELAY_MILLIS = 5_000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+  private final TaskExecutors taskExecutors;
+
+  private final String origin = UUID.randomUUID().toString();
+  private volatile BiConsumer<String, String> subscriber = (bucketName, objectName) -> {
+  };
+
+  @Value("${document-cache.notify.enabled:false}")
+  private boolean enabled;
+
+  @Value("${document-cache.notify.channel:document_cache_invalidation}")
+  private String channel;
+
+  @Value("${spring.datasource.url}")
+  private String url;
+
+  @Value("${spring.datasource.username}")
+  private String username;
+
+  @Value("${spring.datasource.password}")
+  private String password;
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  void init() {
+    // the channel is an identifier in the LISTEN statement and cannot be a bind parameter
+    if (!channel.matches(CHANNEL_PATTERN)) {
+      throw new IllegalStateException("document-cache.notify.channel must match " + CHANNEL_PATTERN + ".");
+    }
+  }
+
+  /**
+   * Registers the local eviction, called with the bucket and object name of every notification of another instance.
+   */
+  public void subscribe(BiConsumer<String, String> subscriber) {
+    this.subscriber = subscriber;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    executor = taskExecutors.newFixedPool("document-cache-notify", 1);
+    executor.execute(this::listen);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  public void publish(String bucketName, String objectName) {
+    if (!enabled) {
+      return;
+    }
+
+    try {
+      String payload = objectMapper.writeValueAsString(new Invalidation(origin, bucketName, objectName));
+      jdbcTemplate.queryForList("select pg_notify(?, ?)", channel, payload);
+    } catch (JsonProcessingException | RuntimeException e) {
+      // the other instances still drop the entry when its time to live ends
+      log.warn("Document cache invalidation could not be published for bucket: {}, object: {}",
+          bucketName, objectName, e);
+    }
+  }
+
+  private void listen() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try (Connection connection = DriverManager.getConnection(url, username, password);
+           Statement statement = connection.createStatement()) {
+        statement.execute("LISTEN " + channel);
+        subscriber.accept(null, null);
+        log.info("Listening for document cache invalidations on channel: {}", channel);
+
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (!Thread.currentThread().isInterrupted()) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              handle(notification.getParameter());
+            }
+          }
+        }
+      } catch (SQLException e) {
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+        log.warn("Document cache notification listener failed, retrying", e);
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private void handle(String payload) {
+    try {
+      Invalidation invalidation = objectMapper.readValue(payload, Invalidation.class);
+      if (!origin.equals(invalidation.origin())) {
+        subscriber.accept(invalidation.bucketName(), invalidation.objectName());
+      }
+    } catch (JsonProcessingException e) {
+      log.warn("Invalid document cache notification: {}", payload, e);
+    }
+  }
+
+  private record Invalidation(
+      String origin,
+      String bucketName,
+      String objectName
+  ) {
+  }
+}
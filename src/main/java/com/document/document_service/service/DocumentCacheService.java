@@ -0,0 +1,178 @@
+package com.document.document_service.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import com.document.document_service.dto.response.DocumentResponse;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounded cache of the documents (version histories) of single objects and of whole bucket listings, both with a
+ * time to live. The document service invalidates the affected entries after every change it makes, and the
+ * invalidations are shared with the other instances through {@link DocumentCacheNotifier} when it is enabled.
+ * <p>
+ * A read takes a {@link #stamp()} before loading and its result is only stored if no invalidation happened meanwhile,
+ * so a load that raced with a change never overwrites the invalidation.
+ */
+@Service
+@RequiredArgsConstructor
+public class DocumentCacheService {
+  private final DocumentCacheNotifier documentCacheNotifier;
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  @Value("${document-cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${document-cache.ttl:PT5M}")
+  private Duration ttl;
+
+  @Value("${document-cache.max-documents:10000}")
+  private int maxDocuments;
+
+  @Value("${document-cache.max-listings:16}")
+  private int maxListings;
+
+  @Value("${document-cache.max-listing-size:10000}")
+  private int maxListingSize;
+
+  private ExpiringLruCache<DocumentKey, DocumentResponse> documents;
+  private ExpiringLruCache<ListingKey, List<DocumentResponse>> listings;
+
+  @PostConstruct
+  void init() {
+    documents = new ExpiringLruCache<>(maxDocuments, ttl);
+    listings = new ExpiringLruCache<>(maxListings, ttl);
+    documentCacheNotifier.subscribe(this::evict);
+  }
+
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  public synchronized DocumentResponse getDocument(String bucketName, String objectName) {
+    return enabled ? documents.get(new DocumentKey(bucketName, objectName)) : null;
+  }
+
+  public synchronized void putDocument(String bucketName, String objectName, DocumentResponse document, long stamp) {
+    if (enabled && stamp == invalidations.get()) {
+      documents.put(new DocumentKey(bucketName, objectName), document);
+    }
+  }
+
+  public synchronized List<DocumentResponse> getListing(String bucketName, boolean latestOnly) {
+    return enabled ? listings.get(new ListingKey(bucketName, latestOnly)) : null;
+  }
+
+  public synchronized void putListing(String bucketName, boolean latestOnly, List<DocumentResponse> listing,
+                                      long stamp) {
+    if (enabled && stamp == invalidations.get() && listing.size() <= maxListingSize) {
+      listings.put(new ListingKey(bucketName, latestOnly), listing);
+    }
+  }
+
+  /**
+   * Drops the document of the object and the listings of its bucket, here and on the other instances.
+   */
+  public void invalidateObject(String bucketName, String objectName) {
+    evict(bucketName, objectName);
+    documentCacheNotifier.publish(bucketName, objectName);
+  }
+
+  /**
+   * Drops every document and the listings of the bucket, here and on the other instances.
+   */
+  public void invalidateBucket(String bucketName) {
+    evict(bucketName, null);
+    documentCacheNotifier.publish(bucketName, null);
+  }
+
+  /**
+   * Local eviction; a null object name evicts the whole bucket and a null bucket name everything.
+   */
+  private void evict(String bucketName, String objectName) {
+    invalidations.incrementAndGet();
+    synchronized (this) {
+      if (bucketName == null) {
+        documents.removeIf(key -> true);
+        listings.removeIf(key -> true);
+      } else if (objectName == null) {
+        documents.removeIf(key -> key.bucketName().equals(bucketName));
+        listings.removeIf(key -> key.bucketName().equals(bucketName));
+      } else {
+        documents.remove(new DocumentKey(bucketName, objectName));
+        listings.removeIf(key -> key.bucketName().equals(bucketName));
+      }
+    }
+  }
+
+  private record DocumentKey(
+      String bucketName,
+      String objectName
+  ) {
+  }
+
+  private record ListingKey(
+      String bucketName,
+      boolean latestOnly
+  ) {
+  }
+
+  /**
+   * Least recently used map bounded by entry count whose entries expire after the time to live. Not thread safe.
+   */
+  private static final class ExpiringLruCache<K, V> {
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Expiring<V>> entries;
+
+    private ExpiringLruCache(int maxEntries, Duration ttl) {
+      this.ttlNanos = ttl.toNanos();
+      this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Expiring<V>> eldest) {
+          return size() > maxEntries;
+        }
+      };
+    }
+
+    private V get(K key) {
+      Expiring<V> entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (System.nanoTime() - entry.createdNanos() > ttlNanos) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.value();
+    }
+
+    private void put(K key, V value) {
+      entries.put(key, new Expiring<>(value, System.nanoTime()));
+    }
+
+    private void remove(K key) {
+      entries.remove(key);
+    }
+
+    private void removeIf(Predicate<K> predicate) {
+      entries.keySet().removeIf(predicate);
+    }
+
+    private record Expiring<V>(
+        V value,
+        long createdNanos
+    ) {
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.document.document_service.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Document level metrics:
+ * <ul>
+ *   <li>{@code document.listing.items}: versions scanned in minio listings against the versions actually used, by
+ *   operation; the gap is the cost of prefix scans such as the one behind getDocument,</li>
+ *   <li>{@code document.transfer.bytes}: bytes uploaded and downloaded, by direction and bucket,</li>
+ *   <li>{@code document.transfer.throughput}: bytes per second of the last sampling interval, by direction,</li>
+ *   <li>{@code document.upload.deduplicated}: bytes of uploads that matched the latest version and were not written,
+ *   by bucket.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentMetrics {
+  private static final long SAMPLE_INTERVAL_MILLIS = 10_000;
+
+  private final MeterRegistry meterRegistry;
+
+  private final AtomicLong uploadedBytes = new AtomicLong();
+  private final AtomicLong downloadedBytes = new AtomicLong();
+  private volatile double uploadThroughput;
+  private volatile double downloadThroughput;
+  private long lastUploadedBytes;
+  private long lastDownloadedBytes;
+  private long lastSampleNanos = System.nanoTime();
+
+  @PostConstruct
+  void init() {
+    Gauge.builder("document.transfer.throughput", () -> uploadThroughput)
+        .description("Bytes per second of the last sampling interval")
+        .baseUnit("bytes")
+        .tag("direction", "upload")
+        .register(meterRegistry);
+    Gauge.builder("document.transfer.throughput", () -> downloadThroughput)
+        .description("Bytes per second of the last sampling interval")
+        .baseUnit("bytes")
+        .tag("direction", "download")
+        .register(meterRegistry);
+  }
+
+  public Counter scannedCounter(String operation) {
+    return listingCounter(operation, "scanned");
+  }
+
+  public Counter returnedCounter(String operation) {
+    return listingCounter(operation, "returned");
+  }
+
+  public void recordUpload(String bucketName, long bytes) {
+    uploadedBytes.addAndGet(bytes);
+    transferCounter("upload", bucketName).increment(bytes);
+  }
+
+  public void recordDownload(String bucketName, long bytes) {
+    downloadedBytes.addAndGet(bytes);
+    transferCounter("download", bucketName).increment(bytes);
+  }
+
+  public void recordDeduplicated(String bucketName, long bytes) {
+    Counter.builder("document.upload.deduplicated")
+        .description("Bytes of uploads that matched the latest version and were not written again")
+        .baseUnit("bytes")
+        .tag("bucket", bucketName)
+        .register(meterRegistry)
+        .increment(bytes);
+  }
+
+  @Scheduled(fixedRate = SAMPLE_INTERVAL_MILLIS)
+  synchronized void sampleThroughput() {
+    long now = System.nanoTime();
+    double seconds = (now - lastSampleNanos) / 1_000_000_000.0;
+    long uploaded = uploadedBytes.get();
+    long downloaded = downloadedBytes.get();
+
+    uploadThroughput = (uploaded - lastUploadedBytes) / seconds;
+    downloadThroughput = (downloaded - lastDownloadedBytes) / seconds;
+    lastUploadedBytes = uploaded;
+    lastDownloadedBytes = downloaded;
+    lastSampleNanos = now;
+  }
+
+  private Counter listingCounter(String operation, String stage) {
+    return Counter.builder("document.listing.items")
+        .description("Versions scanned in minio listings and versions returned from them")
+        .tag("operation", operation)
+        .tag("stage", stage)
+        .register(meterRegistry);
+  }
+
+  private Counter transferCounter(String direction, String bucketName) {
+    return Counter.builder("document.transfer.bytes")
+        .description("Bytes uploaded and downloaded")
+        .baseUnit("bytes")
+        .tag("direction", direction)
+        .tag("bucket", bucketName)
+        .register(meterRegistry);
+  }
+}
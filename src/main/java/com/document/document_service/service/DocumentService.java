@@ -1,50 +1,244 @@
 package com.document.document_service.service;
 
 import java.io.InputStream;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import com.document.document_service.dto.response.DeleteResponse;
+import com.document.document_service.dto.response.DocumentPageResponse;
 import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.DocumentVersionPageResponse;
 import com.document.document_service.dto.response.OldDocumentVersion;
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.mapper.CatalogMapper;
+import com.document.document_service.mapper.DocumentMapper;
+import com.document.document_service.service.BulkDeleteService.ObjectVersion;
+import com.document.document_service.service.CatalogService.LatestVersion;
+import com.document.document_service.service.CompressionService.EncodedUpload;
+import com.document.document_service.service.DeduplicationService.SpooledUpload;
 
-import io.minio.CopyObjectArgs;
-import io.minio.CopySource;
+import com.google.common.io.ByteStreams;
+
+import io.micrometer.core.instrument.Counter;
 import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
 import io.minio.ListObjectsArgs;
 import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
 import io.minio.PutObjectArgs;
-import io.minio.RemoveObjectArgs;
 import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
 import io.minio.messages.Item;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DocumentService {
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int STREAM_CHUNK_SIZE = 500;
+  private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
   private final MinioClient minioClient;
+  private final CatalogService catalogService;
+  private final BulkDeleteService bulkDeleteService;
+  private final BucketStatisticsService bucketStatisticsService;
+  private final CopyService copyService;
+  private final ContentCacheService contentCacheService;
+  private final DocumentCacheService documentCacheService;
+  private final DeduplicationService deduplicationService;
+  private final CompressionService compressionService;
+  private final RenditionService renditionService;
+  private final DocumentMetrics documentMetrics;
+
+  @Value("${minio.upload.part-size:16MB}")
+  private DataSize uploadPartSize;
+
+  public DocumentResponse uploadFile(String bucketName, MultipartFile file) throws Exception {
+    return uploadFile(bucketName, file.getOriginalFilename(), file.getContentType(), file.getInputStream(),
+        file.getSize());
+  }
 
-  public MultipartFile uploadFile(String bucketName, MultipartFile file) throws Exception {
-    minioClient.putObject(PutObjectArgs.builder()
+  /**
+   * Pipes the stream straight into minio, compressed on the way if the compression policy of the bucket says so. A
+   * negative size means the length is unknown, minio then uploads it as a multipart upload with parts of the
+   * configured size, holding at most one part in memory.
+   */
+  public DocumentResponse uploadFile(String bucketName, String fileName, String contentType, InputStream stream,
+                                     long size) throws Exception {
+    if (deduplicationService.isEnabled(bucketName)) {
+      return uploadDeduplicated(bucketName, fileName, contentType, stream);
+    }
+
+    Long previousLatestSize = findLatestSize(bucketName, fileName);
+    EncodedUpload upload = compressionService.encode(bucketName, contentType, stream, size < 0 ? -1 : size);
+    ObjectWriteResponse response = minioClient.putObject(PutObjectArgs.builder()
         .bucket(bucketName)
-        .object(file.getOriginalFilename())
-        .contentType(file.getContentType())
-        .stream(file.getInputStream(), file.getSize(), -1)
+        .object(fileName)
+        .contentType(contentType == null ? DEFAULT_CONTENT_TYPE : contentType)
+        .userMetadata(upload.userMetadata())
+        .stream(upload.stream(), upload.size(), uploadPartSize.toBytes())
         .build());
+    StatObjectResponse stat = recordVersion(bucketName, fileName, response.versionId(), previousLatestSize);
+    documentMetrics.recordUpload(bucketName, stat.size());
 
-    return file;
+    return DocumentMapper.toDto(stat);
+  }
+
+  /**
+   * Records a version that the client uploaded to minio itself through a presigned URL, as {@link #uploadFile} does
+   * for the uploads it proxies. Without a version id the latest version is recorded. Repeated calls for the same
+   * version only refresh the catalog.
+   */
+  public DocumentResponse completeDirectUpload(String bucketName, String fileName, String versionId)
+      throws Exception {
+    StatObjectResponse uploaded = statFile(bucketName, fileName, versionId);
+    List<CatalogVersion> versions = findVersions(bucketName, fileName);
+    boolean recorded = catalogService.isReady(bucketName) && versions.stream()
+        .anyMatch(version -> Objects.equals(version.getVersionId(), uploaded.versionId()));
+    if (recorded) {
+      updateCatalog(bucketName, () -> catalogService.saveVersion(uploaded));
+      documentCacheService.invalidateObject(bucketName, fileName);
+      return DocumentMapper.toDto(uploaded);
+    }
+
+    // the previous latest version is the newest one besides the uploaded version
+    Long previousLatestSize = versions.stream()
+        .filter(version -> !Objects.equals(version.getVersionId(), uploaded.versionId()))
+        .reduce((first, second) -> second)
+        .map(CatalogVersion::getSize)
+        .orElse(null);
+    StatObjectResponse stat = recordVersion(bucketName, fileName, uploaded.versionId(), previousLatestSize);
+    documentMetrics.recordUpload(bucketName, stat.size());
+
+    return DocumentMapper.toDto(stat);
+  }
+
+  /**
+   * Spools and hashes the upload first. If the latest version has the same hash it is returned as it is, otherwise the
+   * spooled file is written as a new version together with its hash.
+   */
+  private DocumentResponse uploadDeduplicated(String bucketName, String fileName, String contentType,
+                                              InputStream stream) throws Exception {
+    try (SpooledUpload upload = deduplicationService.spool(stream)) {
+      StatObjectResponse latest = findLatest(bucketName, fileName);
+      if (latest != null && upload.sha256().equals(latest.userMetadata().get(DeduplicationService.HASH_METADATA))) {
+        documentMetrics.recordDeduplicated(bucketName, upload.size());
+        return DocumentMapper.toDto(latest);
+      }
+
+      ObjectWriteResponse response;
+      try (InputStream data = upload.open()) {
+        EncodedUpload encoded = compressionService.encode(bucketName, contentType, data, upload.size());
+        Map<String, String> userMetadata = new HashMap<>(encoded.userMetadata());
+        userMetadata.put(DeduplicationService.HASH_METADATA, upload.sha256());
+        response = minioClient.putObject(PutObjectArgs.builder()
+            .bucket(bucketName)
+            .object(fileName)
+            .contentType(contentType == null ? DEFAULT_CONTENT_TYPE : contentType)
+            .userMetadata(userMetadata)
+            .stream(encoded.stream(), encoded.size(), uploadPartSize.toBytes())
+            .build());
+      }
+      StatObjectResponse stat = recordVersion(bucketName, fileName, response.versionId(),
+          latest == null ? null : latest.size());
+      documentMetrics.recordUpload(bucketName, stat.size());
+
+      return DocumentMapper.toDto(stat);
+    }
   }
 
   public InputStream downloadFile(String bucketName, String fileName, String versionId) throws Exception {
+    return downloadFile(bucketName, fileName, versionId, null, null);
+  }
+
+  /**
+   * Reads the content of the object, or only {@code length} bytes from {@code offset} of it when a range is given.
+   * Compressed versions are decompressed; their ranges refer to the original content, so the whole version is read
+   * and the bytes before the range are skipped.
+   */
+  public InputStream downloadFile(String bucketName, String fileName, String versionId, Long offset, Long length)
+      throws Exception {
+    GetObjectResponse stored;
+    Codec codec;
+    try {
+      stored = downloadStored(bucketName, fileName, versionId, offset, length);
+      codec = Codec.of(stored.headers().get("x-amz-meta-" + Codec.CODEC_METADATA));
+    } catch (ErrorResponseException e) {
+      // a range of the original content can lie past the end of the compressed version
+      if (offset == null || !"InvalidRange".equals(e.errorResponse().code())) {
+        throw e;
+      }
+      codec = Codec.of(statFile(bucketName, fileName, versionId).userMetadata());
+      if (codec == null) {
+        throw e;
+      }
+      stored = null;
+    }
+
+    if (codec == null) {
+      return stored;
+    }
+    if (offset != null) {
+      if (stored != null) {
+        stored.close();
+      }
+      stored = downloadStored(bucketName, fileName, versionId, null, null);
+    }
+
+    InputStream content = codec.decompress(stored);
+    if (offset == null) {
+      return content;
+    }
+    content.skipNBytes(offset);
+    return ByteStreams.limit(content, length);
+  }
+
+  /**
+   * Writes the content of the object, or only {@code length} bytes from {@code offset}, to the stream; {@code size} is
+   * the size of the whole object. Without {@code decode} the stored bytes are written as they are and served from the
+   * content cache when they are cacheable. With it compressed versions are decompressed, which the content cache does
+   * not do, so it is skipped.
+   */
+  public void transferFile(String bucketName, String fileName, String versionId, long size, Long offset, Long length,
+                           boolean decode, OutputStream outputStream) throws Exception {
+    if (decode) {
+      try (InputStream data = downloadFile(bucketName, fileName, versionId, offset, length)) {
+        data.transferTo(outputStream);
+      }
+    } else if (!contentCacheService.transfer(bucketName, fileName, versionId, size, offset, length, outputStream)) {
+      try (InputStream data = downloadStored(bucketName, fileName, versionId, offset, length)) {
+        data.transferTo(outputStream);
+      }
+    }
+    documentMetrics.recordDownload(bucketName, offset == null ? size : length);
+  }
+
+  private GetObjectResponse downloadStored(String bucketName, String fileName, String versionId, Long offset,
+                                           Long length) throws Exception {
     GetObjectArgs.Builder getObjectArgsBuilder = GetObjectArgs.builder()
         .bucket(bucketName)
         .object(fileName);
@@ -52,187 +246,398 @@ public class DocumentService {
     if (versionId != null && !versionId.isEmpty()) {
       getObjectArgsBuilder.versionId(versionId);
     }
+    if (offset != null) {
+      getObjectArgsBuilder.offset(offset).length(length);
+    }
 
     return minioClient.getObject(getObjectArgsBuilder.build());
   }
 
-  public List<DocumentResponse> getAllDocuments(String bucketName) throws Exception {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+  public StatObjectResponse statFile(String bucketName, String fileName, String versionId) throws Exception {
+    StatObjectArgs.Builder statObjectArgsBuilder = StatObjectArgs.builder()
         .bucket(bucketName)
-        .includeVersions(true)
-        .build());
+        .object(fileName);
 
-    Map<String, List<Item>> groupedItems = StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .collect(Collectors.groupingBy(
-            Item::objectName,
-            Collectors.mapping(
-                item -> item,
-                Collectors.collectingAndThen(
-                    Collectors.toList(),
-                    list -> list.stream()
-                        .sorted(Comparator.comparing(Item::lastModified)) // v1, v2, v3 ..
-                        .toList()
-                )
-            )
-        ));
-
-    return groupedItems.values().stream()
-        .map(items -> getDocumentResponse(bucketName, items))
-        .toList();
+    if (versionId != null && !versionId.isEmpty()) {
+      statObjectArgsBuilder.versionId(versionId);
+    }
+
+    return minioClient.statObject(statObjectArgsBuilder.build());
   }
 
-  public DocumentResponse getDocument(String bucketName, String fileName) {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-        .bucket(bucketName)
-        .includeVersions(true)
-        .build());
+  /**
+   * All documents of the bucket, with their version histories or with {@code latestOnly} only their latest versions.
+   */
+  public List<DocumentResponse> getAllDocuments(String bucketName, boolean latestOnly) throws Exception {
+    List<DocumentResponse> cached = documentCacheService.getListing(bucketName, latestOnly);
+    if (cached != null) {
+      return cached;
+    }
 
-    List<Item> itemsByFileName = StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .filter(item -> item.objectName().equals(fileName)) // v2, v1, v3, v4
-        .sorted(Comparator.comparing(Item::lastModified)) // v1, v2, v3, v4
-        .toList();
+    long stamp = documentCacheService.stamp();
+    List<DocumentResponse> documents = new ArrayList<>();
+    if (latestOnly) {
+      streamLatestDocuments(bucketName, null, documents::add);
+    } else {
+      streamDocuments(bucketName, null, documents::add);
+    }
+    documents = List.copyOf(documents);
+    documentCacheService.putListing(bucketName, latestOnly, documents, stamp);
+    return documents;
+  }
+
+  /**
+   * One page of documents in object name order. The continuation token of the response resumes after the last
+   * document of the page and is null on the last page.
+   */
+  public DocumentPageResponse getDocumentPage(String bucketName, String prefix, String continuationToken,
+                                              int pageSize) {
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+    }
+
+    String afterObjectName = decodeContinuationToken(continuationToken);
+    boolean catalogReady = catalogService.isReady(bucketName);
+    Iterator<CatalogVersion> versions = catalogReady
+        ? catalogService.getVersionPage(bucketName, prefix, afterObjectName, pageSize + 1).iterator()
+        : listVersions(bucketName, prefix, afterObjectName, "getDocumentPage").iterator();
+
+    List<DocumentResponse> documents = new ArrayList<>(pageSize);
+    boolean hasMore = forEachDocument(bucketName, versions, document -> {
+      documents.add(document);
+      return documents.size() < pageSize;
+    });
+    if (!catalogReady) {
+      documentMetrics.returnedCounter("getDocumentPage").increment(documents.stream()
+          .mapToInt(this::countVersions)
+          .sum());
+    }
 
-    return getDocumentResponse(bucketName, itemsByFileName);
+    return DocumentPageResponse.builder()
+        .documents(documents)
+        .nextContinuationToken(hasMore ? encodeContinuationToken(documents.getLast().fileName()) : null)
+        .build();
   }
 
-  private DocumentResponse getDocumentResponse(String bucketName, List<Item> itemsByFileName) {
-    Item itemLastVersioned = itemsByFileName.getLast(); // v4
-    List<Item> newToOld = itemsByFileName.stream()
-        .filter(item -> item != itemLastVersioned) // v4 removed from list
-        .toList();
+  /**
+   * Hands every document to the consumer as soon as all of its versions are read, so memory stays bounded by the
+   * versions of one object (or one catalog chunk) instead of the whole bucket.
+   */
+  public void streamDocuments(String bucketName, String prefix, Consumer<DocumentResponse> consumer) {
+    Predicate<DocumentResponse> action = document -> {
+      consumer.accept(document);
+      return true;
+    };
+
+    if (!catalogService.isReady(bucketName)) {
+      Counter returned = documentMetrics.returnedCounter("streamDocuments");
+      forEachDocument(bucketName, listVersions(bucketName, prefix, null, "streamDocuments").iterator(),
+          document -> {
+            returned.increment(countVersions(document));
+            return action.test(document);
+          });
+      return;
+    }
 
-    List<OldDocumentVersion> oldDocumentVersions = new ArrayList<>();
-    for (int i = newToOld.size(); i > 0; i--) {
-      Item item = newToOld.get(i - 1);
-      oldDocumentVersions.add(OldDocumentVersion.builder()
-          .size(item.size())
-          .createdDate(LocalDateTime.ofInstant(item.lastModified().toInstant(), ZoneOffset.UTC))
-          .versionId(item.versionId())
-          .version("v" + (i))
-          .build());
+    String afterObjectName = null;
+    while (true) {
+      List<CatalogVersion> versions = catalogService.getVersionPage(bucketName, prefix, afterObjectName,
+          STREAM_CHUNK_SIZE);
+      if (versions.isEmpty()) {
+        return;
+      }
+      forEachDocument(bucketName, versions.iterator(), action);
+      afterObjectName = versions.getLast().getObjectName();
+    }
+  }
+
+  /**
+   * Like {@link #streamDocuments} but with the latest version of every object only, without the version histories.
+   * Before the catalog is ready the objects are listed without versions, one item per object; such a listing has no
+   * version ids, so those documents come without version id and version label.
+   */
+  public void streamLatestDocuments(String bucketName, String prefix, Consumer<DocumentResponse> consumer) {
+    if (!catalogService.isReady(bucketName)) {
+      Counter returned = documentMetrics.returnedCounter("streamLatestDocuments");
+      listObjects(bucketName, prefix, null, false, "streamLatestDocuments").forEach(version -> {
+        returned.increment();
+        consumer.accept(DocumentMapper.toLatestDto(bucketName, version, null));
+      });
+      return;
+    }
+
+    String afterObjectName = null;
+    while (true) {
+      List<LatestVersion> versions = catalogService.getLatestVersionPage(bucketName, prefix, afterObjectName,
+          STREAM_CHUNK_SIZE);
+      if (versions.isEmpty()) {
+        return;
+      }
+      versions.forEach(latest -> consumer.accept(DocumentMapper.toLatestDto(bucketName, latest.version(),
+          latest.versionCount())));
+      afterObjectName = versions.getLast().version().getObjectName();
+    }
+  }
+
+  /**
+   * One page of the versions of a document, newest first and numbered like {@link #getDocument} (v1 is the oldest).
+   * The continuation token resumes below the last version of the page, so versions written in between do not shift
+   * the pages. Served by the catalog once the bucket has been reconciled; before that every version of the document is
+   * listed for every page, the listing cannot be numbered otherwise.
+   */
+  public DocumentVersionPageResponse getVersionPage(String bucketName, String fileName, String continuationToken,
+                                                    int pageSize) {
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+    }
+
+    boolean catalogReady = catalogService.isReady(bucketName);
+    List<CatalogVersion> allVersions = catalogReady ? null : findVersions(bucketName, fileName);
+    int versionCount = catalogReady
+        ? (int) catalogService.countVersions(bucketName, fileName)
+        : allVersions.size();
+    if (versionCount == 0) {
+      throw new IllegalStateException("Document not found by name: " + fileName);
+    }
+
+    // numbers of the first (newest) and the last version of the page
+    int first = continuationToken == null || continuationToken.isEmpty()
+        ? versionCount
+        : Math.min(decodeVersionNumber(continuationToken) - 1, versionCount);
+    int last = Math.max(1, first - pageSize + 1);
+    List<CatalogVersion> versions;
+    if (first < 1) {
+      versions = List.of();
+    } else if (catalogReady) {
+      versions = catalogService.getVersionRange(bucketName, fileName, last - 1, first - last + 1);
+    } else {
+      versions = allVersions.subList(last - 1, first);
     }
 
-    return DocumentResponse.builder()
+    List<OldDocumentVersion> page = new ArrayList<>(versions.size());
+    for (int i = versions.size() - 1; i >= 0; i--) {
+      page.add(DocumentMapper.toOldVersion(versions.get(i), last + i));
+    }
+
+    return DocumentVersionPageResponse.builder()
         .bucketName(bucketName)
-        .fileName(itemLastVersioned.objectName())
-        .size(itemLastVersioned.size())
-        .extension(getFileExtension(itemLastVersioned.objectName()))
-        .createdDate(LocalDateTime.ofInstant(itemLastVersioned.lastModified().toInstant(), ZoneOffset.UTC))
-        .versionId(itemLastVersioned.versionId())
-        .version("v" + (itemsByFileName.size()))
-        .oldDocumentVersions(oldDocumentVersions)
+        .fileName(fileName)
+        .versionCount((long) versionCount)
+        .versions(page)
+        .nextContinuationToken(first >= 1 && last > 1 ? encodeContinuationToken(String.valueOf(last)) : null)
         .build();
   }
 
-  private String getFileExtension(String fileName) {
-    int lastIndexOfDot = fileName.lastIndexOf(".");
-    if (lastIndexOfDot == -1) {
-      return "";
+  public DocumentResponse getDocument(String bucketName, String fileName) {
+    DocumentResponse cached = documentCacheService.getDocument(bucketName, fileName);
+    if (cached != null) {
+      return cached;
+    }
+
+    long stamp = documentCacheService.stamp();
+    List<CatalogVersion> versions = findVersions(bucketName, fileName);
+    if (versions.isEmpty()) {
+      throw new IllegalStateException("Document not found by name: " + fileName);
     }
-    return fileName.substring(lastIndexOfDot + 1);
+
+    DocumentResponse document = DocumentMapper.toDto(bucketName, versions);
+    documentCacheService.putDocument(bucketName, fileName, document, stamp);
+    return document;
   }
 
+  /**
+   * Copies every version to the destination and deletes the sources in batches only after all copies are confirmed,
+   * so a failing move never loses a version.
+   */
   public DocumentResponse moveFile(String fileName, String fromBucket, String toBucket) throws Exception {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-        .bucket(fromBucket)
-        .includeVersions(true)
-        .build());
+    return moveFile(fileName, fromBucket, toBucket, false);
+  }
 
-    StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .filter(item -> item.objectName().equals(fileName))
-        .sorted(Comparator.comparing(Item::lastModified)) // v1, v2, v3
-        .forEach(item -> {
-          try {
-            minioClient.copyObject(
-                CopyObjectArgs.builder()
-                    .source(CopySource.builder()
-                        .bucket(fromBucket)
-                        .object(fileName)
-                        .versionId(item.versionId())
-                        .build())
-                    .bucket(toBucket)
-                    .object(fileName)
-                    .build());
-
-            minioClient.removeObject(
-                RemoveObjectArgs.builder()
-                    .bucket(fromBucket)
-                    .object(fileName)
-                    .versionId(item.versionId())
-                    .build()
-            );
-          } catch (Exception e) {
-            throw new RuntimeException("Error during moving file", e);
-          }
-        });
+  /**
+   * With {@code resume} only the versions the destination holds no copy of yet are copied, for a move that may have
+   * been interrupted after some of its copies.
+   */
+  public DocumentResponse moveFile(String fileName, String fromBucket, String toBucket, boolean resume)
+      throws Exception {
+    List<CatalogVersion> versions = findVersions(fromBucket, fileName); // v1, v2, v3
+    copyVersions(fileName, fromBucket, toBucket, versions, resume);
+
+    Iterator<ObjectVersion> sources = versions.stream()
+        .map(version -> new ObjectVersion(fileName, version.getVersionId()))
+        .iterator();
+    bucketStatisticsService.expectVersionsRemoved(fromBucket, versions);
+    DeleteResponse response = bulkDeleteService.delete(fromBucket, sources);
+    if (response.failedCount() > 0) {
+      bucketStatisticsService.cancelVersionsRemoved(fromBucket, versions);
+      updateCatalog(fromBucket, () -> catalogService.markStale(fromBucket));
+      documentCacheService.invalidateObject(fromBucket, fileName);
+      throw new IllegalStateException("File was copied to " + toBucket + " but " + response.failedCount()
+          + " of its versions could not be deleted from " + fromBucket);
+    }
+    updateCatalog(fromBucket, () -> catalogService.deleteObject(fromBucket, fileName));
+    documentCacheService.invalidateObject(fromBucket, fileName);
+    bucketStatisticsService.recordObjectRemoved(fromBucket, fileName, versions);
+    // the copies have versions of their own, which get their renditions in the destination
+    renditionService.deleteRenditions(fromBucket, versions);
 
     return getDocument(toBucket, fileName);
   }
 
-  public DocumentResponse copyFile(String fileName, String fromBucket, String toBucket) {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-        .bucket(fromBucket)
-        .includeVersions(true)
-        .build());
+  public DocumentResponse copyFile(String fileName, String fromBucket, String toBucket) throws Exception {
+    return copyFile(fileName, fromBucket, toBucket, false);
+  }
 
-    StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .filter(item -> item.objectName().equals(fileName))
-        .sorted(Comparator.comparing(Item::lastModified)) // v1, v2, v3
-        .forEach(item -> {
-          try {
-            minioClient.copyObject(
-                CopyObjectArgs.builder()
-                    .source(CopySource.builder()
-                        .bucket(fromBucket)
-                        .object(fileName)
-                        .versionId(item.versionId())
-                        .build())
-                    .bucket(toBucket)
-                    .object(fileName)
-                    .build());
-          } catch (Exception e) {
-            throw new RuntimeException("Error during moving file", e);
-          }
-        });
+  /**
+   * With {@code resume} only the versions the destination holds no copy of yet are copied, see
+   * {@link CopyService#findUncopied}.
+   */
+  public DocumentResponse copyFile(String fileName, String fromBucket, String toBucket, boolean resume)
+      throws Exception {
+    List<CatalogVersion> versions = findVersions(fromBucket, fileName); // v1, v2, v3
+    copyVersions(fileName, fromBucket, toBucket, versions, resume);
 
     return getDocument(toBucket, fileName);
   }
 
-  public void deleteFile(String bucketName, String fileName) {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+  public DeleteResponse deleteFile(String bucketName, String fileName) {
+    List<CatalogVersion> versions = findVersions(bucketName, fileName);
+    Iterator<ObjectVersion> objects = versions.stream()
+        .map(version -> new ObjectVersion(fileName, version.getVersionId()))
+        .iterator();
+
+    bucketStatisticsService.expectVersionsRemoved(bucketName, versions);
+    DeleteResponse response = bulkDeleteService.delete(bucketName, objects);
+    if (response.failedCount() == 0) {
+      updateCatalog(bucketName, () -> catalogService.deleteObject(bucketName, fileName));
+      bucketStatisticsService.recordObjectRemoved(bucketName, fileName, versions);
+      renditionService.deleteRenditions(bucketName, versions);
+    } else {
+      bucketStatisticsService.cancelVersionsRemoved(bucketName, versions);
+      updateCatalog(bucketName, () -> catalogService.markStale(bucketName));
+    }
+    // after the catalog write, so a concurrent read cannot cache the deleted versions again
+    documentCacheService.invalidateObject(bucketName, fileName);
+    return response;
+  }
+
+  public DeleteResponse deleteAllFiles(String bucketName) {
+    DeleteResponse response = bulkDeleteService.deleteAll(bucketName);
+    if (response.failedCount() == 0) {
+      updateCatalog(bucketName, () -> catalogService.clearBucket(bucketName));
+      bucketStatisticsService.recordBucketCleared(bucketName);
+    } else {
+      updateCatalog(bucketName, () -> catalogService.markStale(bucketName));
+    }
+    documentCacheService.invalidateBucket(bucketName);
+    renditionService.deleteAllRenditions(bucketName);
+    return response;
+  }
+
+  /**
+   * Deletes older versions of any objects of the bucket in batched multi-object deletes; the latest versions must not
+   * be among them. The catalog and the statistics follow when all deletes succeeded, otherwise the bucket is marked
+   * stale for the next reconcile.
+   */
+  public DeleteResponse deleteVersions(String bucketName, List<CatalogVersion> versions) {
+    Iterator<ObjectVersion> objects = versions.stream()
+        .map(version -> new ObjectVersion(version.getObjectName(), version.getVersionId()))
+        .iterator();
+
+    bucketStatisticsService.expectVersionsRemoved(bucketName, versions);
+    DeleteResponse response = bulkDeleteService.delete(bucketName, objects);
+    Map<String, List<CatalogVersion>> versionsByObject = versions.stream()
+        .collect(Collectors.groupingBy(CatalogVersion::getObjectName));
+    if (response.failedCount() == 0) {
+      updateCatalog(bucketName, () -> catalogService.deleteVersions(bucketName, versions));
+      versionsByObject.forEach((objectName, objectVersions) ->
+          bucketStatisticsService.recordVersionsRemoved(bucketName, objectName, objectVersions));
+      renditionService.deleteRenditions(bucketName, versions);
+    } else {
+      bucketStatisticsService.cancelVersionsRemoved(bucketName, versions);
+      updateCatalog(bucketName, () -> catalogService.markStale(bucketName));
+    }
+    versionsByObject.keySet().forEach(objectName -> documentCacheService.invalidateObject(bucketName, objectName));
+    return response;
+  }
+
+  /**
+   * Versions of one document sorted by last modified date (v1, v2, v3 ..). Served by the catalog once the bucket has
+   * been reconciled, otherwise by a minio listing narrowed to the file name as prefix.
+   */
+  private List<CatalogVersion> findVersions(String bucketName, String fileName) {
+    if (catalogService.isReady(bucketName)) {
+      return catalogService.getVersions(bucketName, fileName);
+    }
+
+    // the prefix listing also scans every object whose name starts with the file name
+    List<CatalogVersion> versions = listVersions(bucketName, fileName, null, "findVersions")
+        .filter(version -> version.getObjectName().equals(fileName))
+        .sorted(Comparator.comparing(CatalogVersion::getLastModified))
+        .toList();
+    documentMetrics.returnedCounter("findVersions").increment(versions.size());
+    return versions;
+  }
+
+  /**
+   * Walks a version listing that is ordered by object name (minio and the catalog both list in key order) and emits one
+   * document per object. Returns true if the action stopped the walk while more objects were left.
+   */
+  private boolean forEachDocument(String bucketName, Iterator<CatalogVersion> versions,
+                                  Predicate<DocumentResponse> action) {
+    List<CatalogVersion> objectVersions = new ArrayList<>();
+    while (versions.hasNext()) {
+      CatalogVersion version = versions.next();
+      if (!objectVersions.isEmpty() && !objectVersions.getLast().getObjectName().equals(version.getObjectName())) {
+        if (!action.test(toDocument(bucketName, objectVersions))) {
+          return true;
+        }
+        objectVersions = new ArrayList<>();
+      }
+      objectVersions.add(version);
+    }
+
+    if (!objectVersions.isEmpty()) {
+      action.test(toDocument(bucketName, objectVersions));
+    }
+    return false;
+  }
+
+  private int countVersions(DocumentResponse document) {
+    return 1 + document.oldDocumentVersions().size();
+  }
+
+  private DocumentResponse toDocument(String bucketName, List<CatalogVersion> objectVersions) {
+    objectVersions.sort(Comparator.comparing(CatalogVersion::getLastModified)); // v1, v2, v3 ..
+    return DocumentMapper.toDto(bucketName, objectVersions);
+  }
+
+  /**
+   * Versions of the objects under the prefix in key order, starting after {@code afterObjectName} when given.
+   */
+  private Stream<CatalogVersion> listVersions(String bucketName, String prefix, String afterObjectName,
+                                              String operation) {
+    return listObjects(bucketName, prefix, afterObjectName, true, operation);
+  }
+
+  /**
+   * Lists every version of the objects, or without {@code includeVersions} only their latest versions (without version
+   * ids), which minio answers from one entry per object. Every listed item is counted as scanned for the operation.
+   */
+  private Stream<CatalogVersion> listObjects(String bucketName, String prefix, String afterObjectName,
+                                             boolean includeVersions, String operation) {
+    Counter scanned = documentMetrics.scannedCounter(operation);
+    ListObjectsArgs.Builder listObjectsArgsBuilder = ListObjectsArgs.builder()
         .bucket(bucketName)
-        .includeVersions(true)
-        .build());
+        .prefix(prefix)
+        .includeVersions(includeVersions);
 
-    StreamSupport.stream(results.spliterator(), false)
+    if (afterObjectName != null && !afterObjectName.isEmpty()) {
+      listObjectsArgsBuilder.keyMarker(afterObjectName);
+    }
+
+    Iterable<Result<Item>> results = minioClient.listObjects(listObjectsArgsBuilder.build());
+
+    return StreamSupport.stream(results.spliterator(), false)
         .map(itemResult -> {
           try {
             return itemResult.get();
@@ -240,48 +645,106 @@ public class DocumentService {
             throw new RuntimeException("Error processing item", e);
           }
         })
-        .filter(item -> item.objectName().equals(fileName))
-        .forEach(item -> {
-          try {
-            minioClient.removeObject(
-                RemoveObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(fileName)
-                    .versionId(item.versionId())
-                    .build()
-            );
-          } catch (Exception e) {
-            throw new RuntimeException("Error during moving file", e);
-          }
-        });
+        .peek(item -> scanned.increment())
+        .filter(item -> !item.isDir() && !item.isDeleteMarker())
+        .map(item -> CatalogMapper.toEntity(bucketName, item, 0));
+  }
+
+  private String encodeContinuationToken(String objectName) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(objectName.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String decodeContinuationToken(String continuationToken) {
+    if (continuationToken == null || continuationToken.isEmpty()) {
+      return null;
+    }
+    try {
+      return new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid continuation token: " + continuationToken, e);
+    }
+  }
+
+  private int decodeVersionNumber(String continuationToken) {
+    try {
+      return Integer.parseInt(decodeContinuationToken(continuationToken));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid continuation token: " + continuationToken, e);
+    }
+  }
+
+  private void copyVersions(String fileName, String fromBucket, String toBucket, List<CatalogVersion> versions,
+                            boolean resume) throws Exception {
+    if (resume) {
+      versions = copyService.findUncopied(toBucket, fileName, versions, findVersions(toBucket, fileName));
+    }
+    AtomicReference<Long> previousLatestSize = new AtomicReference<>(findLatestSize(toBucket, fileName));
+    try {
+      copyService.copyVersions(fromBucket, toBucket, fileName, versions, (source, response) ->
+          previousLatestSize.set(recordVersion(toBucket, fileName, response.versionId(), previousLatestSize.get())
+              .size()));
+    } catch (Exception e) {
+      throw new RuntimeException("Error during copying file", e);
+    }
   }
 
-  public void deleteAllFiles(String bucketName) {
-    Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+  /**
+   * Writes a new version to the catalog, the document cache and the bucket statistics, and queues its renditions.
+   */
+  private StatObjectResponse recordVersion(String bucketName, String objectName, String versionId, Long previousLatestSize)
+      throws Exception {
+    // the write response has no size or last modified date, the stat is one cheap HEAD request
+    StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
         .bucket(bucketName)
-        .includeVersions(true)
+        .object(objectName)
+        .versionId(versionId)
         .build());
+    updateCatalog(bucketName, () -> catalogService.saveVersion(stat));
+    documentCacheService.invalidateObject(bucketName, objectName);
+    bucketStatisticsService.recordVersionAdded(bucketName, objectName, versionId, stat.size(), previousLatestSize);
+    renditionService.renderLater(bucketName, stat);
+    return stat;
+  }
 
-    StreamSupport.stream(results.spliterator(), false)
-        .map(itemResult -> {
-          try {
-            return itemResult.get();
-          } catch (Exception e) {
-            throw new RuntimeException("Error processing item", e);
-          }
-        })
-        .forEach(item -> {
-          try {
-            minioClient.removeObject(
-                RemoveObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(item.objectName())
-                    .versionId(item.versionId())
-                    .build()
-            );
-          } catch (Exception e) {
-            throw new RuntimeException("Error during moving file", e);
-          }
-        });
+  /**
+   * Size of the latest version of the object, or null if the object does not exist.
+   */
+  private Long findLatestSize(String bucketName, String objectName) throws Exception {
+    StatObjectResponse latest = findLatest(bucketName, objectName);
+    return latest == null ? null : latest.size();
+  }
+
+  /**
+   * Stat of the latest version of the object, or null if the object does not exist.
+   */
+  private StatObjectResponse findLatest(String bucketName, String objectName) throws Exception {
+    try {
+      return minioClient.statObject(StatObjectArgs.builder()
+          .bucket(bucketName)
+          .object(objectName)
+          .build());
+    } catch (ErrorResponseException e) {
+      if ("NoSuchKey".equals(e.errorResponse().code())) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Minio is already changed when the catalog is written, so a failing catalog write must not fail the request. The
+   * bucket is marked stale instead and its reads fall back to minio until the next reconcile.
+   */
+  private void updateCatalog(String bucketName, Runnable update) {
+    try {
+      update.run();
+    } catch (RuntimeException e) {
+      log.warn("Catalog update failed, marking bucket stale: {}", bucketName, e);
+      try {
+        catalogService.markStale(bucketName);
+      } catch (RuntimeException markException) {
+        log.warn("Catalog bucket could not be marked stale: {}", bucketName, markException);
+      }
+    }
   }
 }
@@ -0,0 +1,214 @@
+package com.document.document_service.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.OldDocumentVersion;
+import com.document.document_service.mapper.DocumentMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Streams the documents of a bucket as a ZIP while they are read from minio, without temp files. The next
+ * {@code prefetch} files are fetched ahead in parallel: small files completely, bigger ones only their first
+ * {@code prefetch-buffer} bytes, the rest is streamed when the file is written. So an export holds at most
+ * prefetch x prefetch-buffer bytes however big it is. The ZIP switches to ZIP64 by itself past 4 GiB or 65535 entries.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+  private static final long MAX_PREFETCH_BUFFER = DataSize.ofMegabytes(64).toBytes();
+
+  private final DocumentService documentService;
+  private final TaskExecutors taskExecutors;
+
+  @Value("${export.prefetch:4}")
+  private int prefetch;
+
+  @Value("${export.prefetch-buffer:1MB}")
+  private DataSize prefetchBuffer;
+
+  @Value("${export.stored-extensions:zip,gz,tgz,bz2,xz,zst,7z,rar,"
+      + "jpg,jpeg,png,gif,webp,mp3,mp4,mov,mkv,docx,xlsx,pptx}")
+  private Set<String> storedExtensions;
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  void init() {
+    if (prefetch < 1) {
+      throw new IllegalStateException("export.prefetch must be at least 1.");
+    }
+    if (prefetchBuffer.toBytes() > MAX_PREFETCH_BUFFER) {
+      throw new IllegalStateException("export.prefetch-buffer must not be greater than 64MB.");
+    }
+    executor = taskExecutors.newUnboundedPool("export");
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Writes the documents under the prefix, or only the named ones when file names are given, in file name order. With
+   * {@code allVersions} the older versions are added with their version label before the extension (report.v1.pdf).
+   * With {@code storeCompressed} files that are compressed already (see {@code export.stored-extensions}) are not
+   * deflated again.
+   */
+  public void export(String bucketName, String prefix, Collection<String> fileNames, boolean allVersions,
+                     boolean storeCompressed, OutputStream outputStream) throws IOException {
+    Set<String> selectedFileNames = fileNames == null ? Set.of() : Set.copyOf(fileNames);
+    ZipOutputStream zip = new ZipOutputStream(outputStream, StandardCharsets.UTF_8);
+    Deque<CompletableFuture<PrefetchedEntry>> window = new ArrayDeque<>();
+
+    try {
+      documentService.streamDocuments(bucketName, prefix, document -> {
+        if (!selectedFileNames.isEmpty() && !selectedFileNames.contains(document.fileName())) {
+          return;
+        }
+        for (ExportEntry entry : entries(document, allVersions)) {
+          if (window.size() == prefetch) {
+            write(bucketName, zip, window.poll(), storeCompressed);
+          }
+          window.add(prefetch(bucketName, entry));
+        }
+      });
+      while (!window.isEmpty()) {
+        write(bucketName, zip, window.poll(), storeCompressed);
+      }
+      // the servlet response is closed by the container
+      zip.finish();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      window.forEach(future -> future.cancel(true));
+    }
+  }
+
+  private List<ExportEntry> entries(DocumentResponse document, boolean allVersions) {
+    String fileName = document.fileName();
+    List<ExportEntry> entries = new ArrayList<>();
+    if (allVersions) {
+      // older versions are listed newest first
+      for (OldDocumentVersion version : document.oldDocumentVersions().reversed()) {
+        entries.add(new ExportEntry(labeledName(fileName, version.version()), fileName, version.versionId(),
+            version.size(), version.createdDate()));
+      }
+    }
+    entries.add(new ExportEntry(fileName, fileName, document.versionId(), document.size(), document.createdDate()));
+    return entries;
+  }
+
+  private CompletableFuture<PrefetchedEntry> prefetch(String bucketName, ExportEntry entry) {
+    long headLength = Math.min(entry.size(), prefetchBuffer.toBytes());
+    if (headLength == 0) {
+      return CompletableFuture.completedFuture(new PrefetchedEntry(entry, new byte[0]));
+    }
+
+    return CompletableFuture.supplyAsync(() -> {
+      try (InputStream data = documentService.downloadFile(bucketName, entry.fileName(), entry.versionId(), 0L,
+          headLength)) {
+        return new PrefetchedEntry(entry, data.readNBytes((int) headLength));
+      } catch (Exception e) {
+        throw new CompletionException("Error during prefetching file: " + entry.fileName(), e);
+      }
+    }, executor);
+  }
+
+  private void write(String bucketName, ZipOutputStream zip, CompletableFuture<PrefetchedEntry> future,
+                     boolean storeCompressed) {
+    try {
+      PrefetchedEntry prefetched = future.join();
+      ExportEntry entry = prefetched.entry();
+
+      ZipEntry zipEntry = new ZipEntry(entry.name());
+      if (entry.lastModified() != null) {
+        zipEntry.setLastModifiedTime(FileTime.from(entry.lastModified().toInstant(ZoneOffset.UTC)));
+      }
+      // stored entries would need their crc up front, an uncompressed deflate stream streams just as well
+      boolean alreadyCompressed = storeCompressed && storedExtensions.contains(
+          DocumentMapper.getFileExtension(entry.name()).toLowerCase(Locale.ROOT));
+      zip.setLevel(alreadyCompressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+      try {
+        zip.putNextEntry(zipEntry);
+      } catch (ZipException e) {
+        log.warn("Skipping file in export of bucket: {}, {}", bucketName, e.getMessage());
+        return;
+      }
+
+      zip.write(prefetched.head());
+      long written = prefetched.head().length;
+      if (entry.size() > written) {
+        documentService.transferFile(bucketName, entry.fileName(), entry.versionId(), entry.size(), written,
+            entry.size() - written, true, zip);
+      }
+      zip.closeEntry();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (Exception e) {
+      throw new UncheckedIOException(new IOException("Error during exporting bucket: " + bucketName, e));
+    }
+  }
+
+  /**
+   * report.pdf with v1 becomes report.v1.pdf; the extension is only looked for in the last path segment.
+   */
+  private static String labeledName(String fileName, String label) {
+    int dot = fileName.lastIndexOf('.');
+    if (dot <= fileName.lastIndexOf('/') + 1) {
+      return fileName + "." + label;
+    }
+    return fileName.substring(0, dot) + "." + label + fileName.substring(dot);
+  }
+
+  private record ExportEntry(
+      String name,
+      String fileName,
+      String versionId,
+      long size,
+      LocalDateTime lastModified
+  ) {
+    private ExportEntry {
+      // versions written without versioning have the id "null"
+      versionId = "null".equals(versionId) ? null : versionId;
+    }
+  }
+
+  private record PrefetchedEntry(
+      ExportEntry entry,
+      byte[] head
+  ) {
+  }
+}
@@ -0,0 +1,508 @@
+package com.document.document_service.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.dto.response.DeleteResponse;
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.service.BulkDeleteService.ObjectVersion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Renditions of images and PDFs: JPEGs that fit into the squares of {@code rendition.sizes} ({@code name=pixels}),
+ * of a PDF its first page. They are rendered for every new version on a pool of {@code rendition.workers} threads, and
+ * on first request for older versions, and stored in {@code rendition.bucket} under
+ * {@code <bucket>/<versionId>/<name>.jpg}. A version never changes, so neither do its renditions. Images are decoded
+ * with subsampling, so a large photo never has to be held at full resolution.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RenditionService {
+  private static final String PDF = "application/pdf";
+  private static final String JPEG = "image/jpeg";
+
+  private final MinioClient minioClient;
+  private final BulkDeleteService bulkDeleteService;
+  private final TaskExecutors taskExecutors;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${rendition.enabled:true}")
+  private boolean enabled;
+
+  @Value("${rendition.bucket:document-renditions}")
+  private String renditionBucket;
+
+  @Value("${rendition.sizes:thumbnail=256,preview=1024}")
+  private List<String> sizeEntries;
+
+  @Value("${rendition.workers:2}")
+  private int workers;
+
+  // sources waiting or being rendered; new versions past it are rendered on first request instead
+  @Value("${rendition.max-queued:256}")
+  private int maxQueued;
+
+  @Value("${rendition.max-source-size:64MB}")
+  private DataSize maxSourceSize;
+
+  @Value("${rendition.max-pixels:50000000}")
+  private long maxPixels;
+
+  @Value("${rendition.quality:0.8}")
+  private float quality;
+
+  @Value("${rendition.wait-timeout:PT10S}")
+  private Duration waitTimeout;
+
+  private final Map<String, Integer> sizes = new LinkedHashMap<>();
+  private final Map<String, CompletableFuture<Map<String, byte[]>>> pending = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+  private int largestSize;
+  private volatile boolean bucketReady;
+
+  @PostConstruct
+  void init() {
+    for (String sizeEntry : sizeEntries) {
+      String[] parts = sizeEntry.split("=");
+      if (parts.length != 2 || !parts[1].trim().matches("[1-9][0-9]{0,3}")) {
+        throw new IllegalStateException("rendition.sizes entries must look like name=pixels: " + sizeEntry);
+      }
+      sizes.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+    }
+    if (sizes.isEmpty()) {
+      throw new IllegalStateException("rendition.sizes must not be empty.");
+    }
+    if (workers < 1 || maxQueued < 1) {
+      throw new IllegalStateException("rendition.workers and rendition.max-queued must be at least 1.");
+    }
+    if (!(quality > 0 && quality <= 1)) {
+      throw new IllegalStateException("rendition.quality must be between 0 and 1.");
+    }
+    largestSize = Collections.max(sizes.values());
+    executor = taskExecutors.newFixedPool("rendition", workers);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public boolean isRenditionBucket(String bucketName) {
+    return renditionBucket.equals(bucketName);
+  }
+
+  public boolean isSupported(String contentType) {
+    if (!enabled || contentType == null) {
+      return false;
+    }
+    String type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+    return PDF.equals(type) || (type.startsWith("image/") && ImageIO.getImageReadersByMIMEType(type).hasNext());
+  }
+
+  /**
+   * Queues the renditions of a new version. Never fails: when the queue is full the version is rendered on its first
+   * request.
+   */
+  public void renderLater(String bucketName, StatObjectResponse stat) {
+    if (!isRenderable(stat)) {
+      return;
+    }
+    try {
+      submit(bucketName, stat.object(), stat.versionId(), stat.contentType());
+    } catch (RejectedExecutionException e) {
+      counter("skipped").increment();
+      log.debug("Rendition queue is full, skipping: {}/{}", bucketName, stat.object());
+    }
+  }
+
+  /**
+   * The rendition of the version, or of the latest version without {@code versionId}; rendered and stored now when it
+   * does not exist yet. Empty when the file has no renditions (content type, size, unversioned).
+   */
+  public Optional<Rendition> getRendition(String bucketName, String fileName, String versionId, String name)
+      throws Exception {
+    if (!sizes.containsKey(name)) {
+      throw new IllegalArgumentException("Unknown rendition: " + name + ", known are " + sizes.keySet());
+    }
+    if (!enabled) {
+      return Optional.empty();
+    }
+
+    boolean versioned = versionId != null && !versionId.isEmpty();
+    if (versioned) {
+      byte[] stored = readStored(bucketName, versionId, name);
+      if (stored != null) {
+        counter("hit").increment();
+        return Optional.of(new Rendition(versionId, stored));
+      }
+    }
+
+    StatObjectArgs.Builder statObjectArgsBuilder = StatObjectArgs.builder()
+        .bucket(bucketName)
+        .object(fileName);
+    if (versioned) {
+      statObjectArgsBuilder.versionId(versionId);
+    }
+    StatObjectResponse stat = minioClient.statObject(statObjectArgsBuilder.build());
+    if (!isRenderable(stat)) {
+      return Optional.empty();
+    }
+    if (!versioned) {
+      byte[] stored = readStored(bucketName, stat.versionId(), name);
+      if (stored != null) {
+        counter("hit").increment();
+        return Optional.of(new Rendition(stat.versionId(), stored));
+      }
+    }
+
+    counter("miss").increment();
+    try {
+      Map<String, byte[]> renditions = submit(bucketName, fileName, stat.versionId(), stat.contentType())
+          .get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+      return Optional.of(new Rendition(stat.versionId(), renditions.get(name)));
+    } catch (RejectedExecutionException | TimeoutException e) {
+      // the rendering goes on, so a retry finds the stored rendition
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Rendition is not ready yet: " + fileName, e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception cause ? cause : e;
+    }
+  }
+
+  /**
+   * Removes the renditions of deleted versions.
+   */
+  public void deleteRenditions(String bucketName, List<CatalogVersion> versions) {
+    List<CatalogVersion> renderable = versions.stream()
+        .filter(version -> isSupported(version.getContentType()))
+        .toList();
+    if (renderable.isEmpty()) {
+      return;
+    }
+
+    try {
+      ensureBucket();
+    } catch (Exception e) {
+      log.warn("Renditions could not be deleted: {}", bucketName, e);
+      return;
+    }
+    Iterator<ObjectVersion> objects = renderable.stream()
+        .flatMap(version -> sizes.keySet().stream()
+            .map(name -> new ObjectVersion(key(bucketName, version.getVersionId(), name), null)))
+        .iterator();
+    DeleteResponse response = bulkDeleteService.delete(renditionBucket, objects);
+    if (response.failedCount() > 0) {
+      log.warn("{} renditions could not be deleted: {}", response.failedCount(), bucketName);
+    }
+  }
+
+  /**
+   * Removes the renditions of every version of the bucket, they are all stored under the {@code <bucket>/} prefix.
+   * Renditions of versions that survived a partly failed delete are rendered again on their first request.
+   */
+  public void deleteAllRenditions(String bucketName) {
+    try {
+      ensureBucket();
+    } catch (Exception e) {
+      log.warn("Renditions could not be deleted: {}", bucketName, e);
+      return;
+    }
+    DeleteResponse response = bulkDeleteService.deleteAll(renditionBucket, bucketName + "/");
+    if (response.failedCount() > 0) {
+      log.warn("{} renditions could not be deleted: {}", response.failedCount(), bucketName);
+    }
+  }
+
+  private boolean isRenderable(StatObjectResponse stat) {
+    // without versioning the content can change under the same version id
+    return stat.versionId() != null && !"null".equals(stat.versionId()) && isSupported(stat.contentType())
+        && Codec.originalSize(stat) <= maxSourceSize.toBytes();
+  }
+
+  /**
+   * Renders each source once, however many requests and uploads ask for it at the same time.
+   */
+  private CompletableFuture<Map<String, byte[]>> submit(String bucketName, String fileName, String versionId,
+                                                        String contentType) {
+    String sourceKey = bucketName + "/" + versionId;
+    CompletableFuture<Map<String, byte[]>> future = pending.get(sourceKey);
+    if (future != null) {
+      return future;
+    }
+    if (pending.size() >= maxQueued) {
+      throw new RejectedExecutionException("Rendition queue is full");
+    }
+
+    CompletableFuture<Map<String, byte[]>> created = new CompletableFuture<>();
+    future = pending.putIfAbsent(sourceKey, created);
+    if (future != null) {
+      return future;
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          created.complete(render(bucketName, fileName, versionId, contentType));
+        } catch (Exception e) {
+          log.warn("Rendering failed: {}/{}, version: {}", bucketName, fileName, versionId, e);
+          created.completeExceptionally(e);
+        } finally {
+          pending.remove(sourceKey, created);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pending.remove(sourceKey, created);
+      created.completeExceptionally(e);
+      throw e;
+    }
+    return created;
+  }
+
+  private Map<String, byte[]> render(String bucketName, String fileName, String versionId, String contentType)
+      throws Exception {
+    boolean pdf = contentType.toLowerCase(Locale.ROOT).startsWith(PDF);
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "error";
+    try {
+      BufferedImage source;
+      try (InputStream content = readSource(bucketName, fileName, versionId)) {
+        source = pdf ? renderFirstPage(content) : readImage(content);
+      }
+
+      Map<String, byte[]> renditions = new LinkedHashMap<>();
+      for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+        byte[] data = encodeJpeg(scale(source, size.getValue()));
+        store(bucketName, versionId, size.getKey(), data);
+        renditions.put(size.getKey(), data);
+      }
+      outcome = "success";
+      return renditions;
+    } finally {
+      sample.stop(Timer.builder("document.rendition.render")
+          .description("Rendering of the renditions of one version")
+          .tag("source", pdf ? "pdf" : "image")
+          .tag("outcome", outcome)
+          .register(meterRegistry));
+    }
+  }
+
+  private InputStream readSource(String bucketName, String fileName, String versionId) throws Exception {
+    GetObjectResponse stored = minioClient.getObject(GetObjectArgs.builder()
+        .bucket(bucketName)
+        .object(fileName)
+        .versionId(versionId)
+        .build());
+    Codec codec = Codec.of(stored.headers().get("x-amz-meta-" + Codec.CODEC_METADATA));
+    return codec == null ? stored : codec.decompress(stored);
+  }
+
+  /**
+   * Decodes every n-th pixel only, as long as the image stays at least twice as big as the largest rendition.
+   */
+  private BufferedImage readImage(InputStream content) throws IOException {
+    try (ImageInputStream input = new MemoryCacheImageInputStream(content)) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        throw new IOException("No image reader for the content");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if ((long) width * height > maxPixels) {
+          throw new IOException("Image is too large to render: " + width + "x" + height);
+        }
+
+        int subsampling = Math.max(1, Math.max(width, height) / (largestSize * 2));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * The first page at the size of the largest rendition; the PDF is spooled to a temp file since it is read out of
+   * order.
+   */
+  private BufferedImage renderFirstPage(InputStream content) throws IOException {
+    Path file = Files.createTempFile("rendition-", ".pdf");
+    try {
+      Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+      try (PDDocument document = Loader.loadPDF(file.toFile())) {
+        if (document.getNumberOfPages() == 0) {
+          throw new IOException("The PDF has no pages");
+        }
+        PDRectangle page = document.getPage(0).getCropBox();
+        float scale = largestSize / Math.max(page.getWidth(), page.getHeight());
+        return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static BufferedImage scale(BufferedImage source, int size) {
+    double factor = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+    int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+    int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+    BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      // jpeg has no alpha channel, transparent areas become white
+      graphics.setColor(Color.WHITE);
+      graphics.fillRect(0, 0, width, height);
+      graphics.drawImage(source, 0, 0, width, height, null);
+    } finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+
+  private byte[] encodeJpeg(BufferedImage image) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+      writer.setOutput(imageOutput);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return output.toByteArray();
+  }
+
+  private void store(String bucketName, String versionId, String name, byte[] data) throws Exception {
+    ensureBucket();
+    minioClient.putObject(PutObjectArgs.builder()
+        .bucket(renditionBucket)
+        .object(key(bucketName, versionId, name))
+        .contentType(JPEG)
+        .stream(new ByteArrayInputStream(data), data.length, -1)
+        .build());
+  }
+
+  /**
+   * The stored rendition, or null if it has not been rendered yet.
+   */
+  private byte[] readStored(String bucketName, String versionId, String name) throws Exception {
+    try (GetObjectResponse stored = minioClient.getObject(GetObjectArgs.builder()
+        .bucket(renditionBucket)
+        .object(key(bucketName, versionId, name))
+        .build())) {
+      return stored.readAllBytes();
+    } catch (ErrorResponseException e) {
+      String code = e.errorResponse().code();
+      if ("NoSuchKey".equals(code) || "NoSuchBucket".equals(code)) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  private void ensureBucket() throws Exception {
+    if (bucketReady) {
+      return;
+    }
+    if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(renditionBucket).build())) {
+      try {
+        minioClient.makeBucket(MakeBucketArgs.builder().bucket(renditionBucket).build());
+      } catch (ErrorResponseException e) {
+        // created by another instance in the meantime
+        if (!"BucketAlreadyOwnedByYou".equals(e.errorResponse().code())) {
+          throw e;
+        }
+      }
+    }
+    bucketReady = true;
+  }
+
+  private static String key(String bucketName, String versionId, String name) {
+    return bucketName + "/" + versionId + "/" + name + ".jpg";
+  }
+
+  private Counter counter(String result) {
+    return Counter.builder("document.rendition.requests")
+        .description("Rendition lookups and renderings skipped for a full queue, by result")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  public record Rendition(
+      String versionId,
+      byte[] data
+  ) {
+  }
+}
@@ -0,0 +1,370 @@
+package com.document.document_service.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.document.document_service.dto.response.DeleteResponse;
+import com.document.document_service.dto.response.ExpiredVersion;
+import com.document.document_service.dto.response.RetentionReportResponse;
+import com.document.document_service.entity.CatalogVersion;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import io.minio.DeleteBucketLifecycleArgs;
+import io.minio.GetBucketLifecycleArgs;
+import io.minio.MinioClient;
+import io.minio.SetBucketLifecycleArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Bucket;
+import io.minio.messages.LifecycleConfiguration;
+import io.minio.messages.LifecycleRule;
+import io.minio.messages.NoncurrentVersionExpiration;
+import io.minio.messages.RuleFilter;
+import io.minio.messages.Status;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Version retention of the buckets of {@code retention.rules}: a version is removed once it is neither one of the last
+ * {@code keep-last} versions of its object nor was replaced less than {@code keep-days} days ago; the latest version is
+ * always kept. The compactor pages through the catalog of the bucket at a rate limit and deletes the expired versions
+ * in batches. With {@code retention.lifecycle-pushdown} rules with only {@code keep-days}, which mean the same as a
+ * minio lifecycle rule for noncurrent days, are pushed down to the bucket lifecycle and minio enforces them instead;
+ * the catalog then learns of the expired versions from the bucket notifications, so the pushdown requires them. The
+ * client has no newer noncurrent versions limit, so rules with {@code keep-last} stay with the compactor.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetentionService {
+  private static final String LIFECYCLE_RULE_ID = "document-service-retention";
+  private static final String ALL_BUCKETS = "*";
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int MAX_REPORTED_VERSIONS = 1000;
+
+  private final MinioClient minioClient;
+  private final CatalogService catalogService;
+  private final DocumentService documentService;
+
+  // bucket=keep-last/keep-days, - for no limit
+  @Value("${retention.rules:}")
+  private Set<String> ruleEntries;
+
+  @Value("${retention.lifecycle-pushdown:false}")
+  private boolean lifecyclePushdown;
+
+  @Value("${bucket-statistics.notifications.enabled:true}")
+  private boolean notificationsEnabled;
+
+  @Value("${retention.compactor.page-size:500}")
+  private int pageSize;
+
+  @Value("${retention.compactor.max-objects-per-second:1000}")
+  private double maxObjectsPerSecond;
+
+  @Value("${retention.compactor.max-deletes-per-second:200}")
+  private double maxDeletesPerSecond;
+
+  private final Map<String, RetentionRule> rules = new HashMap<>();
+
+  @PostConstruct
+  void init() {
+    for (String ruleEntry : ruleEntries) {
+      String[] parts = ruleEntry.split("=");
+      if (parts.length != 2) {
+        throw new IllegalStateException("retention.rules entries must look like bucket=keep-last/keep-days: "
+            + ruleEntry);
+      }
+      rules.put(parts[0].trim(), RetentionRule.parse(parts[1].trim()));
+    }
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+      throw new IllegalStateException("retention.compactor.page-size must be between 1 and " + MAX_PAGE_SIZE + ".");
+    }
+    if (maxObjectsPerSecond <= 0 || maxDeletesPerSecond <= 0) {
+      throw new IllegalStateException("retention.compactor rates must be positive.");
+    }
+    if (lifecyclePushdown && !notificationsEnabled) {
+      throw new IllegalStateException("retention.lifecycle-pushdown requires bucket-statistics.notifications.enabled, "
+          + "the catalog follows the lifecycle expirations through them.");
+    }
+  }
+
+  /**
+   * Syncs the lifecycle rule of every bucket and compacts the buckets whose rule minio cannot enforce. The rate limits
+   * apply to the run as a whole. Buckets whose catalog is not reconciled yet wait for the next run.
+   */
+  @Scheduled(initialDelayString = "${retention.compactor.initial-delay:PT10M}",
+      fixedDelayString = "${retention.compactor.interval:PT24H}")
+  public void compactAll() {
+    List<Bucket> buckets;
+    try {
+      buckets = minioClient.listBuckets();
+    } catch (Exception e) {
+      log.warn("Retention compaction skipped, minio client error", e);
+      return;
+    }
+
+    RateLimiter objectLimiter = RateLimiter.create(maxObjectsPerSecond);
+    RateLimiter deleteLimiter = RateLimiter.create(maxDeletesPerSecond);
+    for (Bucket bucket : buckets) {
+      String bucketName = bucket.name();
+      try {
+        RetentionRule rule = ruleFor(bucketName);
+        if (syncLifecycle(bucketName, rule) || rule == null) {
+          continue;
+        }
+        if (!catalogService.isReady(bucketName)) {
+          log.info("Retention compaction skipped, catalog not reconciled yet for bucket: {}", bucketName);
+          continue;
+        }
+        RetentionReportResponse report = run(bucketName, rule, false, objectLimiter, deleteLimiter);
+        log.info("Retention compacted bucket: {}, deleted versions: {}, failed: {}", bucketName,
+            report.deletedCount(), report.failedCount());
+      } catch (Exception e) {
+        log.warn("Retention compaction failed for bucket: {}", bucketName, e);
+      }
+    }
+  }
+
+  /**
+   * Dry run: the versions the rule of the bucket would remove now, without removing them.
+   */
+  public RetentionReportResponse report(String bucketName) {
+    return run(bucketName, requireRule(bucketName), true, RateLimiter.create(maxObjectsPerSecond),
+        RateLimiter.create(maxDeletesPerSecond));
+  }
+
+  /**
+   * Compacts the bucket now instead of waiting for the next scheduled run.
+   */
+  public RetentionReportResponse compact(String bucketName) {
+    return run(bucketName, requireRule(bucketName), false, RateLimiter.create(maxObjectsPerSecond),
+        RateLimiter.create(maxDeletesPerSecond));
+  }
+
+  private RetentionReportResponse run(String bucketName, RetentionRule rule, boolean dryRun,
+                                      RateLimiter objectLimiter, RateLimiter deleteLimiter) {
+    if (!catalogService.isReady(bucketName)) {
+      throw new IllegalStateException("Catalog of bucket is not reconciled yet: " + bucketName);
+    }
+
+    LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+    long scannedObjectCount = 0;
+    long expiredVersionCount = 0;
+    long expiredSize = 0;
+    long deletedCount = 0;
+    long failedCount = 0;
+    List<ExpiredVersion> reported = new ArrayList<>();
+
+    String afterObjectName = null;
+    while (true) {
+      // versions of the next objects, each object sorted by last modified date (v1, v2, v3 ..)
+      List<CatalogVersion> versions = catalogService.getVersionPage(bucketName, null, afterObjectName, pageSize);
+      if (versions.isEmpty()) {
+        break;
+      }
+
+      List<CatalogVersion> expired = new ArrayList<>();
+      int objectCount = 0;
+      int start = 0;
+      for (int i = 1; i <= versions.size(); i++) {
+        if (i < versions.size() && versions.get(i).getObjectName().equals(versions.get(start).getObjectName())) {
+          continue;
+        }
+        List<CatalogVersion> objectVersions = versions.subList(start, i);
+        for (int index = 0; index < objectVersions.size(); index++) {
+          if (rule.isExpired(objectVersions, index, now)) {
+            CatalogVersion version = objectVersions.get(index);
+            expired.add(version);
+            if (reported.size() < MAX_REPORTED_VERSIONS) {
+              reported.add(toExpiredVersion(version, index + 1));
+            }
+          }
+        }
+        objectCount++;
+        start = i;
+      }
+      objectLimiter.acquire(objectCount);
+
+      scannedObjectCount += objectCount;
+      expiredVersionCount += expired.size();
+      expiredSize += expired.stream().mapToLong(version -> version.getSize() == null ? 0 : version.getSize()).sum();
+      if (!dryRun && !expired.isEmpty()) {
+        deleteLimiter.acquire(expired.size());
+        DeleteResponse response = documentService.deleteVersions(bucketName, expired);
+        deletedCount += response.deletedCount();
+        failedCount += response.failedCount();
+      }
+      afterObjectName = versions.getLast().getObjectName();
+    }
+
+    return RetentionReportResponse.builder()
+        .bucketName(bucketName)
+        .keepLast(rule.keepLast())
+        .keepDays(rule.keepDays())
+        .lifecycle(isPushedDown(rule))
+        .dryRun(dryRun)
+        .scannedObjectCount(scannedObjectCount)
+        .expiredVersionCount(expiredVersionCount)
+        .expiredSize(expiredSize)
+        .deletedCount(dryRun ? null : deletedCount)
+        .failedCount(dryRun ? null : failedCount)
+        .expiredVersions(reported)
+        .build();
+  }
+
+  /**
+   * Puts the lifecycle rule of the service into the bucket lifecycle, or takes it out when the bucket has no rule that
+   * can be pushed down any more; rules of others are kept. Returns true if minio enforces the rule of the bucket.
+   */
+  private boolean syncLifecycle(String bucketName, RetentionRule rule) throws Exception {
+    LifecycleConfiguration current = getLifecycle(bucketName);
+    List<LifecycleRule> lifecycleRules = new ArrayList<>();
+    boolean hadOwnRule = false;
+    if (current != null) {
+      for (LifecycleRule lifecycleRule : current.rules()) {
+        if (LIFECYCLE_RULE_ID.equals(lifecycleRule.id())) {
+          hadOwnRule = true;
+        } else {
+          lifecycleRules.add(lifecycleRule);
+        }
+      }
+    }
+
+    boolean pushDown = rule != null && isPushedDown(rule);
+    if (pushDown) {
+      lifecycleRules.add(rule.toLifecycleRule());
+    } else if (!hadOwnRule) {
+      return false;
+    }
+
+    if (lifecycleRules.isEmpty()) {
+      minioClient.deleteBucketLifecycle(DeleteBucketLifecycleArgs.builder().bucket(bucketName).build());
+    } else {
+      minioClient.setBucketLifecycle(SetBucketLifecycleArgs.builder()
+          .bucket(bucketName)
+          .config(new LifecycleConfiguration(lifecycleRules))
+          .build());
+    }
+    return pushDown;
+  }
+
+  private LifecycleConfiguration getLifecycle(String bucketName) throws Exception {
+    try {
+      return minioClient.getBucketLifecycle(GetBucketLifecycleArgs.builder().bucket(bucketName).build());
+    } catch (ErrorResponseException e) {
+      if ("NoSuchLifecycleConfiguration".equals(e.errorResponse().code())) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  private boolean isPushedDown(RetentionRule rule) {
+    return lifecyclePushdown && rule.isLifecycleRule();
+  }
+
+  private RetentionRule ruleFor(String bucketName) {
+    return rules.getOrDefault(bucketName, rules.get(ALL_BUCKETS));
+  }
+
+  private RetentionRule requireRule(String bucketName) {
+    RetentionRule rule = ruleFor(bucketName);
+    if (rule == null) {
+      throw new IllegalStateException("No retention rule for bucket: " + bucketName);
+    }
+    return rule;
+  }
+
+  private static ExpiredVersion toExpiredVersion(CatalogVersion version, int number) {
+    return ExpiredVersion.builder()
+        .fileName(version.getObjectName())
+        .versionId(version.getVersionId())
+        .version("v" + number)
+        .size(version.getSize())
+        .createdDate(version.getLastModified())
+        .build();
+  }
+
+  /**
+   * Null limits are not applied; at least one of them is set.
+   */
+  record RetentionRule(
+      Integer keepLast,
+      Integer keepDays
+  ) {
+    static RetentionRule parse(String value) {
+      String[] parts = value.split("/");
+      if (parts.length != 2) {
+        throw new IllegalStateException("retention rule must look like keep-last/keep-days: " + value);
+      }
+      RetentionRule rule = new RetentionRule(limit(parts[0]), limit(parts[1]));
+      if (rule.keepLast() == null && rule.keepDays() == null) {
+        throw new IllegalStateException("retention rule must limit the versions or the days: " + value);
+      }
+      return rule;
+    }
+
+    private static Integer limit(String value) {
+      String limit = value.trim();
+      if (limit.equals("-")) {
+        return null;
+      }
+      try {
+        int parsed = Integer.parseInt(limit);
+        if (parsed < 1) {
+          throw new IllegalStateException("retention rule limits must be at least 1: " + value);
+        }
+        return parsed;
+      } catch (NumberFormatException e) {
+        throw new IllegalStateException("retention rule limits must be numbers or -: " + value, e);
+      }
+    }
+
+    /**
+     * Whether the version at the index of the versions of its object (v1 first) is expired. The age counts from when
+     * the next version replaced it, as minio lifecycle counts noncurrent days.
+     */
+    boolean isExpired(List<CatalogVersion> versions, int index, LocalDateTime now) {
+      int newerCount = versions.size() - 1 - index;
+      if (newerCount == 0) {
+        return false;
+      }
+      boolean keptByCount = keepLast != null && newerCount < keepLast;
+      boolean keptByAge = keepDays != null && versions.get(index + 1).getLastModified()
+          .isAfter(now.minusDays(keepDays));
+      return !keptByCount && !keptByAge;
+    }
+
+    /**
+     * Whether a lifecycle rule for noncurrent days means the same: the rule has {@code keep-days} and keeps no more
+     * than the latest version by count, which is always kept anyway.
+     */
+    boolean isLifecycleRule() {
+      return keepDays != null && (keepLast == null || keepLast == 1);
+    }
+
+    /**
+     * Noncurrent versions expire {@code keep-days} after they were replaced.
+     */
+    LifecycleRule toLifecycleRule() {
+      if (!isLifecycleRule()) {
+        throw new IllegalStateException("retention rule cannot be a lifecycle rule: " + this);
+      }
+      return new LifecycleRule(Status.ENABLED, null, null, new RuleFilter(""), LIFECYCLE_RULE_ID,
+          new NoncurrentVersionExpiration(keepDays), null, null);
+    }
+  }
+}
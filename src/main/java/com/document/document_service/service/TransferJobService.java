@@ -0,0 +1,462 @@
+package com.document.document_service.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.document.document_service.config.TaskExecutors;
+import com.document.document_service.dto.request.TransferJobRequest;
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.OldDocumentVersion;
+import com.document.document_service.dto.response.TransferJobResponse;
+import com.document.document_service.entity.TransferJob;
+import com.document.document_service.entity.TransferMode;
+import com.document.document_service.entity.TransferStatus;
+import com.document.document_service.repository.TransferJobRepository;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Background copy/move of every object under a prefix to another bucket. Jobs run on a small job pool, their objects
+ * are transferred on a shared worker pool with a bounded number in flight per job and optional object and byte rate
+ * limits. Progress and the checkpoint (the last object of the finished, contiguous head of the listing) are persisted
+ * regularly, so jobs left running by a restart are resumed after their checkpoint. A job is run by the instance holding
+ * its lease; jobs whose lease expired, because their instance stopped, are claimed by one of the others. A resumed job
+ * only copies the versions the destination holds no copy of, since objects past the checkpoint may be done already.
+ * Only the owner writes the job; a cancel just sets a flag on the row, which the owner reads when it renews the lease.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransferJobService {
+  private static final int MAX_ERROR_LENGTH = 2048;
+  private static final List<TransferStatus> ACTIVE_STATUSES = List.of(TransferStatus.PENDING, TransferStatus.RUNNING);
+
+  private final MinioClient minioClient;
+  private final DocumentService documentService;
+  private final TransferJobRepository transferJobRepository;
+  private final TaskExecutors taskExecutors;
+
+  private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+  private final String instanceId = UUID.randomUUID().toString();
+
+  @Value("${transfer.max-concurrent-jobs:2}")
+  private int maxConcurrentJobs;
+
+  @Value("${transfer.worker-threads:8}")
+  private int workerThreads;
+
+  @Value("${transfer.object-parallelism:4}")
+  private int objectParallelism;
+
+  @Value("${transfer.checkpoint-interval:PT5S}")
+  private Duration checkpointInterval;
+
+  @Value("${transfer.lease.duration:PT2M}")
+  private Duration leaseDuration;
+
+  @Value("${transfer.lease.renew-interval:PT30S}")
+  private Duration leaseRenewInterval;
+
+  private ExecutorService jobExecutor;
+  private ExecutorService workerExecutor;
+
+  @PostConstruct
+  void init() {
+    if (leaseDuration.compareTo(leaseRenewInterval.multipliedBy(2)) < 0) {
+      throw new IllegalStateException("transfer.lease.duration must be at least twice the renew interval.");
+    }
+    jobExecutor = taskExecutors.newListingPool("transfer-job", maxConcurrentJobs);
+    workerExecutor = taskExecutors.newFixedPool("transfer-worker", workerThreads);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    runningJobs.values().forEach(running -> running.stopped = true);
+    jobExecutor.shutdown();
+    workerExecutor.shutdown();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void resumeJobs() {
+    for (TransferJob job : transferJobRepository.findByStatusIn(ACTIVE_STATUSES)) {
+      if (runningJobs.containsKey(job.getId()) || !claim(job)) {
+        continue;
+      }
+      transferJobRepository.findById(job.getId()).ifPresent(claimed -> {
+        log.info("Resuming transfer job: {} after checkpoint: {}", claimed.getId(), claimed.getCheckpoint());
+        submit(claimed);
+      });
+    }
+  }
+
+  /**
+   * Renews the leases of the jobs running here, picks up the cancels sent to other instances and claims the jobs of
+   * stopped instances. A job whose lease could not be renewed was taken over, its run stops without writing the job
+   * again.
+   */
+  @Scheduled(initialDelayString = "${transfer.lease.renew-interval:PT30S}",
+      fixedDelayString = "${transfer.lease.renew-interval:PT30S}")
+  public void maintainLeases() {
+    runningJobs.values().forEach(running -> {
+      if (transferJobRepository.renewLease(running.job.getId(), instanceId, now().plus(leaseDuration),
+          ACTIVE_STATUSES) == 0) {
+        log.warn("Transfer job: {} lost its lease, stopping", running.job.getId());
+        running.leaseLost = true;
+      } else if (Boolean.TRUE.equals(transferJobRepository.findCancelRequested(running.job.getId()))) {
+        running.cancel();
+      }
+    });
+    resumeJobs();
+  }
+
+  private boolean claim(TransferJob job) {
+    return transferJobRepository.claim(job.getId(), instanceId, now().plus(leaseDuration), now(),
+        ACTIVE_STATUSES) == 1;
+  }
+
+  public TransferJobResponse createJob(TransferJobRequest request) {
+    if (request.sourceBucket() == null || request.destinationBucket() == null) {
+      throw new IllegalArgumentException("Source and destination bucket are required.");
+    }
+    if (request.sourceBucket().equals(request.destinationBucket())) {
+      throw new IllegalArgumentException("Source and destination bucket must be different.");
+    }
+
+    TransferJob job = transferJobRepository.save(TransferJob.builder()
+        .id(UUID.randomUUID().toString())
+        .sourceBucket(request.sourceBucket())
+        .prefix(request.prefix())
+        .destinationBucket(request.destinationBucket())
+        .mode(request.mode() == null ? TransferMode.COPY : request.mode())
+        .status(TransferStatus.PENDING)
+        .maxObjectsPerSecond(request.maxObjectsPerSecond())
+        .maxBytesPerSecond(request.maxBytesPerSecond())
+        .owner(instanceId)
+        .leaseExpiresAt(now().plus(leaseDuration))
+        .createdAt(now())
+        .build());
+    submit(job);
+
+    return toResponse(job);
+  }
+
+  public TransferJobResponse getJob(String jobId) {
+    return toResponse(findJob(jobId));
+  }
+
+  public List<TransferJobResponse> getAllJobs() {
+    return transferJobRepository.findAllByOrderByCreatedAtDesc().stream()
+        .map(job -> toResponse(runningJobs.containsKey(job.getId()) ? runningJobs.get(job.getId()).job : job))
+        .toList();
+  }
+
+  /**
+   * Flags the job; the instance running it stops it at once if that is this one, otherwise on its next lease renewal.
+   * A job without a live owner is cancelled by the instance that claims it next.
+   */
+  public TransferJobResponse cancelJob(String jobId) {
+    transferJobRepository.requestCancel(jobId, ACTIVE_STATUSES);
+    RunningJob running = runningJobs.get(jobId);
+    if (running != null) {
+      running.cancel();
+    }
+    return toResponse(findJob(jobId));
+  }
+
+  private TransferJob findJob(String jobId) {
+    RunningJob running = runningJobs.get(jobId);
+    if (running != null) {
+      return running.job;
+    }
+    return transferJobRepository.findById(jobId)
+        .orElseThrow(() -> new IllegalStateException("Transfer job not found by id: " + jobId));
+  }
+
+  private void submit(TransferJob job) {
+    RunningJob running = new RunningJob(job);
+    runningJobs.put(job.getId(), running);
+    jobExecutor.execute(() -> run(running));
+  }
+
+  private void run(RunningJob running) {
+    TransferJob job = running.job;
+    if (running.cancelled || Boolean.TRUE.equals(job.getCancelRequested())) {
+      finish(running, TransferStatus.CANCELLED);
+      return;
+    }
+
+    try {
+      job.setStatus(TransferStatus.RUNNING);
+      job.setStartedAt(now());
+      if (job.getTotalObjects() == null) {
+        // a listing without versions is cheap compared to the transfer and gives the total for the eta
+        job.setTotalObjects(countObjects(job));
+      }
+      persist(running);
+
+      RateLimiter objectLimiter = job.getMaxObjectsPerSecond() == null
+          ? null
+          : RateLimiter.create(job.getMaxObjectsPerSecond());
+      RateLimiter byteLimiter = job.getMaxBytesPerSecond() == null
+          ? null
+          : RateLimiter.create(job.getMaxBytesPerSecond());
+      Semaphore inFlight = new Semaphore(objectParallelism);
+      Deque<PendingObject> pending = new ArrayDeque<>();
+
+      for (Result<Item> itemResult : listObjects(job, job.getCheckpoint())) {
+        if (running.cancelled || running.stopped || running.leaseLost) {
+          break;
+        }
+        String objectName = itemResult.get().objectName();
+
+        if (objectLimiter != null) {
+          objectLimiter.acquire();
+        }
+        inFlight.acquire();
+        CompletableFuture<Void> transfer = CompletableFuture.runAsync(() -> {
+          try {
+            transferObject(running, objectName, byteLimiter);
+          } finally {
+            inFlight.release();
+          }
+        }, workerExecutor);
+        pending.add(new PendingObject(objectName, transfer));
+
+        advanceCheckpoint(running, pending);
+        if (running.isCheckpointDue(checkpointInterval)) {
+          persist(running);
+        }
+      }
+
+      pending.forEach(pendingObject -> pendingObject.transfer().join());
+      advanceCheckpoint(running, pending);
+
+      if (running.stopped || running.leaseLost) {
+        // shutdown: keep the job running in the database, it is resumed by the next instance holding its lease
+        persist(running);
+        runningJobs.remove(job.getId());
+        return;
+      }
+      finish(running, running.cancelled ? TransferStatus.CANCELLED : TransferStatus.COMPLETED);
+    } catch (Exception e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      log.warn("Transfer job failed: {}", job.getId(), e);
+      job.setLastError(truncate(e.getMessage()));
+      finish(running, TransferStatus.FAILED);
+    }
+  }
+
+  private void transferObject(RunningJob running, String objectName, RateLimiter byteLimiter) {
+    TransferJob job = running.job;
+    try {
+      DocumentResponse source = documentService.getDocument(job.getSourceBucket(), objectName);
+      long bytes = source.size() + source.oldDocumentVersions().stream()
+          .mapToLong(OldDocumentVersion::size)
+          .sum();
+      if (byteLimiter != null && bytes > 0) {
+        byteLimiter.acquire((int) Math.min(bytes, Integer.MAX_VALUE));
+      }
+
+      if (job.getMode() == TransferMode.MOVE) {
+        documentService.moveFile(objectName, job.getSourceBucket(), job.getDestinationBucket(), running.resumed);
+      } else {
+        documentService.copyFile(objectName, job.getSourceBucket(), job.getDestinationBucket(), running.resumed);
+      }
+      running.objectsDone.incrementAndGet();
+      running.bytesDone.addAndGet(bytes);
+    } catch (Exception e) {
+      log.warn("Transfer job: {} failed for object: {}", job.getId(), objectName, e);
+      running.objectsFailed.incrementAndGet();
+      running.lastError = truncate(objectName + ": " + e.getMessage());
+    }
+  }
+
+  private void advanceCheckpoint(RunningJob running, Deque<PendingObject> pending) {
+    while (!pending.isEmpty() && pending.peek().transfer().isDone()) {
+      running.checkpoint = pending.poll().objectName();
+    }
+  }
+
+  private long countObjects(TransferJob job) throws Exception {
+    long count = 0;
+    for (Result<Item> itemResult : listObjects(job, null)) {
+      if (!itemResult.get().isDir()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private Iterable<Result<Item>> listObjects(TransferJob job, String startAfter) {
+    ListObjectsArgs.Builder listObjectsArgsBuilder = ListObjectsArgs.builder()
+        .bucket(job.getSourceBucket())
+        .prefix(job.getPrefix())
+        .recursive(true);
+
+    if (startAfter != null && !startAfter.isEmpty()) {
+      listObjectsArgsBuilder.startAfter(startAfter);
+    }
+
+    return minioClient.listObjects(listObjectsArgsBuilder.build());
+  }
+
+  private void finish(RunningJob running, TransferStatus status) {
+    running.job.setStatus(status);
+    running.job.setFinishedAt(now());
+    try {
+      persist(running);
+    } finally {
+      runningJobs.remove(running.job.getId());
+    }
+  }
+
+  private void persist(RunningJob running) {
+    if (running.leaseLost) {
+      return;
+    }
+    running.syncToJob();
+    running.job.setLeaseExpiresAt(now().plus(leaseDuration));
+    transferJobRepository.save(running.job);
+    running.lastPersisted = System.nanoTime();
+  }
+
+  private TransferJobResponse toResponse(TransferJob job) {
+    RunningJob running = runningJobs.get(job.getId());
+    if (running != null) {
+      running.syncToJob();
+    }
+
+    Double objectsPerSecond = null;
+    Double bytesPerSecond = null;
+    Long etaSeconds = null;
+    if (job.getStartedAt() != null) {
+      LocalDateTime end = job.getFinishedAt() == null ? now() : job.getFinishedAt();
+      double seconds = Math.max(Duration.between(job.getStartedAt(), end).toMillis() / 1000.0, 0.001);
+      long objectsInRun = job.getObjectsDone() + job.getObjectsFailed()
+          - (running == null ? 0 : running.objectsAtStart);
+      long bytesInRun = job.getBytesDone() - (running == null ? 0 : running.bytesAtStart);
+      objectsPerSecond = objectsInRun / seconds;
+      bytesPerSecond = bytesInRun / seconds;
+
+      if (job.getStatus() == TransferStatus.RUNNING && job.getTotalObjects() != null && objectsPerSecond > 0) {
+        long remaining = Math.max(job.getTotalObjects() - job.getObjectsDone() - job.getObjectsFailed(), 0);
+        etaSeconds = Math.round(remaining / objectsPerSecond);
+      }
+    }
+
+    return TransferJobResponse.builder()
+        .id(job.getId())
+        .sourceBucket(job.getSourceBucket())
+        .prefix(job.getPrefix())
+        .destinationBucket(job.getDestinationBucket())
+        .mode(job.getMode())
+        .status(job.getStatus())
+        .totalObjects(job.getTotalObjects())
+        .objectsDone(job.getObjectsDone())
+        .objectsFailed(job.getObjectsFailed())
+        .bytesDone(job.getBytesDone())
+        .objectsPerSecond(objectsPerSecond)
+        .bytesPerSecond(bytesPerSecond)
+        .etaSeconds(etaSeconds)
+        .checkpoint(job.getCheckpoint())
+        .lastError(job.getLastError())
+        .cancelRequested(Boolean.TRUE.equals(job.getCancelRequested()) ? true : null)
+        .createdDate(job.getCreatedAt())
+        .startedDate(job.getStartedAt())
+        .finishedDate(job.getFinishedAt())
+        .build();
+  }
+
+  private String truncate(String message) {
+    return message == null || message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.now(ZoneOffset.UTC);
+  }
+
+  private record PendingObject(
+      String objectName,
+      CompletableFuture<Void> transfer
+  ) {
+  }
+
+  /**
+   * Live counters of a job run; they are written into the entity when it is persisted or read.
+   */
+  private static final class RunningJob {
+    private final TransferJob job;
+    private final AtomicLong objectsDone;
+    private final AtomicLong objectsFailed;
+    private final AtomicLong bytesDone;
+    private final long objectsAtStart;
+    private final long bytesAtStart;
+    // started before, so objects past the checkpoint may be transferred already
+    private final boolean resumed;
+    private volatile String checkpoint;
+    private volatile String lastError;
+    private volatile boolean cancelled;
+    private volatile boolean stopped;
+    private volatile boolean leaseLost;
+    private volatile long lastPersisted = System.nanoTime();
+
+    private RunningJob(TransferJob job) {
+      this.job = job;
+      this.objectsDone = new AtomicLong(job.getObjectsDone());
+      this.objectsFailed = new AtomicLong(job.getObjectsFailed());
+      this.bytesDone = new AtomicLong(job.getBytesDone());
+      this.objectsAtStart = job.getObjectsDone() + job.getObjectsFailed();
+      this.bytesAtStart = job.getBytesDone();
+      this.resumed = job.getStartedAt() != null;
+      this.checkpoint = job.getCheckpoint();
+      this.lastError = job.getLastError();
+    }
+
+    private void cancel() {
+      cancelled = true;
+      job.setCancelRequested(true);
+    }
+
+    private boolean isCheckpointDue(Duration interval) {
+      return System.nanoTime() - lastPersisted >= interval.toNanos();
+    }
+
+    private synchronized void syncToJob() {
+      job.setObjectsDone(objectsDone.get());
+      job.setObjectsFailed(objectsFailed.get());
+      job.setBytesDone(bytesDone.get());
+      job.setCheckpoint(checkpoint);
+      job.setLastError(lastError);
+    }
+  }
+}
@@ -0,0 +1,384 @@
+package com.document.document_service.service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.document.document_service.client.MinioMultipartClient;
+import com.document.document_service.dto.request.UploadSessionRequest;
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.UploadSessionResponse;
+import com.document.document_service.dto.response.UploadedPart;
+import com.document.document_service.entity.UploadSession;
+import com.document.document_service.entity.UploadSessionStatus;
+import com.document.document_service.repository.UploadSessionRepository;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+
+import io.minio.BucketExistsArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Part;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Resumable uploads on minio multipart uploads: a session creates the multipart upload, the client sends numbered
+ * parts in any order and in parallel, asks which parts arrived after a broken connection, and completes the session,
+ * which completes the multipart upload and records the new version. Sessions are persisted, the parts only live in
+ * minio, so both survive a restart. Sessions without a request for {@code upload.session.expiry} are aborted by the
+ * reaper.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+  // limits of the s3 multipart upload
+  private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+  private static final long MAX_PART_SIZE = DataSize.ofGigabytes(5).toBytes();
+  private static final int MAX_PARTS = 10_000;
+  private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+  private final MinioClient minioClient;
+  private final MinioMultipartClient minioMultipartClient;
+  private final DocumentService documentService;
+  private final UploadSessionRepository uploadSessionRepository;
+  private final DeduplicationService deduplicationService;
+  private final CompressionService compressionService;
+
+  @Value("${upload.session.part-size:16MB}")
+  private DataSize partSize;
+
+  @Value("${upload.session.max-part-size:64MB}")
+  private DataSize maxPartSize;
+
+  @Value("${upload.session.expiry:PT24H}")
+  private Duration expiry;
+
+  @Value("${upload.session.spool-directory:${java.io.tmpdir}/document-service-upload-parts}")
+  private Path spoolDirectory;
+
+  @PostConstruct
+  void init() throws Exception {
+    if (partSize.toBytes() < MIN_PART_SIZE) {
+      throw new IllegalStateException("upload.session.part-size must be at least 5MB.");
+    }
+    if (maxPartSize.toBytes() < partSize.toBytes() || maxPartSize.toBytes() > MAX_PART_SIZE) {
+      throw new IllegalStateException("upload.session.max-part-size must be between the part size and 5GB.");
+    }
+    Files.createDirectories(spoolDirectory);
+  }
+
+  /**
+   * Starts a session. With the size of the file the part size is raised where 10000 parts would not be enough.
+   */
+  public UploadSessionResponse createSession(UploadSessionRequest request) throws Exception {
+    if (request.bucketName() == null || request.fileName() == null || request.fileName().isEmpty()) {
+      throw new IllegalArgumentException("Bucket name and file name are required.");
+    }
+    String bucketName = request.bucketName();
+    // the parts are stored as they are sent
+    if (deduplicationService.isEnabled(bucketName) || compressionService.isEnabled(bucketName)) {
+      throw new IllegalStateException("Resumable uploads are not allowed into buckets with deduplication or "
+          + "compression: " + bucketName);
+    }
+    if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+      throw new IllegalStateException("Bucket not found by name: " + bucketName);
+    }
+    long sessionPartSize = partSize(request.size());
+
+    String contentType = request.contentType() == null || request.contentType().isEmpty()
+        ? DEFAULT_CONTENT_TYPE
+        : request.contentType();
+    Multimap<String, String> headers = HashMultimap.create();
+    headers.put("Content-Type", contentType);
+    String uploadId = minioMultipartClient.createMultipartUpload(bucketName, request.fileName(), headers);
+
+    UploadSession session;
+    try {
+      session = uploadSessionRepository.save(UploadSession.builder()
+          .id(UUID.randomUUID().toString())
+          .bucketName(bucketName)
+          .objectName(request.fileName())
+          .uploadId(uploadId)
+          .contentType(contentType)
+          .totalSize(request.size())
+          .partSize(sessionPartSize)
+          .status(UploadSessionStatus.OPEN)
+          .createdAt(now())
+          .lastActivityAt(now())
+          .build());
+    } catch (RuntimeException e) {
+      abort(bucketName, request.fileName(), uploadId);
+      throw e;
+    }
+
+    return toResponse(session, List.of());
+  }
+
+  /**
+   * The session with the parts minio has received so far.
+   */
+  public UploadSessionResponse getSession(String sessionId) throws Exception {
+    UploadSession session = findSession(sessionId);
+    if (session.getStatus() != UploadSessionStatus.OPEN) {
+      return toResponse(session, null);
+    }
+    return toResponse(session, minioMultipartClient.listParts(session.getBucketName(), session.getObjectName(),
+        session.getUploadId()));
+  }
+
+  /**
+   * Uploads one part; sending a part number again replaces the part. The part is spooled to a temp file first, since
+   * minio needs its length and checksum before the first byte is sent, so no part is held in memory. With the size of
+   * the file known, a part before the last one below 5MB is refused here rather than by the completion.
+   */
+  public UploadedPart uploadPart(String sessionId, int partNumber, InputStream stream) throws Exception {
+    if (partNumber < 1 || partNumber > MAX_PARTS) {
+      throw new IllegalArgumentException("Part number must be between 1 and " + MAX_PARTS + ".");
+    }
+    UploadSession session = findSession(sessionId);
+    if (session.getStatus() != UploadSessionStatus.OPEN) {
+      throw new IllegalStateException("Upload session is already completed: " + sessionId);
+    }
+
+    Path file = Files.createTempFile(spoolDirectory, "part-", ".spool");
+    try {
+      long size;
+      try (OutputStream outputStream = Files.newOutputStream(file)) {
+        // one byte more than allowed tells a part that is too big
+        size = ByteStreams.limit(stream, maxPartSize.toBytes() + 1).transferTo(outputStream);
+      }
+      if (size == 0 || size > maxPartSize.toBytes()) {
+        throw new IllegalArgumentException("Part size must be between 1 byte and " + maxPartSize.toMegabytes()
+            + "MB.");
+      }
+      if (size < MIN_PART_SIZE && partNumber < minPartCount(session)) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Part " + partNumber + " has " + size
+            + " bytes, all parts but the last must be at least 5MB.");
+      }
+
+      String etag;
+      try (RandomAccessFile data = new RandomAccessFile(file.toFile(), "r")) {
+        etag = minioMultipartClient.uploadPart(session.getBucketName(), session.getObjectName(),
+            session.getUploadId(), partNumber, data, size);
+      }
+      uploadSessionRepository.touch(sessionId, now());
+
+      return UploadedPart.builder()
+          .partNumber(partNumber)
+          .etag(etag)
+          .size(size)
+          .build();
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Completes the multipart upload from the parts 1..n minio has received and records the new version. Completing a
+   * completed session again returns its version, also when two completions race and minio knows the upload no more.
+   */
+  public DocumentResponse completeSession(String sessionId) throws Exception {
+    UploadSession session = findSession(sessionId);
+    if (session.getStatus() == UploadSessionStatus.COMPLETED) {
+      return documentService.completeDirectUpload(session.getBucketName(), session.getObjectName(),
+          session.getVersionId());
+    }
+
+    List<Part> parts;
+    try {
+      parts = minioMultipartClient.listParts(session.getBucketName(), session.getObjectName(),
+          session.getUploadId());
+    } catch (ErrorResponseException e) {
+      return completedConcurrently(sessionId, e);
+    }
+    if (parts.isEmpty()) {
+      throw new IllegalStateException("No parts received for upload session: " + sessionId);
+    }
+    long receivedBytes = 0;
+    for (int i = 0; i < parts.size(); i++) {
+      if (parts.get(i).partNumber() != i + 1) {
+        throw new IllegalStateException("Part " + (i + 1) + " is missing in upload session: " + sessionId);
+      }
+      receivedBytes += parts.get(i).partSize();
+    }
+    if (session.getTotalSize() != null && receivedBytes != session.getTotalSize()) {
+      throw new IllegalStateException("Received " + receivedBytes + " of " + session.getTotalSize()
+          + " bytes in upload session: " + sessionId);
+    }
+    // minio would refuse the completion with EntityTooSmall, which does not tell the parts
+    String tooSmall = IntStream.range(0, parts.size() - 1)
+        .filter(i -> parts.get(i).partSize() < MIN_PART_SIZE)
+        .mapToObj(i -> String.valueOf(parts.get(i).partNumber()))
+        .collect(Collectors.joining(", "));
+    if (!tooSmall.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Parts " + tooSmall + " are smaller than 5MB, all "
+          + "parts but the last must be at least 5MB, in upload session: " + sessionId);
+    }
+
+    ObjectWriteResponse response;
+    try {
+      response = minioMultipartClient.completeMultipartUpload(session.getBucketName(), session.getObjectName(),
+          session.getUploadId(), parts.stream()
+              .map(part -> new Part(part.partNumber(), part.etag()))
+              .toArray(Part[]::new));
+    } catch (ErrorResponseException e) {
+      return completedConcurrently(sessionId, e);
+    }
+    session.setStatus(UploadSessionStatus.COMPLETED);
+    session.setVersionId(response.versionId());
+    session.setLastActivityAt(now());
+    uploadSessionRepository.save(session);
+
+    return documentService.completeDirectUpload(session.getBucketName(), session.getObjectName(),
+        response.versionId());
+  }
+
+  /**
+   * Aborts the multipart upload, so minio drops the parts, and removes the session.
+   */
+  public void abortSession(String sessionId) {
+    UploadSession session = findSession(sessionId);
+    if (session.getStatus() == UploadSessionStatus.OPEN) {
+      abort(session.getBucketName(), session.getObjectName(), session.getUploadId());
+    }
+    uploadSessionRepository.delete(session);
+  }
+
+  /**
+   * Aborts the sessions without a request for longer than the expiry and removes completed ones.
+   */
+  @Scheduled(initialDelayString = "${upload.session.reaper.initial-delay:PT5M}",
+      fixedDelayString = "${upload.session.reaper.interval:PT15M}")
+  public void reapExpiredSessions() {
+    for (UploadSession session : uploadSessionRepository.findByLastActivityAtBefore(now().minus(expiry))) {
+      try {
+        if (session.getStatus() == UploadSessionStatus.OPEN) {
+          log.info("Aborting expired upload session: {}, file: {}/{}", session.getId(), session.getBucketName(),
+              session.getObjectName());
+          abort(session.getBucketName(), session.getObjectName(), session.getUploadId());
+        }
+        uploadSessionRepository.delete(session);
+      } catch (RuntimeException e) {
+        log.warn("Upload session could not be reaped: {}", session.getId(), e);
+      }
+    }
+  }
+
+  /**
+   * A multipart upload that is gone was completed by a concurrent completion of the session, which records its version
+   * right after; until it has, the caller is asked to try again.
+   */
+  private DocumentResponse completedConcurrently(String sessionId, ErrorResponseException e) throws Exception {
+    if (!"NoSuchUpload".equals(e.errorResponse().code())) {
+      throw e;
+    }
+    UploadSession session = findSession(sessionId);
+    if (session.getStatus() != UploadSessionStatus.COMPLETED) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload session is being completed: " + sessionId, e);
+    }
+    return documentService.completeDirectUpload(session.getBucketName(), session.getObjectName(),
+        session.getVersionId());
+  }
+
+  /**
+   * The fewest parts a session with a known size can have, with parts of the maximum size; the parts before are never
+   * the last one, whatever part size the client picked. 0 when the size is unknown.
+   */
+  private long minPartCount(UploadSession session) {
+    if (session.getTotalSize() == null) {
+      return 0;
+    }
+    return (session.getTotalSize() + maxPartSize.toBytes() - 1) / maxPartSize.toBytes();
+  }
+
+  private long partSize(Long size) {
+    if (size == null) {
+      return partSize.toBytes();
+    }
+    if (size < 0) {
+      throw new IllegalArgumentException("Size must not be negative.");
+    }
+    long sessionPartSize = Math.max(partSize.toBytes(), (size + MAX_PARTS - 1) / MAX_PARTS);
+    if (sessionPartSize > maxPartSize.toBytes()) {
+      throw new IllegalArgumentException("File is too large for " + MAX_PARTS + " parts of at most "
+          + maxPartSize.toMegabytes() + "MB.");
+    }
+    return sessionPartSize;
+  }
+
+  /**
+   * A multipart upload that is gone already (aborted or completed) needs no abort.
+   */
+  private void abort(String bucketName, String objectName, String uploadId) {
+    try {
+      minioMultipartClient.abortMultipartUpload(bucketName, objectName, uploadId);
+    } catch (ErrorResponseException e) {
+      if (!"NoSuchUpload".equals(e.errorResponse().code())) {
+        throw new IllegalStateException("Multipart upload could not be aborted: " + uploadId, e);
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException("Multipart upload could not be aborted: " + uploadId, e);
+    }
+  }
+
+  private UploadSession findSession(String sessionId) {
+    return uploadSessionRepository.findById(sessionId)
+        .orElseThrow(() -> new IllegalStateException("Upload session not found by id: " + sessionId));
+  }
+
+  private UploadSessionResponse toResponse(UploadSession session, List<Part> parts) {
+    UploadSessionResponse.UploadSessionResponseBuilder builder = UploadSessionResponse.builder()
+        .id(session.getId())
+        .bucketName(session.getBucketName())
+        .fileName(session.getObjectName())
+        .contentType(session.getContentType())
+        .size(session.getTotalSize())
+        .partSize(session.getPartSize())
+        .maxPartSize(maxPartSize.toBytes())
+        .status(session.getStatus())
+        .versionId(session.getVersionId())
+        .createdDate(session.getCreatedAt())
+        .expiresDate(session.getLastActivityAt().plus(expiry));
+
+    if (parts != null) {
+      builder
+          .parts(parts.stream()
+              .map(part -> UploadedPart.builder()
+                  .partNumber(part.partNumber())
+                  .etag(part.etag())
+                  .size(part.partSize())
+                  .build())
+              .toList())
+          .receivedBytes(parts.stream().mapToLong(Part::partSize).sum());
+    }
+    return builder.build();
+  }
+
+  private LocalDateTime now() {
+    return LocalDateTime.now(ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,166 @@
+package com.document.document_service.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.document.document_service.client.AdaptiveLimiter.Permit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveLimiterTest {
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void limitGrowsByOneWhileThePoolIsAtLeastHalfUsed() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(2, 1, 4));
+    Permit first = limiter.acquire();
+    Permit second = limiter.acquire();
+
+    first.succeeded(false);
+    assertThat(limit()).isEqualTo(3);
+    // only the first outcome of a permit counts
+    first.failed();
+    assertThat(limit()).isEqualTo(3);
+
+    try (Permit third = limiter.acquire()) {
+      assertThat(inFlight()).isEqualTo(3);
+    }
+    first.close();
+    second.close();
+    assertThat(inFlight()).isZero();
+  }
+
+  @Test
+  void limitStaysWhileThePoolIsMostlyIdle() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(4, 1, 8));
+
+    try (Permit permit = limiter.acquire()) {
+      permit.succeeded(false);
+    }
+    assertThat(limit()).isEqualTo(4);
+  }
+
+  @Test
+  void limitNeverGrowsOverTheMaximum() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(2, 1, 2));
+
+    try (Permit first = limiter.acquire(); Permit second = limiter.acquire()) {
+      first.succeeded(false);
+      second.succeeded(false);
+    }
+    assertThat(limit()).isEqualTo(2);
+  }
+
+  @Test
+  void failuresCutTheLimitDownToTheMinimum() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(8, 2, 8));
+
+    for (double expected : new double[] {4, 2, 2}) {
+      try (Permit permit = limiter.acquire()) {
+        permit.failed();
+      }
+      assertThat(limit()).isEqualTo(expected);
+    }
+    assertThat(meterRegistry.get("minio.limiter.dropped").counter().count()).isEqualTo(3);
+  }
+
+  @Test
+  void slowAnswersCutTheLimitOnlyWhenTimed() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(8, 1, 8).dropLatency(Duration.ZERO));
+
+    try (Permit permit = limiter.acquire()) {
+      Thread.sleep(1);
+      permit.succeeded(false);
+    }
+    assertThat(limit()).isEqualTo(8);
+
+    try (Permit permit = limiter.acquire()) {
+      Thread.sleep(1);
+      permit.succeeded(true);
+    }
+    assertThat(limit()).isEqualTo(4);
+  }
+
+  @Test
+  void callsOverTheLimitAreRejectedWhenTheQueueIsFull() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(1, 1, 1).maxQueue(0));
+
+    try (Permit permit = limiter.acquire()) {
+      assertThatThrownBy(limiter::acquire).isInstanceOf(MinioOverloadedException.class);
+    }
+    assertThat(meterRegistry.get("minio.limiter.rejected").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void queuedCallsAreRejectedAfterTheMaximumWait() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(1, 1, 1).maxWait(Duration.ofMillis(50)));
+
+    try (Permit permit = limiter.acquire()) {
+      long start = System.nanoTime();
+      assertThatThrownBy(limiter::acquire).isInstanceOf(MinioOverloadedException.class);
+      assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+    assertThat(queued()).isZero();
+  }
+
+  @Test
+  void queuedCallsGetTheReleasedPermit() throws Exception {
+    AdaptiveLimiter limiter = limiter(options(1, 1, 1));
+    Permit permit = limiter.acquire();
+
+    CompletableFuture<Permit> waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return limiter.acquire();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    while (queued() == 0) {
+      Thread.sleep(1);
+    }
+    assertThat(waiting).isNotDone();
+
+    permit.close();
+    try (Permit next = waiting.get(5, TimeUnit.SECONDS)) {
+      assertThat(inFlight()).isEqualTo(1);
+    }
+  }
+
+  private AdaptiveLimiter limiter(AdaptiveLimiter.Options.OptionsBuilder options) {
+    return new AdaptiveLimiter("test", options.build(), meterRegistry);
+  }
+
+  /**
+   * Halves the limit on a drop; nothing is slow, waits and queues are allowed.
+   */
+  private static AdaptiveLimiter.Options.OptionsBuilder options(int initialLimit, int minLimit, int maxLimit) {
+    return AdaptiveLimiter.Options.builder()
+        .initialLimit(initialLimit)
+        .minLimit(minLimit)
+        .maxLimit(maxLimit)
+        .backoffRatio(0.5)
+        .dropLatency(Duration.ofSeconds(10))
+        .maxWait(Duration.ofSeconds(5))
+        .maxQueue(1)
+        .retryAfter(Duration.ofSeconds(1));
+  }
+
+  private double limit() {
+    return meterRegistry.get("minio.limiter.limit").gauge().value();
+  }
+
+  private double inFlight() {
+    return meterRegistry.get("minio.limiter.in-flight").gauge().value();
+  }
+
+  private double queued() {
+    return meterRegistry.get("minio.limiter.queued").gauge().value();
+  }
+}
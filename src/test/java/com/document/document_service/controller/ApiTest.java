@@ -0,0 +1,67 @@
+package com.document.document_service.controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import com.document.document_service.s3.EmbeddedS3Server;
+import com.document.document_service.s3.NetworkModel;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * The whole service on a random port, backed by the embedded S3 server and an in-memory H2 database like the load
+ * test. The subclasses share the application context; every test gets a new bucket.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+abstract class ApiTest {
+  private static final EmbeddedS3Server S3_SERVER = startS3Server();
+
+  @Autowired
+  protected TestRestTemplate restTemplate;
+
+  protected String bucketName;
+
+  @DynamicPropertySource
+  static void properties(DynamicPropertyRegistry registry) throws IOException {
+    registry.add("minio.url", S3_SERVER::url);
+    registry.add("spring.datasource.url",
+        () -> "jdbc:h2:mem:api_test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+    registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+    registry.add("spring.datasource.username", () -> "sa");
+    registry.add("spring.datasource.password", () -> "");
+    registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.H2Dialect");
+    registry.add("spring.jpa.properties.hibernate.default_schema", () -> "api_test");
+    registry.add("spring.jpa.show-sql", () -> "false");
+    registry.add("server.error.include-message", () -> "always");
+    registry.add("bucket-statistics.notifications.enabled", () -> "false");
+    registry.add("document-cache.notify.enabled", () -> "false");
+    registry.add("content-cache.directory", Files.createTempDirectory("api-test-content-cache")::toString);
+    // parts of at most 8MB, so a session needs more than one part at a few megabytes already
+    registry.add("upload.session.part-size", () -> "5MB");
+    registry.add("upload.session.max-part-size", () -> "8MB");
+  }
+
+  @BeforeEach
+  void createBucket() {
+    bucketName = "api-test-" + UUID.randomUUID();
+    restTemplate.postForObject("/api/v1/bucket/{bucketName}", null, String.class, bucketName);
+  }
+
+  private static EmbeddedS3Server startS3Server() {
+    try {
+      EmbeddedS3Server s3Server = EmbeddedS3Server.start(NetworkModel.NONE);
+      // the cached context outlives the test classes, so the server is stopped with the jvm
+      Runtime.getRuntime().addShutdownHook(new Thread(s3Server::close));
+      return s3Server;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
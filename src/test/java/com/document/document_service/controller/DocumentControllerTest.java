@@ -0,0 +1,209 @@
+package com.document.document_service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.DocumentVersionPageResponse;
+import com.document.document_service.dto.response.OldDocumentVersion;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+class DocumentControllerTest extends ApiTest {
+  private static final String CONTENT = "0123456789abcdef";
+
+  @Test
+  void downloadsTheWholeFile() {
+    upload("whole.txt", CONTENT);
+
+    ResponseEntity<String> response = download("whole.txt", new HttpHeaders());
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody()).isEqualTo(CONTENT);
+    assertThat(response.getHeaders().getETag()).isNotNull();
+    assertThat(response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    assertThat(response.getHeaders().getContentLength()).isEqualTo(CONTENT.length());
+  }
+
+  @Test
+  void answersConditionalRequestsWithNotModified() {
+    upload("conditional.txt", CONTENT);
+    HttpHeaders validators = download("conditional.txt", new HttpHeaders()).getHeaders();
+
+    HttpHeaders ifNoneMatch = new HttpHeaders();
+    ifNoneMatch.setIfNoneMatch(validators.getETag());
+    assertThat(download("conditional.txt", ifNoneMatch).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+    HttpHeaders ifModifiedSince = new HttpHeaders();
+    ifModifiedSince.setIfModifiedSince(validators.getLastModified());
+    assertThat(download("conditional.txt", ifModifiedSince).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+    // a new version has a new etag
+    upload("conditional.txt", CONTENT + "!");
+    ResponseEntity<String> changed = download("conditional.txt", ifNoneMatch);
+    assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(changed.getBody()).isEqualTo(CONTENT + "!");
+  }
+
+  @Test
+  void downloadsASingleRange() {
+    upload("range.txt", CONTENT);
+
+    ResponseEntity<String> response = download("range.txt", range("bytes=2-5"));
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+    assertThat(response.getBody()).isEqualTo("2345");
+    assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/16");
+
+    ResponseEntity<String> suffix = download("range.txt", range("bytes=-3"));
+    assertThat(suffix.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+    assertThat(suffix.getBody()).isEqualTo("def");
+    assertThat(suffix.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 13-15/16");
+  }
+
+  @Test
+  void downloadsMultipleRangesAsByteranges() {
+    upload("ranges.txt", CONTENT);
+
+    ResponseEntity<String> response = download("ranges.txt", range("bytes=0-1,10-"));
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+    MediaType contentType = response.getHeaders().getContentType();
+    assertThat(contentType.isCompatibleWith(MediaType.parseMediaType("multipart/byteranges"))).isTrue();
+    String boundary = contentType.getParameter("boundary");
+    assertThat(response.getBody())
+        .startsWith("\r\n--" + boundary + "\r\n")
+        .contains("Content-Range: bytes 0-1/16\r\n\r\n01\r\n--" + boundary + "\r\n")
+        .endsWith("Content-Range: bytes 10-15/16\r\n\r\nabcdef\r\n--" + boundary + "--\r\n");
+  }
+
+  @Test
+  void refusesUnsatisfiableRanges() {
+    upload("unsatisfiable.txt", CONTENT);
+
+    ResponseEntity<String> response = download("unsatisfiable.txt", range("bytes=16-20"));
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */16");
+  }
+
+  @Test
+  void sendsTheWholeFileWhenIfRangeDoesNotMatch() {
+    upload("if-range.txt", CONTENT);
+    String etag = download("if-range.txt", new HttpHeaders()).getHeaders().getETag();
+
+    HttpHeaders matching = range("bytes=0-3");
+    matching.set(HttpHeaders.IF_RANGE, etag);
+    assertThat(download("if-range.txt", matching).getBody()).isEqualTo("0123");
+
+    HttpHeaders stale = range("bytes=0-3");
+    stale.set(HttpHeaders.IF_RANGE, "\"stale\"");
+    ResponseEntity<String> response = download("if-range.txt", stale);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody()).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void numbersVersionsAcrossPages() {
+    List<String> versionIds = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      versionIds.add(upload("history.txt", "version " + i).versionId());
+    }
+
+    DocumentVersionPageResponse first = versionPage("history.txt", null, 2);
+    assertThat(first.versionCount()).isEqualTo(5);
+    assertThat(labels(first)).containsExactly("v5", "v4");
+    assertThat(first.nextContinuationToken()).isNotNull();
+
+    DocumentVersionPageResponse second = versionPage("history.txt", first.nextContinuationToken(), 2);
+    assertThat(labels(second)).containsExactly("v3", "v2");
+    assertThat(second.nextContinuationToken()).isNotNull();
+
+    DocumentVersionPageResponse last = versionPage("history.txt", second.nextContinuationToken(), 2);
+    assertThat(labels(last)).containsExactly("v1");
+    assertThat(last.nextContinuationToken()).isNull();
+
+    List<String> pagedVersionIds = new ArrayList<>();
+    for (DocumentVersionPageResponse page : List.of(first, second, last)) {
+      page.versions().forEach(version -> pagedVersionIds.add(version.versionId()));
+    }
+    // newest first, versions written in the same second in the order of their uploads
+    assertThat(pagedVersionIds).containsExactlyElementsOf(versionIds.reversed());
+  }
+
+  @Test
+  void versionPagesMatchTheLabelsOfTheDocument() {
+    for (int i = 1; i <= 3; i++) {
+      upload("labels.txt", "version " + i);
+    }
+
+    DocumentResponse document = restTemplate.getForObject("/api/v1/document/{bucketName}/document/{fileName}/metadata",
+        DocumentResponse.class, bucketName, "labels.txt");
+    DocumentVersionPageResponse page = versionPage("labels.txt", null, 10);
+
+    assertThat(page.versions().getFirst().version()).isEqualTo(document.version());
+    assertThat(page.nextContinuationToken()).isNull();
+  }
+
+  @Test
+  void copiesEveryVersionInOrder() {
+    upload("copied.txt", "version 1");
+    upload("copied.txt", "version 2");
+    String toBucket = bucketName + "-copy";
+    restTemplate.postForObject("/api/v1/bucket/{bucketName}", null, String.class, toBucket);
+
+    ResponseEntity<DocumentResponse> response = restTemplate.postForEntity(
+        "/api/v1/document/file/copy/{fileName}/{fromBucket}/{toBucket}", null, DocumentResponse.class, "copied.txt",
+        bucketName, toBucket);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(restTemplate.getForObject("/api/v1/document/{bucketName}/file/{fileName}", String.class, toBucket,
+        "copied.txt")).isEqualTo("version 2");
+    DocumentVersionPageResponse page = restTemplate.getForObject(
+        "/api/v1/document/{bucketName}/document/{fileName}/versions?pageSize=10", DocumentVersionPageResponse.class,
+        toBucket, "copied.txt");
+    assertThat(labels(page)).containsExactly("v2", "v1");
+  }
+
+  private DocumentResponse upload(String fileName, String content) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.TEXT_PLAIN);
+    ResponseEntity<DocumentResponse> response = restTemplate.exchange("/api/v1/document/{bucketName}/file/{fileName}",
+        HttpMethod.PUT, new HttpEntity<>(content.getBytes(StandardCharsets.UTF_8), headers), DocumentResponse.class,
+        bucketName, fileName);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    return response.getBody();
+  }
+
+  private ResponseEntity<String> download(String fileName, HttpHeaders headers) {
+    return restTemplate.exchange("/api/v1/document/{bucketName}/file/{fileName}", HttpMethod.GET,
+        new HttpEntity<>(headers), String.class, bucketName, fileName);
+  }
+
+  private DocumentVersionPageResponse versionPage(String fileName, String continuationToken, int pageSize) {
+    String url = "/api/v1/document/{bucketName}/document/{fileName}/versions?pageSize={pageSize}"
+        + (continuationToken == null ? "" : "&continuationToken={continuationToken}");
+    return restTemplate.getForObject(url, DocumentVersionPageResponse.class, bucketName, fileName, pageSize,
+        continuationToken);
+  }
+
+  private static HttpHeaders range(String range) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RANGE, range);
+    return headers;
+  }
+
+  private static List<String> labels(DocumentVersionPageResponse page) {
+    return page.versions().stream()
+        .map(OldDocumentVersion::version)
+        .toList();
+  }
+}
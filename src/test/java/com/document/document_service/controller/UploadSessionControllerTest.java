@@ -0,0 +1,151 @@
+package com.document.document_service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import com.document.document_service.dto.request.UploadSessionRequest;
+import com.document.document_service.dto.response.DocumentResponse;
+import com.document.document_service.dto.response.UploadSessionResponse;
+import com.document.document_service.dto.response.UploadedPart;
+import com.document.document_service.entity.UploadSessionStatus;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+class UploadSessionControllerTest extends ApiTest {
+  private static final int MIN_PART_SIZE = (int) DataSize.ofMegabytes(5).toBytes();
+
+  @Test
+  void completesPartsSentInAnyOrder() {
+    byte[] first = content(MIN_PART_SIZE, 'a');
+    byte[] second = content(10, 'b');
+    UploadSessionResponse session = createSession("large.bin", (long) first.length + second.length);
+    assertThat(session.status()).isEqualTo(UploadSessionStatus.OPEN);
+    assertThat(session.partSize()).isEqualTo(MIN_PART_SIZE);
+
+    assertThat(uploadPart(session.id(), 2, second).getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(uploadPart(session.id(), 1, first).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+    UploadSessionResponse received = getSession(session.id());
+    assertThat(received.parts()).extracting(UploadedPart::partNumber).containsExactly(1, 2);
+    assertThat(received.parts()).extracting(UploadedPart::size).containsExactly((long) first.length, 10L);
+    assertThat(received.receivedBytes()).isEqualTo(first.length + second.length);
+
+    ResponseEntity<String> completed = complete(session.id());
+    assertThat(completed.getStatusCode()).isEqualTo(HttpStatus.OK);
+    DocumentResponse document = restTemplate.getForObject("/api/v1/document/{bucketName}/document/{fileName}/metadata",
+        DocumentResponse.class, bucketName, "large.bin");
+    assertThat(document.size()).isEqualTo(first.length + second.length);
+
+    UploadSessionResponse done = getSession(session.id());
+    assertThat(done.status()).isEqualTo(UploadSessionStatus.COMPLETED);
+    assertThat(done.versionId()).isEqualTo(document.versionId());
+    assertThat(done.parts()).isNull();
+
+    HttpHeaders range = new HttpHeaders();
+    range.set(HttpHeaders.RANGE, "bytes=" + (MIN_PART_SIZE - 2) + "-");
+    ResponseEntity<String> tail = restTemplate.exchange("/api/v1/document/{bucketName}/file/{fileName}",
+        HttpMethod.GET, new HttpEntity<>(range), String.class, bucketName, "large.bin");
+    assertThat(tail.getBody()).isEqualTo("aa" + "b".repeat(10));
+  }
+
+  @Test
+  void completingACompletedSessionReturnsItsVersion() {
+    UploadSessionResponse session = createSession("twice.txt", null);
+    uploadPart(session.id(), 1, content(10, 'c'));
+
+    assertThat(complete(session.id()).getStatusCode()).isEqualTo(HttpStatus.OK);
+    String versionId = getSession(session.id()).versionId();
+
+    ResponseEntity<DocumentResponse> again = restTemplate.postForEntity(
+        "/api/v1/upload/session/{sessionId}/complete", null, DocumentResponse.class, session.id());
+    assertThat(again.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(again.getBody().versionId()).isEqualTo(versionId);
+  }
+
+  @Test
+  void sendingAPartAgainReplacesIt() {
+    UploadSessionResponse session = createSession("replaced.txt", null);
+    uploadPart(session.id(), 1, content(20, 'd'));
+    uploadPart(session.id(), 1, content(12, 'e'));
+
+    assertThat(getSession(session.id()).parts()).extracting(UploadedPart::size).containsExactly(12L);
+    assertThat(complete(session.id()).getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(restTemplate.getForObject("/api/v1/document/{bucketName}/file/{fileName}", String.class, bucketName,
+        "replaced.txt")).isEqualTo("e".repeat(12));
+  }
+
+  @Test
+  void refusesToCompleteWithAMissingPart() {
+    UploadSessionResponse session = createSession("gap.bin", null);
+    uploadPart(session.id(), 1, content(MIN_PART_SIZE, 'f'));
+    uploadPart(session.id(), 3, content(10, 'g'));
+
+    ResponseEntity<String> response = complete(session.id());
+    assertThat(response.getStatusCode().isError()).isTrue();
+    assertThat(response.getBody()).contains("Part 2 is missing");
+    assertThat(getSession(session.id()).status()).isEqualTo(UploadSessionStatus.OPEN);
+  }
+
+  @Test
+  void namesThePartsBelowTheMinimumOnCompletion() {
+    UploadSessionResponse session = createSession("small.bin", null);
+    uploadPart(session.id(), 1, content(10, 'h'));
+    uploadPart(session.id(), 2, content(MIN_PART_SIZE, 'i'));
+    uploadPart(session.id(), 3, content(10, 'j'));
+    uploadPart(session.id(), 4, content(10, 'k'));
+
+    ResponseEntity<String> response = complete(session.id());
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    // the last part may be small
+    assertThat(response.getBody()).contains("Parts 1, 3 are smaller than 5MB");
+  }
+
+  @Test
+  void refusesSmallPartsThatCannotBeTheLastOne() {
+    // with parts of at most 8MB, 10MB take at least two parts
+    UploadSessionResponse session = createSession("announced.bin", DataSize.ofMegabytes(10).toBytes());
+
+    ResponseEntity<String> small = uploadPart(session.id(), 1, content(10, 'l'));
+    assertThat(small.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(small.getBody()).contains("Part 1 has 10 bytes");
+
+    assertThat(uploadPart(session.id(), 2, content(10, 'm')).getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(getSession(session.id()).parts()).extracting(UploadedPart::partNumber).containsExactly(2);
+  }
+
+  private UploadSessionResponse createSession(String fileName, Long size) {
+    ResponseEntity<UploadSessionResponse> response = restTemplate.postForEntity("/api/v1/upload/session",
+        new UploadSessionRequest(bucketName, fileName, MediaType.TEXT_PLAIN_VALUE, size), UploadSessionResponse.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    return response.getBody();
+  }
+
+  private UploadSessionResponse getSession(String sessionId) {
+    return restTemplate.getForObject("/api/v1/upload/session/{sessionId}", UploadSessionResponse.class, sessionId);
+  }
+
+  private ResponseEntity<String> uploadPart(String sessionId, int partNumber, byte[] data) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+    return restTemplate.exchange("/api/v1/upload/session/{sessionId}/part/{partNumber}", HttpMethod.PUT,
+        new HttpEntity<>(data, headers), String.class, sessionId, partNumber);
+  }
+
+  private ResponseEntity<String> complete(String sessionId) {
+    return restTemplate.postForEntity("/api/v1/upload/session/{sessionId}/complete", null, String.class, sessionId);
+  }
+
+  private static byte[] content(int size, char fill) {
+    byte[] content = new byte[size];
+    Arrays.fill(content, (byte) fill);
+    return content;
+  }
+}
@@ -0,0 +1,286 @@
+package com.document.document_service.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.document.document_service.load.LoadProfile.Operation;
+import com.document.document_service.load.LoadReport.OperationStats;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drives the REST api of a running service with a weighted mix of uploads, downloads (whole and ranged), metadata
+ * reads, listing pages and deletes from virtual threads, and measures latency and throughput per operation. Buckets
+ * are created and seeded before the run and emptied and deleted after it; these calls are measured as well.
+ */
+@Slf4j
+public class LoadGenerator {
+  private static final String RANGED_DOWNLOAD = "download-ranged";
+
+  private final String baseUrl;
+  private final LoadProfile profile;
+  private final HttpClient httpClient;
+  private final byte[] content;
+  private final List<Operation> weightedOperations = new ArrayList<>();
+  private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+  private final List<String> bucketNames = new ArrayList<>();
+  // per bucket, whether the file with that index currently exists
+  private final List<AtomicIntegerArray> present = new ArrayList<>();
+  private volatile boolean recording;
+
+  public LoadGenerator(String baseUrl, LoadProfile profile) {
+    this.baseUrl = baseUrl;
+    this.profile = profile;
+    this.httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    this.content = new byte[(int) profile.fileSize().toBytes()];
+    ThreadLocalRandom.current().nextBytes(content);
+
+    profile.mix().forEach((operation, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        weightedOperations.add(operation);
+      }
+      recorders.put(operation.name().toLowerCase(), new Recorder());
+    });
+    if (profile.mix().containsKey(Operation.DOWNLOAD)) {
+      recorders.put(RANGED_DOWNLOAD, new Recorder());
+    }
+    recorders.put("bucket-create", new Recorder());
+    recorders.put("bucket-empty", new Recorder());
+    recorders.put("bucket-delete", new Recorder());
+  }
+
+  public LoadReport run() throws Exception {
+    String runId = Long.toString(System.currentTimeMillis(), 36);
+    recording = true;
+    for (int i = 0; i < profile.buckets(); i++) {
+      String bucketName = "load-" + runId + "-" + i;
+      send("bucket-create", HttpRequest.newBuilder(uri("api/v1/bucket/" + bucketName))
+          .POST(HttpRequest.BodyPublishers.noBody()), false, true);
+      bucketNames.add(bucketName);
+      present.add(new AtomicIntegerArray(profile.filesPerBucket()));
+    }
+    recording = false;
+
+    seed();
+
+    long measureNanos = profile.duration().toNanos();
+    long warmupEnd = System.nanoTime() + profile.warmup().toNanos();
+    long end = warmupEnd + measureNanos;
+    try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < profile.concurrency(); i++) {
+        futures.add(workers.submit(() -> work(end)));
+      }
+      while (System.nanoTime() < warmupEnd) {
+        Thread.sleep(Duration.ofNanos(Math.max(warmupEnd - System.nanoTime(), 0)));
+      }
+      recording = true;
+      log.info("Load warmup done, measuring for {}", profile.duration());
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+
+    for (String bucketName : bucketNames) {
+      send("bucket-empty", HttpRequest.newBuilder(uri("api/v1/document/" + bucketName)).DELETE(), false, false);
+      send("bucket-delete", HttpRequest.newBuilder(uri("api/v1/bucket/" + bucketName)).DELETE(), false, true);
+    }
+    recording = false;
+
+    Map<String, OperationStats> operations = new LinkedHashMap<>();
+    recorders.forEach((name, recorder) -> {
+      if (recorder.count() > 0) {
+        operations.put(name, recorder.stats(profile.duration()));
+      }
+    });
+    return new LoadReport(profile.duration(), operations);
+  }
+
+  private void seed() {
+    try (ExecutorService seeders = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int bucket = 0; bucket < bucketNames.size(); bucket++) {
+        for (int file = 0; file < profile.filesPerBucket(); file++) {
+          int bucketIndex = bucket;
+          int fileIndex = file;
+          seeders.submit(() -> upload(bucketIndex, fileIndex));
+        }
+      }
+    }
+    log.info("Seeded {} files of {} into {} buckets", profile.filesPerBucket(), profile.fileSize(),
+        bucketNames.size());
+  }
+
+  private void work(long end) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (System.nanoTime() < end) {
+      int bucket = random.nextInt(bucketNames.size());
+      Operation operation = weightedOperations.get(random.nextInt(weightedOperations.size()));
+      switch (operation) {
+        case UPLOAD -> upload(bucket, random.nextInt(profile.filesPerBucket()));
+        case DOWNLOAD -> download(bucket, random.nextDouble() < profile.rangedFraction());
+        case METADATA -> withExistingFile(bucket, file -> send("metadata",
+            HttpRequest.newBuilder(uri("api/v1/document/" + bucketNames.get(bucket) + "/document/"
+                + fileName(file) + "/metadata")).GET(), true, false));
+        case LIST -> send("list", HttpRequest.newBuilder(uri("api/v1/document/" + bucketNames.get(bucket)
+            + "/documents/page?pageSize=100")).GET(), true, false);
+        case DELETE -> withExistingFile(bucket, file -> {
+          // marked as gone first, so other workers stop picking it while it is being deleted
+          if (present.get(bucket).compareAndSet(file, 1, 0)) {
+            send("delete", HttpRequest.newBuilder(uri("api/v1/document/" + bucketNames.get(bucket) + "/file/"
+                + fileName(file))).DELETE(), false, false);
+          }
+        });
+      }
+    }
+  }
+
+  private void upload(int bucket, int file) {
+    HttpRequest.Builder request = HttpRequest.newBuilder(uri("api/v1/document/" + bucketNames.get(bucket) + "/file/"
+            + fileName(file)))
+        .header("Content-Type", "application/octet-stream")
+        .PUT(HttpRequest.BodyPublishers.ofByteArray(content));
+    if (send("upload", request, false, false)) {
+      present.get(bucket).set(file, 1);
+      if (recording) {
+        recorders.get("upload").addBytes(content.length);
+      }
+    }
+  }
+
+  private void download(int bucket, boolean ranged) {
+    withExistingFile(bucket, file -> {
+      HttpRequest.Builder request = HttpRequest.newBuilder(uri("api/v1/document/" + bucketNames.get(bucket)
+          + "/file/" + fileName(file))).GET();
+      if (ranged) {
+        long rangeSize = Math.min(profile.rangeSize().toBytes(), content.length);
+        long start = ThreadLocalRandom.current().nextLong(content.length - rangeSize + 1);
+        request.header("Range", "bytes=" + start + "-" + (start + rangeSize - 1));
+      }
+      send(ranged ? RANGED_DOWNLOAD : "download", request, true, false);
+    });
+  }
+
+  /**
+   * Runs the action on a random existing file of the bucket; nothing is done when none was found in a few tries.
+   */
+  private void withExistingFile(int bucket, FileAction action) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int attempt = 0; attempt < 8; attempt++) {
+      int file = random.nextInt(profile.filesPerBucket());
+      if (present.get(bucket).get(file) == 1) {
+        action.run(file);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sends the request, reads the whole response body and records the latency and the bytes read under the
+   * operation.
+   */
+  private boolean send(String operation, HttpRequest.Builder request, boolean countBody, boolean allowConflict) {
+    Recorder recorder = recorders.get(operation);
+    long start = System.nanoTime();
+    boolean success;
+    long bodyBytes = 0;
+    try {
+      HttpResponse<InputStream> response = httpClient.send(request.timeout(Duration.ofMinutes(2)).build(),
+          HttpResponse.BodyHandlers.ofInputStream());
+      try (InputStream body = response.body()) {
+        bodyBytes = body.transferTo(OutputStream.nullOutputStream());
+      }
+      success = response.statusCode() < 400 || (allowConflict && response.statusCode() == 409);
+      if (!success) {
+        log.debug("Load request {} failed with status {}", operation, response.statusCode());
+      }
+    } catch (IOException e) {
+      log.debug("Load request {} failed", operation, e);
+      success = false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+
+    if (recording) {
+      recorder.record(System.nanoTime() - start, success);
+      if (countBody && success) {
+        recorder.addBytes(bodyBytes);
+      }
+    }
+    return success;
+  }
+
+  private URI uri(String path) {
+    return URI.create(baseUrl + "/" + path);
+  }
+
+  private static String fileName(int file) {
+    return "load-file-" + file + ".bin";
+  }
+
+  @FunctionalInterface
+  private interface FileAction {
+    void run(int file);
+  }
+
+  private static final class Recorder {
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private long[] latencies = new long[1024];
+    private int count;
+
+    synchronized void record(long latencyNanos, boolean success) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = latencyNanos;
+      if (!success) {
+        errors.increment();
+      }
+    }
+
+    void addBytes(long count) {
+      bytes.add(count);
+    }
+
+    synchronized int count() {
+      return count;
+    }
+
+    synchronized OperationStats stats(Duration duration) {
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      double seconds = duration.toNanos() / 1e9;
+      return new OperationStats(count, errors.sum(), count / seconds, percentile(sorted, 0.50) / 1e6,
+          percentile(sorted, 0.99) / 1e6, bytes.sum() / seconds / (1024 * 1024));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      return sorted[Math.min((int) Math.ceil(percentile * sorted.length) - 1, sorted.length - 1)];
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.document.document_service.load;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.document.document_service.s3.NetworkModel;
+
+import lombok.Builder;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Shape of one load run, read from {@code load.*} system properties; the simulated network of the embedded S3 server
+ * is read from {@code s3.*}.
+ */
+@Builder
+public record LoadProfile(
+    Duration duration,
+    Duration warmup,
+    int concurrency,
+    int buckets,
+    int filesPerBucket,
+    DataSize fileSize,
+    double rangedFraction,
+    DataSize rangeSize,
+    Map<Operation, Integer> mix
+) {
+  public static LoadProfile fromSystemProperties() {
+    return LoadProfile.builder()
+        .duration(duration("load.duration", "30s"))
+        .warmup(duration("load.warmup", "5s"))
+        .concurrency(Integer.getInteger("load.concurrency", 32))
+        .buckets(Integer.getInteger("load.buckets", 4))
+        .filesPerBucket(Integer.getInteger("load.files-per-bucket", 200))
+        .fileSize(DataSize.parse(System.getProperty("load.file-size", "256KB")))
+        .rangedFraction(Double.parseDouble(System.getProperty("load.ranged-fraction", "0.2")))
+        .rangeSize(DataSize.parse(System.getProperty("load.range-size", "64KB")))
+        .mix(parseMix(System.getProperty("load.mix", "upload=20,download=50,metadata=15,list=10,delete=5")))
+        .build();
+  }
+
+  public static NetworkModel networkModelFromSystemProperties() {
+    return NetworkModel.builder()
+        .latency(duration("s3.latency", "2ms"))
+        .jitter(duration("s3.jitter", "1ms"))
+        .bytesPerSecond(DataSize.parse(System.getProperty("s3.bandwidth", "0B")).toBytes())
+        .build();
+  }
+
+  /**
+   * Parses a mix like {@code upload=20,download=50}; the weights are relative and need not add up to 100.
+   */
+  static Map<Operation, Integer> parseMix(String mix) {
+    Map<Operation, Integer> weights = new LinkedHashMap<>();
+    for (String entry : mix.split(",")) {
+      String[] parts = entry.trim().split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid load mix entry: " + entry);
+      }
+      int weight = Integer.parseInt(parts[1].trim());
+      if (weight > 0) {
+        weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("Load mix has no operations: " + mix);
+    }
+    return weights;
+  }
+
+  private static Duration duration(String property, String defaultValue) {
+    return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+  }
+
+  public enum Operation {
+    UPLOAD,
+    DOWNLOAD,
+    METADATA,
+    LIST,
+    DELETE
+  }
+}
@@ -0,0 +1,41 @@
+package com.document.document_service.load;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Results of one load run by operation name.
+ */
+public record LoadReport(
+    Duration duration,
+    Map<String, OperationStats> operations
+) {
+  public long totalCount() {
+    return operations.values().stream().mapToLong(OperationStats::count).sum();
+  }
+
+  public double errorRate() {
+    long total = totalCount();
+    long errors = operations.values().stream().mapToLong(OperationStats::errors).sum();
+    return total == 0 ? 0 : (double) errors / total;
+  }
+
+  public String format() {
+    StringBuilder table = new StringBuilder(String.format("%-16s %10s %8s %10s %10s %10s %10s%n",
+        "operation", "count", "errors", "ops/s", "p50 ms", "p99 ms", "MB/s"));
+    operations.forEach((name, stats) -> table.append(String.format("%-16s %10d %8d %10.1f %10.2f %10.2f %10.2f%n",
+        name, stats.count(), stats.errors(), stats.opsPerSecond(), stats.p50Millis(), stats.p99Millis(),
+        stats.megabytesPerSecond())));
+    return table.toString();
+  }
+
+  public record OperationStats(
+      long count,
+      long errors,
+      double opsPerSecond,
+      double p50Millis,
+      double p99Millis,
+      double megabytesPerSecond
+  ) {
+  }
+}
@@ -0,0 +1,76 @@
+package com.document.document_service.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+import com.document.document_service.s3.EmbeddedS3Server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * End-to-end load test: the whole service on a random port, backed by the embedded S3 server and an in-memory H2
+ * database, so it runs without docker or network. Excluded from the default build; run it with
+ * {@code mvn -Pload-test test} and shape it with the {@code load.*} and {@code s3.*} system properties of
+ * {@link LoadProfile}.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LoadTest {
+  private static final EmbeddedS3Server S3_SERVER = startS3Server();
+
+  @LocalServerPort
+  private int port;
+
+  @DynamicPropertySource
+  static void properties(DynamicPropertyRegistry registry) throws IOException {
+    registry.add("minio.url", S3_SERVER::url);
+    registry.add("spring.datasource.url",
+        () -> "jdbc:h2:mem:load_test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+    registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+    registry.add("spring.datasource.username", () -> "sa");
+    registry.add("spring.datasource.password", () -> "");
+    registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.H2Dialect");
+    registry.add("spring.jpa.properties.hibernate.default_schema", () -> "load_test");
+    registry.add("spring.jpa.show-sql", () -> "false");
+    registry.add("bucket-statistics.notifications.enabled", () -> "false");
+    registry.add("document-cache.notify.enabled", () -> "false");
+    registry.add("content-cache.directory", Files.createTempDirectory("load-test-content-cache")::toString);
+  }
+
+  @AfterAll
+  static void stopS3Server() {
+    S3_SERVER.close();
+  }
+
+  @Test
+  void mixedWorkload() throws Exception {
+    LoadProfile profile = LoadProfile.fromSystemProperties();
+    log.info("Load profile: {}, network: {}", profile, LoadProfile.networkModelFromSystemProperties());
+
+    LoadReport report = new LoadGenerator("http://localhost:" + port, profile).run();
+    log.info("Load test results over {}:\n{}", report.duration(), report.format());
+
+    assertThat(report.totalCount()).isPositive();
+    assertThat(report.errorRate()).isLessThan(0.01);
+  }
+
+  private static EmbeddedS3Server startS3Server() {
+    try {
+      return EmbeddedS3Server.start(LoadProfile.networkModelFromSystemProperties());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,749 @@
+package com.document.document_service.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.document.document_service.s3.S3Storage.Bucket;
+import com.document.document_service.s3.S3Storage.Part;
+import com.document.document_service.s3.S3Storage.Upload;
+import com.document.document_service.s3.S3Storage.Version;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * In-process S3-compatible server for tests and load tests, enough for everything the service does with the minio
+ * client: buckets with versioning, object put/get (also ranged)/stat/copy/delete, version and v2 listings with
+ * prefix, delimiter and paging, multi-object delete and multipart uploads including part copies. Data is kept in
+ * memory, requests are not authenticated and bucket notifications are not supported. Every request goes through the
+ * {@link NetworkModel}.
+ */
+@Slf4j
+public final class EmbeddedS3Server implements AutoCloseable {
+  private static final String S3_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int DEFAULT_MAX_KEYS = 1000;
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+  private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+      .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+      .withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter ISO_DATE = DateTimeFormatter
+      .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US)
+      .withZone(ZoneOffset.UTC);
+
+  private final S3Storage storage = new S3Storage();
+  private final NetworkModel networkModel;
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  private EmbeddedS3Server(NetworkModel networkModel) throws IOException {
+    this.networkModel = networkModel;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+  }
+
+  public static EmbeddedS3Server start(NetworkModel networkModel) throws IOException {
+    EmbeddedS3Server s3Server = new EmbeddedS3Server(networkModel);
+    s3Server.server.start();
+    return s3Server;
+  }
+
+  public String url() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) {
+    try (exchange) {
+      try {
+        networkModel.delayRequest();
+        route(exchange);
+      } catch (S3Exception e) {
+        sendError(exchange, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        log.warn("Embedded s3 request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+        sendError(exchange, new S3Exception(500, "InternalError", String.valueOf(e.getMessage()), null, null));
+      }
+    } catch (IOException e) {
+      log.debug("Embedded s3 response could not be sent", e);
+    }
+  }
+
+  private void route(HttpExchange exchange) throws Exception {
+    String method = exchange.getRequestMethod();
+    String path = exchange.getRequestURI().getPath();
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    String[] segments = path.substring(1).split("/", 2);
+    String bucketName = segments[0].isEmpty() ? null : segments[0];
+    String key = segments.length > 1 && !segments[1].isEmpty() ? segments[1] : null;
+
+    if (bucketName == null) {
+      listBuckets(exchange);
+    } else if (key == null) {
+      routeBucket(exchange, method, bucketName, query);
+    } else {
+      routeObject(exchange, method, storage.bucket(bucketName), key, query);
+    }
+  }
+
+  private void routeBucket(HttpExchange exchange, String method, String bucketName, Map<String, String> query)
+      throws Exception {
+    switch (method) {
+      case "HEAD" -> {
+        storage.bucket(bucketName);
+        send(exchange, 200, null, null);
+      }
+      case "PUT" -> {
+        if (query.containsKey("versioning")) {
+          setVersioning(exchange, storage.bucket(bucketName));
+        } else {
+          storage.createBucket(bucketName);
+          exchange.getResponseHeaders().set("Location", "/" + bucketName);
+          send(exchange, 200, null, null);
+        }
+      }
+      case "DELETE" -> {
+        storage.deleteBucket(bucketName);
+        send(exchange, 204, null, null);
+      }
+      case "POST" -> {
+        if (!query.containsKey("delete")) {
+          throw notImplemented();
+        }
+        deleteObjects(exchange, storage.bucket(bucketName));
+      }
+      case "GET" -> {
+        Bucket bucket = storage.bucket(bucketName);
+        if (query.containsKey("location")) {
+          sendXml(exchange, 200, "<LocationConstraint xmlns=\"" + S3_NAMESPACE + "\"></LocationConstraint>");
+        } else if (query.containsKey("versioning")) {
+          sendXml(exchange, 200, "<VersioningConfiguration xmlns=\"" + S3_NAMESPACE + "\">"
+              + (bucket.versioning ? "<Status>Enabled</Status>" : "") + "</VersioningConfiguration>");
+        } else if (query.containsKey("versions")) {
+          listVersions(exchange, bucket, query);
+        } else if (query.containsKey("events") || query.containsKey("uploads")) {
+          throw notImplemented();
+        } else {
+          listObjectsV2(exchange, bucket, query);
+        }
+      }
+      default -> throw notImplemented();
+    }
+  }
+
+  private void routeObject(HttpExchange exchange, String method, Bucket bucket, String key,
+                           Map<String, String> query) throws Exception {
+    String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+    switch (method) {
+      case "HEAD" -> {
+        Version version = bucket.get(key, query.get("versionId"));
+        setObjectHeaders(exchange, version);
+        exchange.sendResponseHeaders(200, -1);
+      }
+      case "GET" -> {
+        if (query.containsKey("uploadId")) {
+          listParts(exchange, bucket, key, query);
+        } else {
+          getObject(exchange, bucket.get(key, query.get("versionId")));
+        }
+      }
+      case "PUT" -> {
+        if (query.containsKey("uploadId")) {
+          uploadPart(exchange, bucket, query, copySource);
+        } else if (copySource != null) {
+          copyObject(exchange, bucket, key, copySource);
+        } else {
+          putObject(exchange, bucket, key);
+        }
+      }
+      case "POST" -> {
+        if (query.containsKey("uploads")) {
+          Upload upload = bucket.createUpload(key, contentType(exchange), userMetadata(exchange.getRequestHeaders()));
+          sendXml(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + S3_NAMESPACE + "\">"
+              + element("Bucket", bucket.name) + element("Key", key) + element("UploadId", upload.uploadId)
+              + "</InitiateMultipartUploadResult>");
+        } else if (query.containsKey("uploadId")) {
+          completeUpload(exchange, bucket, key, query.get("uploadId"));
+        } else {
+          throw notImplemented();
+        }
+      }
+      case "DELETE" -> {
+        if (query.containsKey("uploadId")) {
+          bucket.abortUpload(query.get("uploadId"));
+        } else {
+          Version deleted = bucket.delete(key, query.get("versionId"));
+          if (deleted != null) {
+            setVersionHeader(exchange, deleted.versionId());
+            if (deleted.deleteMarker()) {
+              exchange.getResponseHeaders().set("x-amz-delete-marker", "true");
+            }
+          }
+        }
+        send(exchange, 204, null, null);
+      }
+      default -> throw notImplemented();
+    }
+  }
+
+  private void listBuckets(HttpExchange exchange) throws Exception {
+    StringBuilder xml = new StringBuilder("<ListAllMyBucketsResult xmlns=\"" + S3_NAMESPACE + "\">")
+        .append("<Owner><ID>embedded</ID><DisplayName>embedded</DisplayName></Owner><Buckets>");
+    for (Bucket bucket : storage.listBuckets()) {
+      xml.append("<Bucket>").append(element("Name", bucket.name))
+          .append(element("CreationDate", ISO_DATE.format(bucket.creationDate))).append("</Bucket>");
+    }
+    sendXml(exchange, 200, xml.append("</Buckets></ListAllMyBucketsResult>").toString());
+  }
+
+  private void setVersioning(HttpExchange exchange, Bucket bucket) throws Exception {
+    Document request = parseXml(readBody(exchange));
+    NodeList status = request.getElementsByTagName("Status");
+    synchronized (bucket) {
+      bucket.versioning = status.getLength() > 0 && "Enabled".equals(status.item(0).getTextContent());
+    }
+    send(exchange, 200, null, null);
+  }
+
+  private void getObject(HttpExchange exchange, Version version) throws Exception {
+    setObjectHeaders(exchange, version);
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    long size = version.size();
+    if (range == null) {
+      send(exchange, 200, version.data(), null);
+      return;
+    }
+
+    long[] bounds = parseRange(range, size);
+    exchange.getResponseHeaders().set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+    send(exchange, 206, version.data(), bounds);
+  }
+
+  private void putObject(HttpExchange exchange, Bucket bucket, String key) throws Exception {
+    byte[] data = readBody(exchange);
+    Version version = bucket.put(key, data, S3Storage.md5(data), contentType(exchange),
+        userMetadata(exchange.getRequestHeaders()));
+    exchange.getResponseHeaders().set("ETag", quote(version.etag()));
+    setVersionHeader(exchange, version.versionId());
+    send(exchange, 200, null, null);
+  }
+
+  private void copyObject(HttpExchange exchange, Bucket bucket, String key, String copySource) throws Exception {
+    Version source = resolveCopySource(copySource);
+    Headers headers = exchange.getRequestHeaders();
+    boolean replace = "REPLACE".equalsIgnoreCase(headers.getFirst("x-amz-metadata-directive"));
+
+    Version version = bucket.put(key, source.data(), source.etag(),
+        replace ? contentType(exchange) : source.contentType(),
+        replace ? userMetadata(headers) : source.metadata());
+    setVersionHeader(exchange, version.versionId());
+    exchange.getResponseHeaders().set("x-amz-copy-source-version-id", source.versionId());
+    sendXml(exchange, 200, "<CopyObjectResult xmlns=\"" + S3_NAMESPACE + "\">"
+        + element("LastModified", ISO_DATE.format(version.lastModified()))
+        + element("ETag", quote(version.etag()))
+        + "</CopyObjectResult>");
+  }
+
+  private void uploadPart(HttpExchange exchange, Bucket bucket, Map<String, String> query, String copySource)
+      throws Exception {
+    Upload upload = bucket.upload(query.get("uploadId"));
+    int partNumber = Integer.parseInt(query.get("partNumber"));
+
+    byte[] data;
+    if (copySource == null) {
+      data = readBody(exchange);
+    } else {
+      byte[] sourceData = resolveCopySource(copySource).data();
+      String range = exchange.getRequestHeaders().getFirst("x-amz-copy-source-range");
+      long[] bounds = range == null ? new long[] {0, sourceData.length - 1} : parseRange(range, sourceData.length);
+      data = new byte[(int) (bounds[1] - bounds[0] + 1)];
+      System.arraycopy(sourceData, (int) bounds[0], data, 0, data.length);
+    }
+
+    Part part = new Part(partNumber, data, S3Storage.md5(data), storage.now());
+    upload.parts.put(partNumber, part);
+
+    if (copySource == null) {
+      exchange.getResponseHeaders().set("ETag", quote(part.etag()));
+      send(exchange, 200, null, null);
+    } else {
+      sendXml(exchange, 200, "<CopyPartResult xmlns=\"" + S3_NAMESPACE + "\">"
+          + element("LastModified", ISO_DATE.format(part.lastModified()))
+          + element("ETag", quote(part.etag()))
+          + "</CopyPartResult>");
+    }
+  }
+
+  private void completeUpload(HttpExchange exchange, Bucket bucket, String key, String uploadId) throws Exception {
+    Document request = parseXml(readBody(exchange));
+    NodeList partNumberNodes = request.getElementsByTagName("PartNumber");
+    List<Integer> partNumbers = new ArrayList<>();
+    for (int i = 0; i < partNumberNodes.getLength(); i++) {
+      partNumbers.add(Integer.parseInt(partNumberNodes.item(i).getTextContent().trim()));
+    }
+
+    Version version = bucket.completeUpload(uploadId, partNumbers);
+    setVersionHeader(exchange, version.versionId());
+    sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + S3_NAMESPACE + "\">"
+        + element("Location", url() + "/" + bucket.name + "/" + key)
+        + element("Bucket", bucket.name)
+        + element("Key", key)
+        + element("ETag", quote(version.etag()))
+        + "</CompleteMultipartUploadResult>");
+  }
+
+  private void listParts(HttpExchange exchange, Bucket bucket, String key, Map<String, String> query)
+      throws Exception {
+    Upload upload = bucket.upload(query.get("uploadId"));
+    int marker = Integer.parseInt(query.getOrDefault("part-number-marker", "0"));
+    int maxParts = Integer.parseInt(query.getOrDefault("max-parts", "1000"));
+
+    List<Part> parts = new ArrayList<>(upload.parts.tailMap(marker, false).values());
+    boolean truncated = parts.size() > maxParts;
+    if (truncated) {
+      parts = parts.subList(0, maxParts);
+    }
+
+    StringBuilder xml = new StringBuilder("<ListPartsResult xmlns=\"" + S3_NAMESPACE + "\">")
+        .append(element("Bucket", bucket.name))
+        .append(element("Key", key))
+        .append(element("UploadId", upload.uploadId))
+        .append("<Initiator><ID>embedded</ID><DisplayName>embedded</DisplayName></Initiator>")
+        .append("<Owner><ID>embedded</ID><DisplayName>embedded</DisplayName></Owner>")
+        .append(element("StorageClass", "STANDARD"))
+        .append(element("PartNumberMarker", String.valueOf(marker)))
+        .append(element("NextPartNumberMarker",
+            String.valueOf(parts.isEmpty() ? marker : parts.getLast().partNumber())))
+        .append(element("MaxParts", String.valueOf(maxParts)))
+        .append(element("IsTruncated", String.valueOf(truncated)));
+    for (Part part : parts) {
+      xml.append("<Part>")
+          .append(element("PartNumber", String.valueOf(part.partNumber())))
+          .append(element("LastModified", ISO_DATE.format(part.lastModified())))
+          .append(element("ETag", quote(part.etag())))
+          .append(element("Size", String.valueOf(part.data().length)))
+          .append("</Part>");
+    }
+    sendXml(exchange, 200, xml.append("</ListPartsResult>").toString());
+  }
+
+  private void deleteObjects(HttpExchange exchange, Bucket bucket) throws Exception {
+    Document request = parseXml(readBody(exchange));
+    NodeList quietNodes = request.getElementsByTagName("Quiet");
+    boolean quiet = quietNodes.getLength() > 0 && "true".equals(quietNodes.item(0).getTextContent().trim());
+
+    StringBuilder xml = new StringBuilder("<DeleteResult xmlns=\"" + S3_NAMESPACE + "\">");
+    NodeList objects = request.getElementsByTagName("Object");
+    for (int i = 0; i < objects.getLength(); i++) {
+      Element object = (Element) objects.item(i);
+      String key = childText(object, "Key");
+      String versionId = childText(object, "VersionId");
+      try {
+        Version deleted = bucket.delete(key, versionId);
+        if (!quiet) {
+          xml.append("<Deleted>").append(element("Key", key));
+          if (versionId != null) {
+            xml.append(element("VersionId", versionId));
+          }
+          if (deleted != null && deleted.deleteMarker()) {
+            xml.append(element("DeleteMarker", "true"))
+                .append(element("DeleteMarkerVersionId", deleted.versionId()));
+          }
+          xml.append("</Deleted>");
+        }
+      } catch (S3Exception e) {
+        xml.append("<Error>").append(element("Key", key));
+        if (versionId != null) {
+          xml.append(element("VersionId", versionId));
+        }
+        xml.append(element("Code", e.getCode())).append(element("Message", e.getMessage())).append("</Error>");
+      }
+    }
+    sendXml(exchange, 200, xml.append("</DeleteResult>").toString());
+  }
+
+  private void listObjectsV2(HttpExchange exchange, Bucket bucket, Map<String, String> query) throws Exception {
+    String prefix = query.getOrDefault("prefix", "");
+    String delimiter = emptyToNull(query.get("delimiter"));
+    int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", String.valueOf(DEFAULT_MAX_KEYS)));
+    String startAfter = emptyToNull(query.get("start-after"));
+    String continuationToken = emptyToNull(query.get("continuation-token"));
+    String marker = continuationToken != null ? continuationToken : startAfter;
+
+    // latest live version of every key, in key order
+    List<Version> latest = new ArrayList<>();
+    String previousKey = null;
+    for (Version version : bucket.allVersions()) {
+      if (!version.key().equals(previousKey) && !version.deleteMarker()) {
+        latest.add(version);
+      }
+      previousKey = version.key();
+    }
+
+    StringBuilder entries = new StringBuilder();
+    String lastEntry = null;
+    String lastPrefix = null;
+    int count = 0;
+    boolean truncated = false;
+    for (Version version : latest) {
+      String key = version.key();
+      if (!key.startsWith(prefix) || (marker != null && isBeforeOrAt(key, marker, delimiter))) {
+        continue;
+      }
+
+      String commonPrefix = commonPrefix(key, prefix, delimiter);
+      if (commonPrefix != null && commonPrefix.equals(lastPrefix)) {
+        continue;
+      }
+      if (count == maxKeys) {
+        truncated = true;
+        break;
+      }
+
+      if (commonPrefix != null) {
+        entries.append("<CommonPrefixes>").append(element("Prefix", commonPrefix)).append("</CommonPrefixes>");
+        lastPrefix = commonPrefix;
+        lastEntry = commonPrefix;
+      } else {
+        entries.append("<Contents>")
+            .append(element("Key", key))
+            .append(element("LastModified", ISO_DATE.format(version.lastModified())))
+            .append(element("ETag", quote(version.etag())))
+            .append(element("Size", String.valueOf(version.size())))
+            .append(element("StorageClass", "STANDARD"))
+            .append("</Contents>");
+        lastEntry = key;
+      }
+      count++;
+    }
+
+    StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"" + S3_NAMESPACE + "\">")
+        .append(element("Name", bucket.name))
+        .append(element("Prefix", prefix))
+        .append(element("KeyCount", String.valueOf(count)))
+        .append(element("MaxKeys", String.valueOf(maxKeys)))
+        .append(element("IsTruncated", String.valueOf(truncated)));
+    if (delimiter != null) {
+      xml.append(element("Delimiter", delimiter));
+    }
+    if (startAfter != null) {
+      xml.append(element("StartAfter", startAfter));
+    }
+    if (continuationToken != null) {
+      xml.append(element("ContinuationToken", continuationToken));
+    }
+    if (truncated) {
+      xml.append(element("NextContinuationToken", lastEntry));
+    }
+    sendXml(exchange, 200, xml.append(entries).append("</ListBucketResult>").toString());
+  }
+
+  private void listVersions(HttpExchange exchange, Bucket bucket, Map<String, String> query) throws Exception {
+    String prefix = query.getOrDefault("prefix", "");
+    String delimiter = emptyToNull(query.get("delimiter"));
+    int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", String.valueOf(DEFAULT_MAX_KEYS)));
+    String keyMarker = emptyToNull(query.get("key-marker"));
+    String versionIdMarker = emptyToNull(query.get("version-id-marker"));
+
+    StringBuilder entries = new StringBuilder();
+    String previousKey = null;
+    String lastPrefix = null;
+    String nextKeyMarker = null;
+    String nextVersionIdMarker = null;
+    boolean markerPassed = versionIdMarker == null;
+    int count = 0;
+    boolean truncated = false;
+
+    for (Version version : bucket.allVersions()) {
+      String key = version.key();
+      boolean latest = !key.equals(previousKey);
+      previousKey = key;
+      if (!key.startsWith(prefix)) {
+        continue;
+      }
+
+      if (keyMarker != null) {
+        if (versionIdMarker != null && key.equals(keyMarker)) {
+          // resume after the marker version of the marker key
+          if (!markerPassed) {
+            markerPassed = version.versionId().equals(versionIdMarker);
+            continue;
+          }
+        } else if (isBeforeOrAt(key, keyMarker, delimiter)) {
+          continue;
+        }
+      }
+
+      String commonPrefix = commonPrefix(key, prefix, delimiter);
+      if (commonPrefix != null && commonPrefix.equals(lastPrefix)) {
+        continue;
+      }
+      if (count == maxKeys) {
+        truncated = true;
+        break;
+      }
+
+      if (commonPrefix != null) {
+        entries.append("<CommonPrefixes>").append(element("Prefix", commonPrefix)).append("</CommonPrefixes>");
+        lastPrefix = commonPrefix;
+        nextKeyMarker = commonPrefix;
+        nextVersionIdMarker = null;
+      } else {
+        String tag = version.deleteMarker() ? "DeleteMarker" : "Version";
+        entries.append('<').append(tag).append('>')
+            .append(element("Key", key))
+            .append(element("VersionId", version.versionId()))
+            .append(element("IsLatest", String.valueOf(latest)))
+            .append(element("LastModified", ISO_DATE.format(version.lastModified())));
+        if (!version.deleteMarker()) {
+          entries.append(element("ETag", quote(version.etag())))
+              .append(element("Size", String.valueOf(version.size())))
+              .append(element("StorageClass", "STANDARD"));
+        }
+        entries.append("</").append(tag).append('>');
+        nextKeyMarker = key;
+        nextVersionIdMarker = version.versionId();
+      }
+      count++;
+    }
+
+    StringBuilder xml = new StringBuilder("<ListVersionsResult xmlns=\"" + S3_NAMESPACE + "\">")
+        .append(element("Name", bucket.name))
+        .append(element("Prefix", prefix))
+        .append(element("KeyMarker", keyMarker == null ? "" : keyMarker))
+        .append(element("VersionIdMarker", versionIdMarker == null ? "" : versionIdMarker))
+        .append(element("MaxKeys", String.valueOf(maxKeys)))
+        .append(element("IsTruncated", String.valueOf(truncated)));
+    if (delimiter != null) {
+      xml.append(element("Delimiter", delimiter));
+    }
+    if (truncated) {
+      xml.append(element("NextKeyMarker", nextKeyMarker));
+      if (nextVersionIdMarker != null) {
+        xml.append(element("NextVersionIdMarker", nextVersionIdMarker));
+      }
+    }
+    sendXml(exchange, 200, xml.append(entries).append("</ListVersionsResult>").toString());
+  }
+
+  /**
+   * Whether the key was already listed before the marker; a marker that is a common prefix covers its whole subtree.
+   */
+  private boolean isBeforeOrAt(String key, String marker, String delimiter) {
+    if (delimiter != null && marker.endsWith(delimiter) && key.startsWith(marker)) {
+      return true;
+    }
+    return key.compareTo(marker) <= 0;
+  }
+
+  private String commonPrefix(String key, String prefix, String delimiter) {
+    if (delimiter == null) {
+      return null;
+    }
+    int index = key.indexOf(delimiter, prefix.length());
+    return index < 0 ? null : key.substring(0, index + delimiter.length());
+  }
+
+  private Version resolveCopySource(String copySource) {
+    String source = copySource.startsWith("/") ? copySource.substring(1) : copySource;
+    String versionId = null;
+    int versionIndex = source.indexOf("?versionId=");
+    if (versionIndex >= 0) {
+      versionId = URLDecoder.decode(source.substring(versionIndex + "?versionId=".length()), StandardCharsets.UTF_8);
+      source = source.substring(0, versionIndex);
+    }
+
+    String[] segments = URLDecoder.decode(source, StandardCharsets.UTF_8).split("/", 2);
+    return storage.bucket(segments[0]).get(segments[1], versionId);
+  }
+
+  private void setObjectHeaders(HttpExchange exchange, Version version) {
+    Headers headers = exchange.getResponseHeaders();
+    headers.set("ETag", quote(version.etag()));
+    headers.set("Last-Modified", HTTP_DATE.format(version.lastModified()));
+    headers.set("Content-Type", version.contentType() == null ? "binary/octet-stream" : version.contentType());
+    headers.set("Content-Length", String.valueOf(version.size()));
+    headers.set("Accept-Ranges", "bytes");
+    setVersionHeader(exchange, version.versionId());
+    version.metadata().forEach((name, value) -> headers.set("x-amz-meta-" + name, value));
+  }
+
+  private void setVersionHeader(HttpExchange exchange, String versionId) {
+    if (versionId != null && !S3Storage.NULL_VERSION.equals(versionId)) {
+      exchange.getResponseHeaders().set("x-amz-version-id", versionId);
+    }
+  }
+
+  private long[] parseRange(String range, long size) {
+    Matcher matcher = RANGE.matcher(range.trim());
+    if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+      throw new S3Exception(416, "InvalidRange", "The requested range is not satisfiable", null, null);
+    }
+
+    long start;
+    long end;
+    if (matcher.group(1).isEmpty()) {
+      start = Math.max(size - Long.parseLong(matcher.group(2)), 0);
+      end = size - 1;
+    } else {
+      start = Long.parseLong(matcher.group(1));
+      end = matcher.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(matcher.group(2)), size - 1);
+    }
+    if (start >= size || start > end) {
+      throw new S3Exception(416, "InvalidRange", "The requested range is not satisfiable", null, null);
+    }
+    return new long[] {start, end};
+  }
+
+  private String contentType(HttpExchange exchange) {
+    return exchange.getRequestHeaders().getFirst("Content-Type");
+  }
+
+  private Map<String, String> userMetadata(Headers headers) {
+    Map<String, String> metadata = new LinkedHashMap<>();
+    headers.forEach((name, values) -> {
+      String lowerName = name.toLowerCase(Locale.ROOT);
+      if (lowerName.startsWith("x-amz-meta-") && !values.isEmpty()) {
+        metadata.put(lowerName.substring("x-amz-meta-".length()), values.getFirst());
+      }
+    });
+    return Map.copyOf(metadata);
+  }
+
+  private byte[] readBody(HttpExchange exchange) throws IOException, InterruptedException {
+    byte[] body = exchange.getRequestBody().readAllBytes();
+    networkModel.delayTransfer(body.length);
+    return body;
+  }
+
+  private Document parseXml(byte[] xml) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+  }
+
+  private String childText(Element parent, String name) {
+    NodeList nodes = parent.getElementsByTagName(name);
+    return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+  }
+
+  private void sendXml(HttpExchange exchange, int status, String xml) throws IOException, InterruptedException {
+    exchange.getResponseHeaders().set("Content-Type", "application/xml");
+    send(exchange, status, xml.getBytes(StandardCharsets.UTF_8), null);
+  }
+
+  private void sendError(HttpExchange exchange, S3Exception e) throws IOException {
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.sendResponseHeaders(e.getStatus(), -1);
+      return;
+    }
+
+    String resource = exchange.getRequestURI().getPath();
+    String xml = "<Error>" + element("Code", e.getCode()) + element("Message", e.getMessage())
+        + (e.getBucketName() == null ? "" : element("BucketName", e.getBucketName()))
+        + (e.getKey() == null ? "" : element("Key", e.getKey()))
+        + element("Resource", resource) + element("RequestId", "embedded") + element("HostId", "embedded")
+        + "</Error>";
+    try {
+      exchange.getResponseHeaders().set("Content-Type", "application/xml");
+      send(exchange, e.getStatus(), xml.getBytes(StandardCharsets.UTF_8), null);
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Sends the body, or only the inclusive {@code bounds} of it, at the bandwidth of the network model.
+   */
+  private void send(HttpExchange exchange, int status, byte[] body, long[] bounds)
+      throws IOException, InterruptedException {
+    int offset = bounds == null ? 0 : (int) bounds[0];
+    int length = body == null ? 0 : bounds == null ? body.length : (int) (bounds[1] - bounds[0] + 1);
+    exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+    exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+    if (length == 0) {
+      return;
+    }
+
+    OutputStream responseBody = exchange.getResponseBody();
+    for (int written = 0; written < length; written += CHUNK_SIZE) {
+      int chunk = Math.min(CHUNK_SIZE, length - written);
+      networkModel.delayTransfer(chunk);
+      responseBody.write(body, offset + written, chunk);
+    }
+    responseBody.flush();
+  }
+
+  private Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return query;
+    }
+    for (String parameter : rawQuery.split("&")) {
+      int index = parameter.indexOf('=');
+      String name = index < 0 ? parameter : parameter.substring(0, index);
+      String value = index < 0 ? "" : parameter.substring(index + 1);
+      query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return query;
+  }
+
+  private S3Exception notImplemented() {
+    return new S3Exception(501, "NotImplemented", "The embedded s3 server does not implement this request", null,
+        null);
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  private static String quote(String etag) {
+    return "\"" + etag + "\"";
+  }
+
+  private static String element(String name, String value) {
+    return "<" + name + ">" + escape(value) + "</" + name + ">";
+  }
+
+  private static String escape(String value) {
+    if (value == null) {
+      return "";
+    }
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;")
+        .replace("'", "&apos;");
+  }
+}
@@ -0,0 +1,39 @@
+package com.document.document_service.s3;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Builder;
+
+/**
+ * Simulated network between the service and the embedded S3 server: a latency added to every request (the base plus
+ * a random jitter) and a bandwidth limit applied to every request and response body.
+ */
+@Builder
+public record NetworkModel(
+    Duration latency,
+    Duration jitter,
+    long bytesPerSecond
+) {
+  public static final NetworkModel NONE = new NetworkModel(Duration.ZERO, Duration.ZERO, 0);
+
+  void delayRequest() throws InterruptedException {
+    long latencyNanos = latency.toNanos();
+    if (!jitter.isZero()) {
+      latencyNanos += ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1);
+    }
+    sleep(latencyNanos);
+  }
+
+  void delayTransfer(long bytes) throws InterruptedException {
+    if (bytesPerSecond > 0 && bytes > 0) {
+      sleep(bytes * 1_000_000_000L / bytesPerSecond);
+    }
+  }
+
+  private void sleep(long nanos) throws InterruptedException {
+    if (nanos > 0) {
+      Thread.sleep(Duration.ofNanos(nanos));
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package com.document.document_service.s3;
+
+import lombok.Getter;
+
+/**
+ * An S3 error response of the embedded server.
+ */
+@Getter
+class S3Exception extends RuntimeException {
+  private final int status;
+  private final String code;
+  private final String bucketName;
+  private final String key;
+
+  S3Exception(int status, String code, String message, String bucketName, String key) {
+    super(message);
+    this.status = status;
+    this.code = code;
+    this.bucketName = bucketName;
+    this.key = key;
+  }
+}
@@ -0,0 +1,236 @@
+package com.document.document_service.s3;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory state of the embedded S3 server: buckets with versioned objects and open multipart uploads. Every bucket
+ * is guarded by its own monitor.
+ */
+final class S3Storage {
+  static final String NULL_VERSION = "null";
+
+  private final NavigableMap<String, Bucket> buckets = new ConcurrentSkipListMap<>();
+  private Instant lastModified = Instant.EPOCH;
+
+  List<Bucket> listBuckets() {
+    return List.copyOf(buckets.values());
+  }
+
+  Bucket bucket(String bucketName) {
+    Bucket bucket = buckets.get(bucketName);
+    if (bucket == null) {
+      throw new S3Exception(404, "NoSuchBucket", "The specified bucket does not exist", bucketName, null);
+    }
+    return bucket;
+  }
+
+  void createBucket(String bucketName) {
+    if (buckets.putIfAbsent(bucketName, new Bucket(bucketName, now())) != null) {
+      throw new S3Exception(409, "BucketAlreadyOwnedByYou", "Your previous request to create the named bucket "
+          + "succeeded and you already own it", bucketName, null);
+    }
+  }
+
+  void deleteBucket(String bucketName) {
+    Bucket bucket = bucket(bucketName);
+    synchronized (bucket) {
+      if (!bucket.objects.isEmpty()) {
+        throw new S3Exception(409, "BucketNotEmpty", "The bucket you tried to delete is not empty", bucketName, null);
+      }
+      buckets.remove(bucketName);
+    }
+  }
+
+  /**
+   * Last modified dates strictly increase, so the versions of an object never share a date.
+   */
+  synchronized Instant now() {
+    Instant now = Instant.now();
+    lastModified = now.isAfter(lastModified) ? now : lastModified.plusMillis(1);
+    return lastModified;
+  }
+
+  static String md5(byte[] data) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  final class Bucket {
+    final String name;
+    final Instant creationDate;
+    // versions newest first
+    final TreeMap<String, List<Version>> objects = new TreeMap<>();
+    final Map<String, Upload> uploads = new TreeMap<>();
+    boolean versioning;
+
+    private Bucket(String name, Instant creationDate) {
+      this.name = name;
+      this.creationDate = creationDate;
+    }
+
+    synchronized Version put(String key, byte[] data, String etag, String contentType, Map<String, String> metadata) {
+      Version version = new Version(key, versioning ? UUID.randomUUID().toString() : NULL_VERSION, data, etag,
+          contentType, metadata, now(), false);
+      addVersion(version);
+      return version;
+    }
+
+    synchronized Version get(String key, String versionId) {
+      List<Version> versions = objects.get(key);
+      if (versions != null) {
+        for (Version version : versions) {
+          if (versionId == null || versionId.equals(version.versionId())) {
+            if (version.deleteMarker()) {
+              break;
+            }
+            return version;
+          }
+        }
+      }
+      throw new S3Exception(404, "NoSuchKey", "The specified key does not exist.", name, key);
+    }
+
+    /**
+     * Deletes the version, or adds a delete marker when no version is given and versioning is enabled.
+     */
+    synchronized Version delete(String key, String versionId) {
+      List<Version> versions = objects.get(key);
+      if (versionId == null && versioning) {
+        Version marker = new Version(key, UUID.randomUUID().toString(), null, null, null, Map.of(), now(), true);
+        addVersion(marker);
+        return marker;
+      }
+      if (versions == null) {
+        return null;
+      }
+
+      String removedVersionId = versionId == null ? NULL_VERSION : versionId;
+      Version removed = null;
+      for (Version version : versions) {
+        if (version.versionId().equals(removedVersionId)) {
+          removed = version;
+        }
+      }
+      versions.remove(removed);
+      if (versions.isEmpty()) {
+        objects.remove(key);
+      }
+      return removed;
+    }
+
+    synchronized Upload createUpload(String key, String contentType, Map<String, String> metadata) {
+      Upload upload = new Upload(UUID.randomUUID().toString(), key, contentType, metadata);
+      uploads.put(upload.uploadId, upload);
+      return upload;
+    }
+
+    synchronized Upload upload(String uploadId) {
+      Upload upload = uploads.get(uploadId);
+      if (upload == null) {
+        throw new S3Exception(404, "NoSuchUpload", "The specified multipart upload does not exist.", name, null);
+      }
+      return upload;
+    }
+
+    synchronized Version completeUpload(String uploadId, List<Integer> partNumbers) {
+      Upload upload = upload(uploadId);
+      byte[][] parts = new byte[partNumbers.size()][];
+      StringBuilder partEtags = new StringBuilder();
+      int size = 0;
+      for (int i = 0; i < partNumbers.size(); i++) {
+        Part part = upload.parts.get(partNumbers.get(i));
+        if (part == null) {
+          throw new S3Exception(400, "InvalidPart", "One or more of the specified parts could not be found.", name,
+              upload.key);
+        }
+        parts[i] = part.data();
+        partEtags.append(part.etag());
+        size += part.data().length;
+      }
+
+      byte[] data = new byte[size];
+      int offset = 0;
+      for (byte[] part : parts) {
+        System.arraycopy(part, 0, data, offset, part.length);
+        offset += part.length;
+      }
+      String etag = md5(HexFormat.of().parseHex(partEtags.toString())) + "-" + parts.length;
+
+      uploads.remove(uploadId);
+      return put(upload.key, data, etag, upload.contentType, upload.metadata);
+    }
+
+    synchronized void abortUpload(String uploadId) {
+      upload(uploadId);
+      uploads.remove(uploadId);
+    }
+
+    /**
+     * All versions in listing order: keys ascending, the versions of a key newest first.
+     */
+    synchronized List<Version> allVersions() {
+      List<Version> all = new ArrayList<>();
+      objects.values().forEach(all::addAll);
+      return all;
+    }
+
+    private void addVersion(Version version) {
+      List<Version> versions = objects.computeIfAbsent(version.key(), key -> new ArrayList<>());
+      if (!versioning) {
+        versions.removeIf(existing -> existing.versionId().equals(NULL_VERSION));
+      }
+      versions.addFirst(version);
+    }
+  }
+
+  static final class Upload {
+    final String uploadId;
+    final String key;
+    final String contentType;
+    final Map<String, String> metadata;
+    final NavigableMap<Integer, Part> parts = new ConcurrentSkipListMap<>();
+
+    private Upload(String uploadId, String key, String contentType, Map<String, String> metadata) {
+      this.uploadId = uploadId;
+      this.key = key;
+      this.contentType = contentType;
+      this.metadata = metadata;
+    }
+  }
+
+  record Part(
+      int partNumber,
+      byte[] data,
+      String etag,
+      Instant lastModified
+  ) {
+  }
+
+  record Version(
+      String key,
+      String versionId,
+      byte[] data,
+      String etag,
+      String contentType,
+      Map<String, String> metadata,
+      Instant lastModified,
+      boolean deleteMarker
+  ) {
+    long size() {
+      return data == null ? 0 : data.length;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package com.document.document_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ArchiveReaderTest {
+  private static final int BLOCK_SIZE = 512;
+
+  @Test
+  void readsTheFilesOfATar() throws Exception {
+    Tar tar = new Tar()
+        .entry("docs/", '5', "")
+        .entry("docs/a.txt", '0', "first")
+        .entry("docs/b.txt", '0', "x".repeat(BLOCK_SIZE + 1))
+        .entry("docs/link.txt", '2', "")
+        .entry("/docs/empty.txt", '0', "");
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/x-tar", tar.stream())) {
+      assertThat(readAll(reader)).containsExactly(
+          Map.entry("docs/a.txt", "first"),
+          Map.entry("docs/b.txt", "x".repeat(BLOCK_SIZE + 1)),
+          Map.entry("docs/empty.txt", ""));
+    }
+  }
+
+  @Test
+  void skipsTheUnreadContentOfAnEntry() throws Exception {
+    Tar tar = new Tar()
+        .entry("a.bin", '0', "a".repeat(3 * BLOCK_SIZE - 7))
+        .entry("b.txt", '0', "second");
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/x-tar", tar.stream())) {
+      ArchiveReader.Entry first = reader.next();
+      assertThat(first.name()).isEqualTo("a.bin");
+      assertThat(first.size()).isEqualTo(3 * BLOCK_SIZE - 7);
+      assertThat(first.content().readNBytes(10)).hasSize(10);
+
+      ArchiveReader.Entry second = reader.next();
+      assertThat(second.name()).isEqualTo("b.txt");
+      assertThat(new String(second.content().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("second");
+      assertThat(reader.next()).isNull();
+    }
+  }
+
+  @Test
+  void readsGnuLongNames() throws Exception {
+    String longName = "docs/" + "a".repeat(150) + ".txt";
+    Tar tar = new Tar()
+        .entry("././@LongLink", 'L', longName + "\0")
+        .entry(longName.substring(0, 100), '0', "long")
+        .entry("short.txt", '0', "short");
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/x-tar", tar.stream())) {
+      assertThat(readAll(reader)).containsExactly(
+          Map.entry(longName, "long"),
+          Map.entry("short.txt", "short"));
+    }
+  }
+
+  @Test
+  void readsPaxPaths() throws Exception {
+    String path = "docs/" + "b".repeat(200) + "/c.txt";
+    Tar tar = new Tar()
+        .entry("PaxHeaders/c.txt", 'x', paxRecord("mtime", "1700000000") + paxRecord("path", path))
+        .entry("c.txt", '0', "pax")
+        .entry("d.txt", '0', "plain");
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/x-tar", tar.stream())) {
+      assertThat(readAll(reader)).containsExactly(
+          Map.entry(path, "pax"),
+          Map.entry("d.txt", "plain"));
+    }
+  }
+
+  @Test
+  void readsGzippedTars() throws Exception {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+      gzip.write(new Tar().entry("a.txt", '0', "gzipped").bytes());
+    }
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/gzip",
+        new ByteArrayInputStream(gzipped.toByteArray()))) {
+      assertThat(readAll(reader)).containsExactly(Map.entry("a.txt", "gzipped"));
+    }
+  }
+
+  @Test
+  void failsOnATruncatedTar() throws Exception {
+    byte[] tar = new Tar().entry("a.txt", '0', "y".repeat(1000)).bytes();
+    byte[] truncated = Arrays.copyOf(tar, BLOCK_SIZE + 100);
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/x-tar",
+        new ByteArrayInputStream(truncated))) {
+      ArchiveReader.Entry entry = reader.next();
+      assertThatThrownBy(() -> entry.content().readAllBytes()).isInstanceOf(EOFException.class);
+    }
+  }
+
+  @Test
+  void readsTheFilesOfAZip() throws Exception {
+    ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(zipped, StandardCharsets.UTF_8)) {
+      zip.putNextEntry(new ZipEntry("docs/"));
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("docs/a.txt"));
+      zip.write("first".getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("docs\\sub\\\u00fc.txt"));
+      zip.write("second".getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+    }
+
+    try (ArchiveReader reader = ArchiveReader.forContentType("application/zip; charset=binary",
+        new ByteArrayInputStream(zipped.toByteArray()))) {
+      ArchiveReader.Entry first = reader.next();
+      assertThat(first.name()).isEqualTo("docs/a.txt");
+      // closing an entry leaves the archive open for the next one
+      first.content().close();
+      assertThat(readAll(reader)).containsExactly(Map.entry("docs/sub/\u00fc.txt", "second"));
+    }
+  }
+
+  @Test
+  void rejectsOtherContentTypes() {
+    assertThatThrownBy(() -> ArchiveReader.forContentType("application/x-7z-compressed",
+        new ByteArrayInputStream(new byte[0])))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Map<String, String> readAll(ArchiveReader reader) throws IOException {
+    Map<String, String> entries = new LinkedHashMap<>();
+    ArchiveReader.Entry entry;
+    while ((entry = reader.next()) != null) {
+      entries.put(entry.name(), new String(entry.content().readAllBytes(), StandardCharsets.UTF_8));
+    }
+    return entries;
+  }
+
+  /**
+   * A pax record, {@code "<length> <key>=<value>\n"} where the length counts the whole record including itself.
+   */
+  private static String paxRecord(String key, String value) {
+    int length = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+    int total = length + String.valueOf(length).length();
+    if (String.valueOf(total).length() > String.valueOf(length).length()) {
+      total++;
+    }
+    return total + " " + key + "=" + value + "\n";
+  }
+
+  /**
+   * Writes ustar entries the way GNU tar does.
+   */
+  private static final class Tar {
+    private final List<byte[]> blocks = new ArrayList<>();
+
+    Tar entry(String name, char type, String content) {
+      byte[] data = content.getBytes(StandardCharsets.UTF_8);
+      byte[] header = new byte[BLOCK_SIZE];
+      put(header, 0, name, 100);
+      put(header, 100, "0000644", 8);
+      put(header, 108, "0000000", 8);
+      put(header, 116, "0000000", 8);
+      put(header, 124, String.format("%011o", data.length), 12);
+      put(header, 136, String.format("%011o", 1700000000L), 12);
+      header[156] = (byte) type;
+      put(header, 257, "ustar", 6);
+      put(header, 263, "00", 2);
+
+      Arrays.fill(header, 148, 156, (byte) ' ');
+      int checksum = 0;
+      for (byte b : header) {
+        checksum += b & 0xff;
+      }
+      put(header, 148, String.format("%06o", checksum), 7);
+
+      blocks.add(header);
+      blocks.add(Arrays.copyOf(data, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE));
+      return this;
+    }
+
+    byte[] bytes() {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      blocks.forEach(out::writeBytes);
+      // end of archive
+      out.writeBytes(new byte[2 * BLOCK_SIZE]);
+      return out.toByteArray();
+    }
+
+    ByteArrayInputStream stream() {
+      return new ByteArrayInputStream(bytes());
+    }
+
+    private static void put(byte[] header, int offset, String value, int length) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.document.document_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.document.document_service.entity.CatalogVersion;
+import com.document.document_service.service.RetentionService.RetentionRule;
+
+import io.minio.messages.LifecycleRule;
+import io.minio.messages.Status;
+
+import org.junit.jupiter.api.Test;
+
+class RetentionRuleTest {
+  private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 30, 12, 0);
+
+  @Test
+  void keepLastKeepsTheNewestVersions() {
+    RetentionRule rule = RetentionRule.parse("3/-");
+    List<CatalogVersion> versions = versionsWrittenDaysAgo(400, 300, 200, 100, 0);
+
+    assertThat(expired(rule, versions)).containsExactly(true, true, false, false, false);
+  }
+
+  @Test
+  void keepDaysCountsFromTheReplacementOfAVersion() {
+    RetentionRule rule = RetentionRule.parse("-/30");
+    // v2 was written 40 days ago, so v1 is noncurrent for 40 days; v3 replaced v2 20 days ago
+    List<CatalogVersion> versions = versionsWrittenDaysAgo(50, 40, 20, 10);
+
+    assertThat(expired(rule, versions)).containsExactly(true, false, false, false);
+  }
+
+  @Test
+  void aVersionIsKeptByEitherLimit() {
+    RetentionRule rule = RetentionRule.parse("2/30");
+    List<CatalogVersion> versions = versionsWrittenDaysAgo(90, 60, 40, 10, 5);
+
+    // v2 was replaced 40 days ago by one of three newer versions, v3 was replaced less than 30 days ago and v4 is
+    // one of the last two
+    assertThat(expired(rule, versions)).containsExactly(true, true, false, false, false);
+  }
+
+  @Test
+  void theLatestVersionIsNeverExpired() {
+    RetentionRule rule = RetentionRule.parse("1/1");
+    List<CatalogVersion> versions = versionsWrittenDaysAgo(1000);
+
+    assertThat(rule.isExpired(versions, 0, NOW)).isFalse();
+  }
+
+  @Test
+  void onlyRulesWithoutAVersionLimitAreLifecycleRules() {
+    assertThat(RetentionRule.parse("-/30").isLifecycleRule()).isTrue();
+    // the latest version is always kept, so keeping one version is no limit
+    assertThat(RetentionRule.parse("1/30").isLifecycleRule()).isTrue();
+    assertThat(RetentionRule.parse("10/30").isLifecycleRule()).isFalse();
+    assertThat(RetentionRule.parse("10/-").isLifecycleRule()).isFalse();
+  }
+
+  @Test
+  void toLifecycleRuleExpiresAfterTheNoncurrentDays() {
+    LifecycleRule rule = RetentionRule.parse("-/7").toLifecycleRule();
+
+    assertThat(rule.status()).isEqualTo(Status.ENABLED);
+    assertThat(rule.noncurrentVersionExpiration().noncurrentDays()).isEqualTo(7);
+  }
+
+  @Test
+  void toLifecycleRuleRejectsRulesWithAVersionLimit() {
+    assertThatThrownBy(() -> RetentionRule.parse("10/30").toLifecycleRule())
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void parseRejectsRulesWithoutLimits() {
+    assertThatThrownBy(() -> RetentionRule.parse("-/-")).isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> RetentionRule.parse("0/5")).isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> RetentionRule.parse("ten/5")).isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> RetentionRule.parse("10")).isInstanceOf(IllegalStateException.class);
+  }
+
+  /**
+   * Versions of one object, v1 first, written the given number of days before now.
+   */
+  private static List<CatalogVersion> versionsWrittenDaysAgo(int... daysAgo) {
+    List<CatalogVersion> versions = new ArrayList<>();
+    for (int i = 0; i < daysAgo.length; i++) {
+      versions.add(CatalogVersion.builder()
+          .bucketName("docs")
+          .objectName("report.pdf")
+          .versionId("version-" + (i + 1))
+          .lastModified(NOW.minusDays(daysAgo[i]))
+          .build());
+    }
+    return versions;
+  }
+
+  private static List<Boolean> expired(RetentionRule rule, List<CatalogVersion> versions) {
+    List<Boolean> expired = new ArrayList<>();
+    for (int i = 0; i < versions.size(); i++) {
+      expired.add(rule.isExpired(versions, i, NOW));
+    }
+    return expired;
+  }
+}